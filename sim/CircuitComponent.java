@@ -47,6 +47,10 @@ public abstract class CircuitComponent {
     // Draw Componenet
     public abstract void draw(Graphics2D g2);
 
+    // Whether draw() shows simulation or switch state. The canvas caches components that don't
+    // and draws the ones that do on every repaint.
+    public boolean drawsState() {return false;}
+
     // Get Output State
     public abstract PinState getOutputState(int pinIndex);
 
@@ -79,8 +83,7 @@ public abstract class CircuitComponent {
     }
 
     public void setLocation(Point point) {
-        this.x = point.x;
-        this.y = point.y;
+        setLocation(point.x, point.y);
     }
 
     public boolean contains(int mx, int my) {
@@ -4,16 +4,25 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 import sim.io.CircuitPersistence;
 import sim.logic.PropagationEngine;
+import sim.logic.SubCircuitDefinition;
+import sim.logic.SubCircuitLibrary;
 import sim.logic.SubCircuitManager;
 import sim.model.SubCircuit;
 import sim.model.Wire;
+import sim.util.PinID;
 import sim.util.PinState;
+import sim.util.SpatialGrid;
 
 public class CircuitManager {
 
@@ -23,7 +32,36 @@ public class CircuitManager {
     
     private List<CircuitComponent> components = new ArrayList<>();
     private List<Wire> wires = new ArrayList<>();
-    private Map<Integer, Point> globalPinMap = new HashMap<>();
+
+    // Lookups indexed by pin ID. Pin IDs are dense after a load, so these stay close to the pin count.
+    private Point[] pinLocations = new Point[0];
+    private CircuitComponent[] pinOwners = new CircuitComponent[0];
+    private int[] pinPorts = new int[0];     // Port index on the owner; outputs stored as ~index
+    private int[] pinDrivers = new int[0];   // For input pins, the pin driving it through a wire, or -1
+    private boolean pinIndexStale = true;
+
+    // Spatial index for hit-testing. Single edits keep it up to date; bulk changes mark it stale
+    // and it is rebuilt on the next query.
+    private static final int GRID_CELL_SIZE = 64;
+    private static final double WIRE_HIT_DISTANCE = 5.0;
+    private final SpatialGrid<CircuitComponent> componentGrid = new SpatialGrid<>(GRID_CELL_SIZE);
+    private final SpatialGrid<Integer> pinGrid = new SpatialGrid<>(GRID_CELL_SIZE);
+    private final SpatialGrid<Wire> wireGrid = new SpatialGrid<>(GRID_CELL_SIZE);
+    private boolean spatialIndexStale = true;
+
+    // Told the world area whose drawing changed (component added, removed, moved or renamed), or null for everything
+    private final List<Consumer<Rectangle>> layoutListeners = new ArrayList<>();
+
+    // Net states published after each propagation: one PinState ordinal per output pin, indexed by
+    // pin ID. Painting reads these instead of asking the components.
+    private static final PinState[] STATES = PinState.values();
+    private static final byte FLOATING_STATE = (byte) PinState.FLOATING.ordinal();
+    private byte[] netStates = new byte[0];
+    private boolean netStatesStale = true;
+
+    // Told which components changed state in a propagation; their nets are the wires on their outputs
+    private final List<Consumer<Set<CircuitComponent>>> stateListeners = new ArrayList<>();
+    private final Set<CircuitComponent> stateChanges = new HashSet<>();
 
     private PropagationEngine propagationEngine = new PropagationEngine();
     private SubCircuitManager subCircuitManager = new SubCircuitManager(this);
@@ -34,7 +72,10 @@ public class CircuitManager {
 
     public void addComponent(CircuitComponent component) {
         components.add(component);
+        pinIndexStale = true;
         updatePinRegistry(component);
+        indexComponent(component);
+        componentChanged(component);
         propagate();
     }
 
@@ -47,31 +88,127 @@ public class CircuitManager {
         allPins.addAll(target.getOutputPinIDs());
 
         // Remove all wires connected to these pins
-        wires.removeIf(w -> allPins.contains(w.getSourcePinID()) ||
-                            allPins.contains(w.getDestPinID()));
+        wires.removeIf(w -> {
+            boolean attached = allPins.contains(w.getSourcePinID()) || allPins.contains(w.getDestPinID());
+            if (attached) unindexWire(w);
+            return attached;
+        });
                         
         // Remove component
         components.remove(target);
-        refreshAllPinLocations();
+        pinIndexStale = true;
+        unindexComponent(target);
+        for (int pin : allPins) {
+            if (pin < pinLocations.length) pinLocations[pin] = null;
+        }
+        componentChanged(target);
         propagate();
     }
 
+    // Moves a component along with its pins and wires in the index. Anything moving components
+    // directly has to call refreshAllPinLocations() afterwards.
+    public void moveComponent(CircuitComponent component, int x, int y) {
+        if (component.getX() == x && component.getY() == y) return;
+
+        List<Wire> attached = attachedWires(component);
+        for (Wire w : attached) unindexWire(w);
+        unindexComponent(component);
+        componentChanged(component);
+
+        component.setLocation(x, y);
+        updatePinRegistry(component);
+
+        indexComponent(component);
+        for (Wire w : attached) indexWire(w);
+        componentChanged(component);
+    }
+
+    // Tells the layout listeners a component's drawing changed in place, e.g. after a rename
+    public void componentChanged(CircuitComponent component) {
+        fireLayoutChanged(new Rectangle(component.getX(), component.getY(), component.getWidth(), component.getHeight()));
+    }
+
+    public void addLayoutListener(Consumer<Rectangle> listener) {
+        layoutListeners.add(listener);
+    }
+
     public boolean isSpaceOccupied(CircuitComponent movingComp) {
-        Rectangle currBounds = new Rectangle(movingComp.getX(), movingComp.getY(), movingComp.getWidth(), movingComp.getHeight());
+        ensureSpatialIndex();
+        int x = movingComp.getX(), y = movingComp.getY();
+        int w = movingComp.getWidth(), h = movingComp.getHeight();
+
+        boolean[] occupied = {false};
+        componentGrid.query(x, y, w, h, old -> {
+            if (old != movingComp && x < old.getX() + old.getWidth() && old.getX() < x + w
+                    && y < old.getY() + old.getHeight() && old.getY() < y + h) {
+                occupied[0] = true;
+            }
+        });
+        return occupied[0];
+    }
+
+    public CircuitComponent getComponentAt(int x, int y) {
+        ensureSpatialIndex();
+        CircuitComponent[] found = {null};
+        componentGrid.query(x, y, 0, 0, c -> {
+            if (found[0] == null && c.contains(x, y)) found[0] = c;
+        });
+        return found[0];
+    }
 
-        for (CircuitComponent old : components) {
-            if (old == movingComp) continue;
-            Rectangle oldBounds = new Rectangle(old.getX(), old.getY(), old.getWidth(), old.getHeight());
+    // Components whose centre lies in the area, in the order they were created (by pin ID)
+    public List<CircuitComponent> getComponentsIn(Rectangle area) {
+        ensureSpatialIndex();
+        Set<CircuitComponent> found = new HashSet<>();
+        componentGrid.query(area.x, area.y, area.width, area.height, c -> {
+            if (area.contains(c.getX() + c.getWidth() / 2, c.getY() + c.getHeight() / 2)) found.add(c);
+        });
+        List<CircuitComponent> ordered = new ArrayList<>(found);
+        ordered.sort(Comparator.comparingInt(CircuitManager::firstPin));
+        return ordered;
+    }
 
-            if (currBounds.intersects(oldBounds)) return true;
-        }
-        return false;
+    // Every component overlapping the area once, e.g. the ones on screen
+    public void forEachComponentIn(Rectangle area, Consumer<CircuitComponent> action) {
+        ensureSpatialIndex();
+        componentGrid.queryDistinct(area.x, area.y, area.width, area.height, c -> {
+            if (area.intersects(c.getX(), c.getY(), c.getWidth(), c.getHeight())) action.accept(c);
+        });
+    }
+
+    // Every wire that may cross the area once. Wires to pins without a location are left out.
+    public void forEachWireIn(Rectangle area, Consumer<Wire> action) {
+        ensureSpatialIndex();
+        wireGrid.queryDistinct(area.x, area.y, area.width, area.height, action);
     }
 
     public void clear() {
         components.clear();
         wires.clear();
-        globalPinMap.clear();
+        pinLocations = new Point[0];
+        pinIndexStale = true;
+        spatialIndexStale = true;
+        netStatesStale = true;
+        fireLayoutChanged(null);
+    }
+
+    // Takes over another manager's circuit in one step, e.g. one loaded on a background thread.
+    // The old circuit is gone, so the pin counter continues right after the new circuit's pins.
+    public void replaceWith(CircuitManager other) {
+        components = other.components;
+        wires = other.wires;
+        pinLocations = other.pinLocations;
+        pinIndexStale = true;
+        spatialIndexStale = true;
+        netStatesStale = true;
+        PinID.reset(pinLimit());
+        fireLayoutChanged(null);
+
+        other.components = new ArrayList<>();
+        other.wires = new ArrayList<>();
+        other.pinLocations = new Point[0];
+        other.pinIndexStale = true;
+        other.spatialIndexStale = true;
     }
 
     // ==================================================================================
@@ -82,22 +219,42 @@ public class CircuitManager {
         subCircuitManager.createSubCircuit(name, componentsToEncapsulate);
     }
 
+    public SubCircuitDefinition defineBlock(List<CircuitComponent> components) {
+        return subCircuitManager.defineBlock(components);
+    }
+
+    public String createLookupTable(String name, List<CircuitComponent> componentsToEncapsulate,
+                                    SubCircuitDefinition definition, long[] table) {
+        return subCircuitManager.createLookupTable(name, componentsToEncapsulate, definition, table);
+    }
+
+    public String convertToLookupTable(SubCircuit sub, long[] table) {
+        return subCircuitManager.convertToLookupTable(sub, table);
+    }
+
     public void saveSubCircuitToFile(SubCircuit sub, String filepath) throws IOException {
-         try (java.io.FileWriter writer = new java.io.FileWriter(filepath)) {
-            writer.write(sim.util.SimpleJson.serialize(sub.getDefinition()));
-        }
+        CircuitPersistence.saveBlock(sub, filepath);
     }
 
     public void loadSubCircuitFromFile(String filepath) throws IOException {
-        String json = new String(java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(filepath)));
-        Map<String, Object> definition = sim.util.SimpleJson.parse(json);
-        
-        if (!definition.containsKey("internalCircuit")) {
-            throw new IOException("Invalid sub-circuit file format.");
+        byte[] bytes = java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(filepath));
+        String fileHash = SubCircuitLibrary.hash(bytes);
+
+        // Files seen before (under any path) skip parsing and compiling entirely
+        SubCircuitLibrary.ImportedBlock imported = SubCircuitLibrary.getImport(fileHash);
+        if (imported == null) {
+            Map<String, Object> data = sim.util.SimpleJson.parse(new java.io.StringReader(new String(bytes)));
+            SubCircuitDefinition definition = CircuitPersistence.deserializeBlock(data);
+
+            if (definition == null) {
+                throw new IOException("Invalid sub-circuit file format.");
+            }
+
+            imported = new SubCircuitLibrary.ImportedBlock((String) data.get("id"), definition);
+            SubCircuitLibrary.putImport(fileHash, imported);
         }
 
-        SubCircuit sub = new SubCircuit(definition, true);
-        sub.setLocation(100, 100); 
+        SubCircuit sub = new SubCircuit(imported.name(), 100, 100, imported.definition());
         addComponent(sub);
     }
 
@@ -122,7 +279,10 @@ public class CircuitManager {
             inPin = sourceID;
         }
 
-        wires.add(new Wire(outPin, inPin));
+        Wire wire = new Wire(outPin, inPin);
+        wires.add(wire);
+        pinIndexStale = true;
+        indexWire(wire);
         propagate();
         return null;
     }
@@ -148,33 +308,54 @@ public class CircuitManager {
 
         if (outPin == -1 || inPin == -1) return "INVALID: Connection must be between an Output and Input!";
 
-        for (Wire w : wires) {
-            if (w.getDestPinID() == inPin) return "INVALID: Input is already driven";
-        }
+        if (getDriver(inPin) != -1) return "INVALID: Input is already driven";
         return null;
     }
 
     public void addWireDirectly(Wire w) {
         wires.add(w);
+        pinIndexStale = true;
+        indexWire(w);
     }
 
     public void removeWire(Wire w) {
-        wires.remove(w);
+        if (wires.remove(w)) unindexWire(w);
+        pinIndexStale = true;
         propagate();
     }
 
+    // The wires driven by a component's outputs
+    public void forEachWireFrom(CircuitComponent component, Consumer<Wire> action) {
+        ensureSpatialIndex();
+        for (int pin : component.getOutputPinIDs()) {
+            Point p = getPointForPin(pin);
+            if (p == null) continue;
+            wireGrid.query(p.x, p.y, 0, 0, w -> {
+                if (w.getSourcePinID() == pin) action.accept(w);
+            });
+        }
+    }
+
+    // The closest wire passing within a few pixels of the point
     public Wire getWireAt(int x, int y) {
-        for (Wire w : wires) {
-            Point p1 = globalPinMap.get(w.getSourcePinID());
-            Point p2 = globalPinMap.get(w.getDestPinID());
+        ensureSpatialIndex();
+        int reach = (int) Math.ceil(WIRE_HIT_DISTANCE);
+        Wire[] closest = {null};
+        double[] closestDist = {WIRE_HIT_DISTANCE};
+        wireGrid.query(x - reach, y - reach, 2 * reach, 2 * reach, w -> {
+            Point p1 = getPointForPin(w.getSourcePinID());
+            Point p2 = getPointForPin(w.getDestPinID());
 
             if (p1 != null && p2 != null) {
                 double minDist = distanceToSegment(x, y, p1.x, p1.y, p2.x, p2.y);
                 
-                if (minDist < 5.0) return w; 
+                if (minDist < closestDist[0]) {
+                    closest[0] = w;
+                    closestDist[0] = minDist;
+                }
             }
-        }
-        return null;
+        });
+        return closest[0];
     }
 
     // ==================================================================================
@@ -185,22 +366,61 @@ public class CircuitManager {
         CircuitComponent owner = getComponentByPin(pinID);
         if (owner == null) return PinState.FLOATING;
 
-        if (owner.getOutputPinIDs().contains(pinID)) {
-            return owner.getOutputState(owner.getOutputPinIDs().indexOf(pinID));
+        if (pinPorts[pinID] < 0) {
+            return owner.getOutputState(~pinPorts[pinID]);
         }
 
-        Wire incomingWire = getWireConnectedToInput(pinID);
-        if (incomingWire != null) {
-            CircuitComponent sourceComponent = getComponentByPin(incomingWire.getSourcePinID());
-            if (sourceComponent != null) {
-                return sourceComponent.getOutputState(sourceComponent.getOutputPinIDs().indexOf(incomingWire.getSourcePinID()));
+        int source = getDriver(pinID);
+        if (source != -1) {
+            CircuitComponent sourceComponent = getComponentByPin(source);
+            if (sourceComponent != null && pinPorts[source] < 0) {
+                return sourceComponent.getOutputState(~pinPorts[source]);
             }
         }
         return PinState.FLOATING;
     }
 
     public void propagate() {
-        propagationEngine.propagate(this);
+        propagationEngine.propagate(this, stateChanges);
+        publishNetStates();
+        fireStateChanged();
+    }
+
+    // The state of the net driven by an output pin as of the last propagation
+    public PinState getNetState(int outputPinID) {
+        if (netStatesStale) publishNetStates();
+        return outputPinID >= 0 && outputPinID < netStates.length ? STATES[netStates[outputPinID]] : PinState.FLOATING;
+    }
+
+    // Propagates after a component's state was changed from outside, e.g. a switch being clicked
+    public void propagateFrom(CircuitComponent source) {
+        stateChanges.add(source);
+        propagate();
+    }
+
+    // The set passed to listeners is reused, so it is only valid during the call
+    public void addStateListener(Consumer<Set<CircuitComponent>> listener) {
+        stateListeners.add(listener);
+    }
+
+    // Snapshots every output, so states set outside propagation (e.g. by the truth table) are caught too
+    private void publishNetStates() {
+        int limit = pinLimit();
+        if (netStates.length < limit) netStates = new byte[Math.max(limit, netStates.length * 2)];
+        Arrays.fill(netStates, FLOATING_STATE);
+        for (CircuitComponent c : components) {
+            List<Integer> outputs = c.getOutputPinIDs();
+            for (int i = 0; i < outputs.size(); i++) {
+                netStates[outputs.get(i)] = (byte) c.getOutputState(i).ordinal();
+            }
+        }
+        netStatesStale = false;
+    }
+
+    private void fireStateChanged() {
+        if (stateChanges.isEmpty()) return;
+        for (Consumer<Set<CircuitComponent>> listener : stateListeners) listener.accept(stateChanges);
+        stateChanges.clear();
     }
 
     // ==================================================================================
@@ -211,8 +431,11 @@ public class CircuitManager {
         CircuitPersistence.save(this, filepath);
     }
 
+    // The current circuit is kept if the file can't be read
     public void load(String filepath) throws IOException {
-        CircuitPersistence.load(this, filepath);
+        CircuitManager loaded = new CircuitManager();
+        CircuitPersistence.load(loaded, filepath);
+        replaceWith(loaded);
     }
 
     // ==================================================================================
@@ -220,30 +443,148 @@ public class CircuitManager {
     // ==================================================================================
 
     private void updatePinRegistry(CircuitComponent component) {
-        globalPinMap.putAll(component.getPinCoordinates());
+        for (Map.Entry<Integer, Point> entry : component.getPinCoordinates().entrySet()) {
+            int pin = entry.getKey();
+            if (pin >= pinLocations.length) pinLocations = Arrays.copyOf(pinLocations, Math.max(pin + 1, pinLocations.length * 2));
+            pinLocations[pin] = entry.getValue();
+        }
     }
 
     public void refreshAllPinLocations() {
-        globalPinMap.clear();
+        pinLocations = new Point[pinLimit()];
+        pinIndexStale = true;
+        spatialIndexStale = true;
         for (CircuitComponent component : components) {
-            globalPinMap.putAll(component.getPinCoordinates());
+            updatePinRegistry(component);
         }
+        fireLayoutChanged(null);
+    }
+
+    public CircuitComponent getComponentByPin(int pinID) {
+        ensurePinIndex();
+        return pinID >= 0 && pinID < pinOwners.length ? pinOwners[pinID] : null;
     }
 
-    public CircuitComponent getComponentByPin(int pinID) { 
+    // The pin driving an input through a wire, -1 if it is unconnected
+    private int getDriver(int inputPinID) {
+        ensurePinIndex();
+        return inputPinID >= 0 && inputPinID < pinDrivers.length ? pinDrivers[inputPinID] : -1;
+    }
+
+    // Rebuilds the owner, port and driver arrays after the components or wires changed
+    private void ensurePinIndex() {
+        if (!pinIndexStale) return;
+
+        int limit = pinLimit();
+        for (Wire w : wires) limit = Math.max(limit, w.getDestPinID() + 1);
+        pinOwners = new CircuitComponent[limit];
+        pinPorts = new int[limit];
+        pinDrivers = new int[limit];
+        Arrays.fill(pinDrivers, -1);
+
         for (CircuitComponent c : components) {
-            if (c.getOutputPinIDs().contains(pinID) || c.getInputPinIDs().contains(pinID)) {
-                return c;
+            List<Integer> inputs = c.getInputPinIDs();
+            for (int i = 0; i < inputs.size(); i++) {
+                pinOwners[inputs.get(i)] = c;
+                pinPorts[inputs.get(i)] = i;
+            }
+            List<Integer> outputs = c.getOutputPinIDs();
+            for (int i = 0; i < outputs.size(); i++) {
+                pinOwners[outputs.get(i)] = c;
+                pinPorts[outputs.get(i)] = ~i;
             }
         }
-        return null;
+        for (Wire w : wires) {
+            int dest = w.getDestPinID();
+            if (dest >= 0 && pinDrivers[dest] == -1) pinDrivers[dest] = w.getSourcePinID();
+        }
+        pinIndexStale = false;
     }
 
-    private Wire getWireConnectedToInput(int inputpinID) {
-        for (Wire w : wires) {
-            if (w.getDestPinID() == inputpinID) return w;
+    private void fireLayoutChanged(Rectangle area) {
+        for (Consumer<Rectangle> listener : layoutListeners) listener.accept(area);
+    }
+
+    // Rebuilds the spatial index from scratch after a bulk change
+    private void ensureSpatialIndex() {
+        if (!spatialIndexStale) return;
+
+        componentGrid.clear();
+        pinGrid.clear();
+        wireGrid.clear();
+        spatialIndexStale = false;
+        for (CircuitComponent c : components) indexComponent(c);
+        for (Wire w : wires) indexWire(w);
+    }
+
+    // The index...() and unindex...() helpers do nothing while the index is stale; the rebuild catches up
+    private void indexComponent(CircuitComponent c) {
+        if (spatialIndexStale) return;
+        componentGrid.insert(c, c.getX(), c.getY(), c.getWidth(), c.getHeight());
+        forEachPin(c, pin -> {
+            Point p = getPointForPin(pin);
+            if (p != null) pinGrid.insert(pin, p.x, p.y, 0, 0);
+        });
+    }
+
+    private void unindexComponent(CircuitComponent c) {
+        if (spatialIndexStale) return;
+        componentGrid.remove(c, c.getX(), c.getY(), c.getWidth(), c.getHeight());
+        forEachPin(c, pin -> {
+            Point p = getPointForPin(pin);
+            if (p != null) pinGrid.remove(pin, p.x, p.y, 0, 0);
+        });
+    }
+
+    // Wires to pins without a location can't be hit, so they are left out
+    private void indexWire(Wire w) {
+        if (spatialIndexStale) return;
+        Point p1 = getPointForPin(w.getSourcePinID());
+        Point p2 = getPointForPin(w.getDestPinID());
+        if (p1 != null && p2 != null) wireGrid.insertSegment(w, p1.x, p1.y, p2.x, p2.y);
+    }
+
+    private void unindexWire(Wire w) {
+        if (spatialIndexStale) return;
+        Point p1 = getPointForPin(w.getSourcePinID());
+        Point p2 = getPointForPin(w.getDestPinID());
+        if (p1 != null && p2 != null) wireGrid.removeSegment(w, p1.x, p1.y, p2.x, p2.y);
+    }
+
+    // Every wire ends on a pin, so the wires of a component are found in the cells of its pins
+    private List<Wire> attachedWires(CircuitComponent c) {
+        List<Wire> attached = new ArrayList<>();
+        if (spatialIndexStale) return attached;
+        forEachPin(c, pin -> {
+            Point p = getPointForPin(pin);
+            if (p == null) return;
+            wireGrid.query(p.x, p.y, 0, 0, w -> {
+                if ((w.getSourcePinID() == pin || w.getDestPinID() == pin) && !attached.contains(w)) attached.add(w);
+            });
+        });
+        return attached;
+    }
+
+    private static void forEachPin(CircuitComponent c, IntConsumer action) {
+        for (int pin : c.getInputPinIDs()) action.accept(pin);
+        for (int pin : c.getOutputPinIDs()) action.accept(pin);
+    }
+
+    private static int firstPin(CircuitComponent c) {
+        int first = Integer.MAX_VALUE;
+        for (int pin : c.getInputPinIDs()) first = Math.min(first, pin);
+        for (int pin : c.getOutputPinIDs()) first = Math.min(first, pin);
+        return first;
+    }
+
+    // One past the highest pin ID of any component
+    private int pinLimit() {
+        int limit = 0;
+        for (CircuitComponent c : components) {
+            for (int p : c.getInputPinIDs()) limit = Math.max(limit, p + 1);
+            for (int p : c.getOutputPinIDs()) limit = Math.max(limit, p + 1);
         }
-        return null;
+        return limit;
     }
 
     private double distanceToSegment(int px, int py, int x1, int y1, int x2, int y2) {
@@ -259,15 +600,18 @@ public class CircuitManager {
 
     public List<CircuitComponent> getComponents() { return components; }
     public List<Wire> getWires() { return wires; }
-    public Map<Integer, Point> getPinLocations() { return globalPinMap; }
-    public Point getPointForPin(int pinID) { return globalPinMap.get(pinID); }
-    
+    public Point getPointForPin(int pinID) {
+        return pinID >= 0 && pinID < pinLocations.length ? pinLocations[pinID] : null;
+    }
+
+    // The lowest pin ID within the radius, or -1
     public int getPinAt(int x, int y, int radius) {
-        for (Map.Entry<Integer, Point> entry : getPinLocations().entrySet()) {
-            if (entry.getValue().distance(x, y) <= radius) {
-                return entry.getKey();
-            }
-        }
-        return -1;
+        ensureSpatialIndex();
+        int[] found = {-1};
+        pinGrid.query(x - radius, y - radius, 2 * radius, 2 * radius, pin -> {
+            Point p = getPointForPin(pin);
+            if (p != null && p.distance(x, y) <= radius && (found[0] == -1 || pin < found[0])) found[0] = pin;
+        });
+        return found[0];
     }
 }
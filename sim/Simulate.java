@@ -35,6 +35,7 @@ public class Simulate extends JFrame {
         setupMenuBar();
         setupToolbar();
         setupKeyBindings();
+        SwingUtilities.invokeLater(actionHandler::resumeSession);
     }
 
     private void setupWindow() {
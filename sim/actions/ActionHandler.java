@@ -1,17 +1,24 @@
 package sim.actions;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
 
 import sim.CircuitComponent;
 import sim.CircuitManager;
+import sim.io.CircuitPersistence;
+import sim.io.CircuitSnapshot;
+import sim.gates.LookupTable;
+import sim.io.EditJournal;
 import sim.logic.CommandManager;
 import sim.logic.RemoveComponentCommand;
+import sim.logic.SubCircuitDefinition;
 import sim.model.SubCircuit;
 import sim.ui.CanvasPanel;
 import sim.ui.MouseController;
@@ -23,6 +30,8 @@ public class ActionHandler {
     private final MouseController mouseController;
     private final CommandManager commandManager;
     private File lastDirectory;
+    private EditJournal journal;
+    private SwingWorker<?, ?> pending; // The load, save or lookup table build in progress, if any
 
     public ActionHandler(JFrame parentFrame, CircuitManager manager, CanvasPanel canvas, MouseController mouseController, CommandManager commandManager) {
         this.parentFrame = parentFrame;
@@ -32,39 +41,100 @@ public class ActionHandler {
         this.commandManager = commandManager;
     }
 
+    // Offers to restore an untitled circuit left behind by a crash, then starts journaling edits.
+    // The log is replayed into a fresh manager, so a failure leaves the canvas empty rather than half restored.
+    public void resumeSession() {
+        String path = EditJournal.untitledPath();
+        if (EditJournal.hasRecovery(path) && confirmRecovery("an unsaved circuit")) {
+            CircuitManager recovered = new CircuitManager();
+            try {
+                EditJournal.replay(recovered, path);
+            } catch (Exception ex) {
+                // The log and snapshot are kept under another name, so the new journal can't overwrite them
+                try {
+                    String kept = EditJournal.setAside(path);
+                    canvas.showErrorMessage("Recovery Failed: " + ex.getMessage() + " (kept as " + kept + ")");
+                } catch (IOException moveEx) {
+                    canvas.showErrorMessage("Recovery Failed: " + ex.getMessage());
+                    System.err.println("Warning: Edit journal unavailable, recovery data left in place: " + moveEx.getMessage());
+                    return;
+                }
+                ex.printStackTrace();
+                startJournal(path, false);
+                return;
+            }
+
+            manager.replaceWith(recovered);
+            try {
+                useJournal(EditJournal.resume(manager, path));
+            } catch (IOException ex) {
+                // The old log still holds the recovered edits, so it is left alone
+                System.err.println("Warning: Edit journal unavailable: " + ex.getMessage());
+            }
+            canvas.repaint();
+            return;
+        }
+        startJournal(path, false); // Declining discards the old log
+    }
+
     public void performSave() {
+        if (isBusy()) return;
         JFileChooser fileChooser = new JFileChooser(lastDirectory);
         fileChooser.setDialogTitle("Save Circuit");
         if (fileChooser.showSaveDialog(parentFrame) == JFileChooser.APPROVE_OPTION) {
             File file = fileChooser.getSelectedFile();
             if (file != null) {
                 lastDirectory = file.getParentFile();
-                try {
-                    String path = file.getAbsolutePath();
-                    if (!path.endsWith(".json")) path += ".json";
-                    manager.save(path);
-                } catch (Exception ex) {
-                    canvas.showErrorMessage("Save Failed: " + ex.getMessage());
-                }
+                String path = CircuitPersistence.withExtension(file.getAbsolutePath());
+
+                // The snapshot is taken here, so editing can go on while it is written
+                CircuitSnapshot snapshot = CircuitSnapshot.of(manager);
+                long version = (journal != null) ? journal.getVersion() : -1;
+                SaveWorker worker = new SaveWorker(snapshot, path, () -> {
+                    boolean editedSince = (journal == null) || journal.getVersion() != version;
+                    restartJournal(path);
+                    if (editedSince) compactJournal(); // The file lacks those edits, so the new log must hold them
+                }, ex -> canvas.showErrorMessage("Save Failed: " + ex.getMessage()));
+                pending = worker;
+                worker.execute();
             }
         }
     }
 
     public void performLoad() {
+        if (isBusy()) return;
         JFileChooser fileChooser = new JFileChooser(lastDirectory);
         fileChooser.setDialogTitle("Load Circuit");
         if (fileChooser.showOpenDialog(parentFrame) == JFileChooser.APPROVE_OPTION) {
             File file = fileChooser.getSelectedFile();
             if (file != null) {
                 lastDirectory = file.getParentFile();
-                try {
-                    manager.load(file.getAbsolutePath());
+                String path = file.getAbsolutePath();
+                boolean recover = EditJournal.hasRecovery(path) && confirmRecovery(file.getName());
+
+                // The circuit is read into a fresh manager and swapped in once complete,
+                // so cancelling or failing leaves the current circuit and its journal as they were
+                LoadWorker worker = new LoadWorker(parentFrame, path, recover, loaded -> {
+                    closeJournal(); // Kept on disk, so the edits can still be recovered from that file later
+                    manager.replaceWith(loaded);
+                    if (recover) {
+                        try {
+                            useJournal(EditJournal.resume(manager, path));
+                        } catch (IOException ex) {
+                            System.err.println("Warning: Edit journal unavailable: " + ex.getMessage());
+                        }
+                    } else {
+                        startJournal(path, true);
+                    }
                     commandManager.clear();
+                    mouseController.clearSelection();
                     canvas.repaint();
-                } catch (Exception ex) {
+                }, ex -> {
                     canvas.showErrorMessage("Load Failed: " + ex.getMessage());
                     ex.printStackTrace();
-                }
+                });
+                pending = worker;
+                worker.start();
             }
         }
     }
@@ -83,11 +153,61 @@ public class ActionHandler {
             // Note: createSubCircuit modifies multiple things (removes components, adds one).
             // For simplicity, we clear history after such a complex operation or implement a macro command.
             commandManager.clear();
+            compactJournal();
             mouseController.clearSelection();
             canvas.repaint();
         }
     }
 
+    public void convertToLookupTable() {
+        if (isBusy()) return;
+        List<CircuitComponent> selectedComponents = mouseController.getSelectedComponents();
+        if (selectedComponents.isEmpty()) {
+            JOptionPane.showMessageDialog(parentFrame, "Please select a Sub-Circuit or the components to convert.", "No Selection", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        SubCircuit sub = null;
+        String name;
+        List<CircuitComponent> components = new ArrayList<>(selectedComponents);
+        SubCircuitDefinition definition;
+        if (components.size() == 1 && components.get(0) instanceof SubCircuit) {
+            sub = (SubCircuit) components.get(0);
+            name = sub.getID();
+            definition = sub.getCircuitDefinition();
+        } else {
+            name = JOptionPane.showInputDialog(parentFrame, "Enter a name for the lookup table:", "Convert to Lookup Table", JOptionPane.PLAIN_MESSAGE);
+            if (name == null || name.trim().isEmpty()) return;
+            definition = manager.defineBlock(components);
+        }
+
+        // Validating compiles the block, which reads the live components, so it stays on this thread
+        String validationError = LookupTable.validate(definition);
+        if (validationError != null) {
+            canvas.showErrorMessage(validationError);
+            return;
+        }
+
+        // The table is enumerated in the background and swapped in once complete, unless the block changed meanwhile
+        SubCircuit target = sub;
+        LookupTableWorker worker = new LookupTableWorker(parentFrame, name, definition, table -> {
+            String error = (target != null)
+                    ? manager.convertToLookupTable(target, table)
+                    : manager.createLookupTable(name, components, definition, table);
+            if (error != null) {
+                canvas.showErrorMessage(error);
+                return;
+            }
+            // Same as sub-circuit creation: several components change at once, so history is reset.
+            commandManager.clear();
+            compactJournal();
+            mouseController.clearSelection();
+            canvas.repaint();
+        }, ex -> canvas.showErrorMessage("Conversion Failed: " + ex.getMessage()));
+        pending = worker;
+        worker.start();
+    }
+
     public void performExport() {
         List<CircuitComponent> selected = mouseController.getSelectedComponents();
         if (selected.size() != 1 || !(selected.get(0) instanceof SubCircuit)) {
@@ -124,6 +244,7 @@ public class ActionHandler {
                     // Sub-circuit import is an Add action.
                     // For now, we clear history as the newly added component might be complex.
                     commandManager.clear();
+                    compactJournal();
                     canvas.repaint();
                 } catch (Exception ex) {
                     canvas.showErrorMessage("Import Failed: " + ex.getMessage());
@@ -133,6 +254,58 @@ public class ActionHandler {
         }
     }
 
+    public void performNetlistImport() {
+        if (isBusy()) return;
+        JFileChooser fileChooser = new JFileChooser(lastDirectory);
+        fileChooser.setDialogTitle("Import Netlist");
+        if (fileChooser.showOpenDialog(parentFrame) == JFileChooser.APPROVE_OPTION) {
+            File file = fileChooser.getSelectedFile();
+            if (file != null) {
+                lastDirectory = file.getParentFile();
+                int choice = JOptionPane.showConfirmDialog(parentFrame,
+                        "Arrange the imported gates by logic level?\nVery large netlists load faster without.",
+                        "Import Netlist", JOptionPane.YES_NO_CANCEL_OPTION);
+                if (choice != JOptionPane.YES_OPTION && choice != JOptionPane.NO_OPTION) return;
+                boolean autoPlace = (choice == JOptionPane.YES_OPTION);
+                String name = file.getName();
+
+                LoadWorker worker = new LoadWorker(parentFrame, file.getAbsolutePath(),
+                        (loaded, in) -> CircuitPersistence.importNetlist(loaded, in, name, autoPlace), loaded -> {
+                    // Not a circuit file, so there is nothing to journal against until it is saved
+                    closeJournal();
+                    manager.replaceWith(loaded);
+                    commandManager.clear();
+                    mouseController.clearSelection();
+                    canvas.repaint();
+                }, ex -> {
+                    canvas.showErrorMessage("Import Failed: " + ex.getMessage());
+                    ex.printStackTrace();
+                });
+                pending = worker;
+                worker.start();
+            }
+        }
+    }
+
+    public void performNetlistExport() {
+        if (isBusy()) return;
+        JFileChooser fileChooser = new JFileChooser(lastDirectory);
+        fileChooser.setDialogTitle("Export Verilog Netlist");
+        if (fileChooser.showSaveDialog(parentFrame) == JFileChooser.APPROVE_OPTION) {
+            File file = fileChooser.getSelectedFile();
+            if (file != null) {
+                lastDirectory = file.getParentFile();
+                String path = file.getAbsolutePath();
+                if (!path.endsWith(CircuitPersistence.VERILOG_EXTENSION)) path += CircuitPersistence.VERILOG_EXTENSION;
+
+                SaveWorker worker = new SaveWorker(CircuitSnapshot.of(manager), path, CircuitPersistence::exportVerilog,
+                        () -> {}, ex -> canvas.showErrorMessage("Export Failed: " + ex.getMessage()));
+                pending = worker;
+                worker.execute();
+            }
+        }
+    }
+
     public void performDelete() {
         List<CircuitComponent> selected = mouseController.getSelectedComponents();
         if (!selected.isEmpty()) {
@@ -141,4 +314,59 @@ public class ActionHandler {
             canvas.repaint();
         }
     }
+
+    // ==================================================================================
+    // EDIT JOURNAL
+    // ==================================================================================
+
+    private boolean confirmRecovery(String name) {
+        int choice = JOptionPane.showConfirmDialog(parentFrame,
+                "Edits to " + name + " were not saved. Recover them?", "Recover Edits", JOptionPane.YES_NO_OPTION);
+        return choice == JOptionPane.YES_OPTION;
+    }
+
+    // Only one load, save or lookup table build runs at a time
+    private boolean isBusy() {
+        if (pending == null || pending.isDone()) return false;
+        JOptionPane.showMessageDialog(parentFrame, "Please wait for the current operation to finish.", "Busy", JOptionPane.INFORMATION_MESSAGE);
+        return true;
+    }
+
+    private void startJournal(String path, boolean renumberPins) {
+        try {
+            useJournal(EditJournal.start(manager, path, renumberPins));
+        } catch (IOException ex) {
+            System.err.println("Warning: Edit journal unavailable: " + ex.getMessage());
+            useJournal(null);
+        }
+    }
+
+    // Everything journaled so far is in the saved file now
+    private void restartJournal(String path) {
+        try {
+            if (journal != null) journal.discard();
+        } catch (IOException ex) {
+            System.err.println("Warning: Edit journal not removed: " + ex.getMessage());
+        }
+        startJournal(path, false);
+    }
+
+    private void useJournal(EditJournal journal) {
+        this.journal = journal;
+        commandManager.setJournal(journal);
+    }
+
+    private void closeJournal() {
+        try {
+            if (journal != null) journal.close();
+        } catch (IOException ex) {
+            System.err.println("Warning: Edit journal not closed: " + ex.getMessage());
+        }
+        useJournal(null);
+    }
+
+    // Edits made outside of commands are captured by a snapshot instead
+    private void compactJournal() {
+        if (journal != null) journal.compact();
+    }
 }
@@ -0,0 +1,116 @@
+package sim.actions;
+
+import java.awt.Component;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+
+import sim.CircuitManager;
+import sim.io.CircuitPersistence;
+import sim.io.EditJournal;
+import sim.io.ProgressInputStream;
+
+/**
+ * Reads a circuit file, its edit journal or an imported netlist into a fresh CircuitManager off the Swing thread.
+ * A progress dialog follows the bytes read (or the edits replayed) and can cancel the load. Circuit files are read
+ * by path, so uncompressed binary ones are memory-mapped rather than streamed. Cancelling interrupts
+ * the worker, which every phase of a load checks, so building and settling stop as well. The live circuit isn't
+ * touched until the result is handed over, so a cancelled or failed load leaves it exactly as it was.
+ */
+class LoadWorker extends SwingWorker<CircuitManager, Void> {
+
+    private static final int CANCEL_POLL_MS = 100;
+    private static final int READ_PERCENT = 80; // Share of the bar for reading the file; building and settling get the rest
+
+    @FunctionalInterface
+    interface StreamLoader {
+        void load(CircuitManager manager, InputStream in) throws IOException;
+    }
+
+    private final String path;
+    private final boolean recover;     // Replay the edit journal instead of reading the file
+    private final StreamLoader loader; // For imports; null for circuit files
+    private final Consumer<CircuitManager> onLoaded;
+    private final Consumer<Throwable> onFailed;
+
+    private final ProgressMonitor monitor;
+    private final Timer cancelPoll;
+
+    LoadWorker(Component parent, String path, boolean recover, Consumer<CircuitManager> onLoaded, Consumer<Throwable> onFailed) {
+        this(parent, path, recover, null, onLoaded, onFailed);
+    }
+
+    LoadWorker(Component parent, String path, StreamLoader loader, Consumer<CircuitManager> onLoaded, Consumer<Throwable> onFailed) {
+        this(parent, path, false, loader, onLoaded, onFailed);
+    }
+
+    private LoadWorker(Component parent, String path, boolean recover, StreamLoader loader,
+                       Consumer<CircuitManager> onLoaded, Consumer<Throwable> onFailed) {
+        this.path = path;
+        this.recover = recover;
+        this.loader = loader;
+        this.onLoaded = onLoaded;
+        this.onFailed = onFailed;
+
+        this.monitor = new ProgressMonitor(parent, "Loading " + Paths.get(path).getFileName(),
+                recover ? "Replaying edits" : "Reading file", 0, 100);
+        this.cancelPoll = new Timer(CANCEL_POLL_MS, e -> {
+            if (monitor.isCanceled()) cancel(true);
+        });
+        addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) monitor.setProgress((Integer) e.getNewValue());
+            if ("note".equals(e.getPropertyName())) monitor.setNote((String) e.getNewValue());
+        });
+    }
+
+    void start() {
+        cancelPoll.start();
+        execute();
+    }
+
+    @Override
+    protected CircuitManager doInBackground() throws Exception {
+        CircuitManager loaded = new CircuitManager();
+        if (recover) {
+            EditJournal.replay(loaded, path, percent -> setProgress(Math.min(99, percent)));
+        } else if (loader == null) {
+            CircuitPersistence.load(loaded, path, this::readProgress);
+        } else {
+            Path file = Paths.get(path);
+            try (InputStream in = new ProgressInputStream(Files.newInputStream(file), Files.size(file), this::readProgress)) {
+                loader.load(loaded, in);
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    protected void done() {
+        cancelPoll.stop();
+        monitor.close();
+        if (isCancelled()) return;
+
+        try {
+            onLoaded.accept(get());
+        } catch (ExecutionException e) {
+            onFailed.accept(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Reading the file fills most of the bar. The rest of the load (building, compiling blocks, settling)
+    // checks for cancelling between phases.
+    private void readProgress(int percent) {
+        if (percent >= 100 && getProgress() < READ_PERCENT) firePropertyChange("note", null, "Building circuit");
+        setProgress(percent * READ_PERCENT / 100);
+    }
+}
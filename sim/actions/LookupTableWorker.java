@@ -0,0 +1,69 @@
+package sim.actions;
+
+import java.awt.Component;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+
+import sim.gates.LookupTable;
+import sim.logic.SubCircuitDefinition;
+
+/**
+ * Enumerates the truth table of a block off the Swing thread, behind a progress dialog that can cancel it.
+ * The circuit isn't touched here: the finished table is handed back on the Swing thread to be swapped in.
+ */
+class LookupTableWorker extends SwingWorker<long[], Void> {
+
+    private static final int CANCEL_POLL_MS = 100;
+
+    private final SubCircuitDefinition definition;
+    private final Consumer<long[]> onBuilt;
+    private final Consumer<Throwable> onFailed;
+
+    private final ProgressMonitor monitor;
+    private final Timer cancelPoll;
+
+    LookupTableWorker(Component parent, String name, SubCircuitDefinition definition,
+                      Consumer<long[]> onBuilt, Consumer<Throwable> onFailed) {
+        this.definition = definition;
+        this.onBuilt = onBuilt;
+        this.onFailed = onFailed;
+
+        this.monitor = new ProgressMonitor(parent, "Building lookup table " + name,
+                (1L << definition.getInputCount()) + " input combinations", 0, 100);
+        this.cancelPoll = new Timer(CANCEL_POLL_MS, e -> {
+            if (monitor.isCanceled()) cancel(true);
+        });
+        addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) monitor.setProgress((Integer) e.getNewValue());
+        });
+    }
+
+    void start() {
+        cancelPoll.start();
+        execute();
+    }
+
+    @Override
+    protected long[] doInBackground() throws Exception {
+        return LookupTable.enumerate(definition, percent -> setProgress(Math.min(99, percent)));
+    }
+
+    @Override
+    protected void done() {
+        cancelPoll.stop();
+        monitor.close();
+        if (isCancelled()) return;
+
+        try {
+            onBuilt.accept(get());
+        } catch (ExecutionException e) {
+            onFailed.accept(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
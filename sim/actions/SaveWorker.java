@@ -0,0 +1,58 @@
+package sim.actions;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import javax.swing.SwingWorker;
+
+import sim.io.CircuitPersistence;
+import sim.io.CircuitSnapshot;
+
+/**
+ * Writes a snapshot taken on the Swing thread to disk on a background thread, so editing can go on
+ * while a large circuit is formatted and written.
+ */
+class SaveWorker extends SwingWorker<Void, Void> {
+
+    @FunctionalInterface
+    interface SnapshotWriter {
+        void write(CircuitSnapshot snapshot, String path) throws IOException;
+    }
+
+    private final CircuitSnapshot snapshot;
+    private final String path;
+    private final SnapshotWriter writer;
+    private final Runnable onSaved;
+    private final Consumer<Throwable> onFailed;
+
+    SaveWorker(CircuitSnapshot snapshot, String path, Runnable onSaved, Consumer<Throwable> onFailed) {
+        this(snapshot, path, CircuitPersistence::save, onSaved, onFailed);
+    }
+
+    SaveWorker(CircuitSnapshot snapshot, String path, SnapshotWriter writer, Runnable onSaved, Consumer<Throwable> onFailed) {
+        this.snapshot = snapshot;
+        this.path = path;
+        this.writer = writer;
+        this.onSaved = onSaved;
+        this.onFailed = onFailed;
+    }
+
+    @Override
+    protected Void doInBackground() throws Exception {
+        writer.write(snapshot, path);
+        return null;
+    }
+
+    @Override
+    protected void done() {
+        try {
+            get();
+            onSaved.run();
+        } catch (ExecutionException e) {
+            onFailed.accept(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
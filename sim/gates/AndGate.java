@@ -1,6 +1,5 @@
 package sim.gates;
 
-import java.awt.BasicStroke;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.geom.Arc2D;
@@ -9,9 +8,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import sim.CircuitManager;
 import sim.util.PinID;
 import sim.util.PinState;
+import sim.util.RenderResources;
 import sim.util.Theme;
 import sim.util.ThemeManager;
 
@@ -33,6 +32,9 @@ public class AndGate extends LogicGate {
     private static final int PIN_Y_OUTPUT = BODY_HEIGHT / 2;
 
 
+    // Body outline at the origin, translated into place when drawn
+    private static final Path2D BODY = createBody();
+
     public AndGate(String id, int x, int y) {
         super(id, x, y, BODY_WIDTH, BODY_HEIGHT, "AND");
 
@@ -48,9 +50,9 @@ public class AndGate extends LogicGate {
     }
 
     @Override
-    public boolean updateState(CircuitManager manager) {
-        PinState in1 = manager.getPinState(inputPinIDs.get(0));
-        PinState in2 = manager.getPinState(inputPinIDs.get(1));
+    public void evaluate(PinState[] inputs, PinState[] outputs) {
+        PinState in1 = inputs[0];
+        PinState in2 = inputs[1];
         
         PinState newState;
         if (in1 == PinState.LOW || in2 == PinState.LOW) {
@@ -61,30 +63,15 @@ public class AndGate extends LogicGate {
             newState = PinState.FLOATING;
         }
 
-        boolean hasChanged = (outputState[0] != newState);
-        outputState[0] = newState;
-        return hasChanged;
+        outputs[0] = newState;
     }
 
     @Override
     public void draw(Graphics2D g2) {
         Theme theme = ThemeManager.getTheme();
         
-        // Create the 'D' shape
-        Path2D.Double shape = new Path2D.Double();
-        shape.moveTo(x, y);
-        shape.lineTo(x + ARC_OFFSET, y);
-        shape.append(new Arc2D.Double(x - ARC_OFFSET, y, ARC_DIAMETER, BODY_HEIGHT, ARC_START_ANGLE, ARC_ANGLE_EXTENT, Arc2D.OPEN), true);
-        shape.lineTo(x, y + BODY_HEIGHT);
-        shape.closePath();
-
         // Body
-        g2.setColor(theme.componentBody);
-        g2.fill(shape);
-        
-        g2.setColor(theme.componentBorder);
-        g2.setStroke(new BasicStroke(2));
-        g2.draw(shape);
+        RenderResources.drawBody(g2, BODY, x, y, theme);
 
         // Lines for PINs
         g2.setColor(theme.pinLine);
@@ -93,6 +80,16 @@ public class AndGate extends LogicGate {
         g2.drawLine(x + BODY_WIDTH, y + PIN_Y_OUTPUT, x + BODY_WIDTH + PIN_WIDTH, y + PIN_Y_OUTPUT);
     }
 
+    private static Path2D createBody() {
+        Path2D.Double shape = new Path2D.Double();
+        shape.moveTo(0, 0);
+        shape.lineTo(ARC_OFFSET, 0);
+        shape.append(new Arc2D.Double(-ARC_OFFSET, 0, ARC_DIAMETER, BODY_HEIGHT, ARC_START_ANGLE, ARC_ANGLE_EXTENT, Arc2D.OPEN), true);
+        shape.lineTo(0, BODY_HEIGHT);
+        shape.closePath();
+        return shape;
+    }
+
     @Override
     public Map<Integer, Point> getPinCoordinates() {
         Map<Integer, Point> coords = new HashMap<>();
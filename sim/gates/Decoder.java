@@ -1,6 +1,5 @@
 package sim.gates;
 
-import java.awt.BasicStroke;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.geom.Path2D;
@@ -9,9 +8,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import sim.CircuitManager;
 import sim.util.PinID;
 import sim.util.PinState;
+import sim.util.RenderResources;
 import sim.util.Theme;
 import sim.util.ThemeManager;
 
@@ -33,6 +32,9 @@ public class Decoder extends LogicGate{
     private static final int OUTPUT_2 = 60;
     private static final int OUTPUT_3 = 80;
 
+    // Body outline at the origin, translated into place when drawn
+    private static final Path2D BODY = createBody();
+
     public Decoder(String id, int x, int y) {
         super(id, x, y, BODY_WIDTH, BODY_HEIGHT, "DECODER");
 
@@ -51,45 +53,28 @@ public class Decoder extends LogicGate{
     }
 
     @Override
-    public boolean updateState(CircuitManager manager) {
-        PinState bit0 = manager.getPinState(inputPinIDs.get(0));
-        PinState bit1 = manager.getPinState(inputPinIDs.get(1));
-
-        PinState[] oldState = Arrays.copyOf(outputState, 4);
+    public void evaluate(PinState[] inputs, PinState[] outputs) {
+        PinState bit0 = inputs[0];
+        PinState bit1 = inputs[1];
 
         if (bit0 == PinState.FLOATING || bit1 == PinState.FLOATING) {
-            Arrays.fill(outputState, PinState.FLOATING);
+            Arrays.fill(outputs, PinState.FLOATING);
         } else {
             boolean b0 = (bit0 == PinState.HIGH);
             boolean b1 = (bit1 == PinState.HIGH);
-            outputState[0] = (!b1 && !b0) ? PinState.HIGH : PinState.LOW;
-            outputState[1] = (!b1 && b0) ? PinState.HIGH : PinState.LOW;
-            outputState[2] = (b1 && !b0) ? PinState.HIGH : PinState.LOW;
-            outputState[3] = (b1 && b0) ? PinState.HIGH : PinState.LOW;
+            outputs[0] = (!b1 && !b0) ? PinState.HIGH : PinState.LOW;
+            outputs[1] = (!b1 && b0) ? PinState.HIGH : PinState.LOW;
+            outputs[2] = (b1 && !b0) ? PinState.HIGH : PinState.LOW;
+            outputs[3] = (b1 && b0) ? PinState.HIGH : PinState.LOW;
         }
-
-        return !Arrays.equals(outputState, oldState);
     }
 
     @Override
     public void draw(Graphics2D g2) {
         Theme theme = ThemeManager.getTheme();
 
-        // Inverted Trapezoid Shape
-        Path2D.Double shape = new Path2D.Double();
-        shape.moveTo(x, y + TRAP_TOP);
-        shape.lineTo(x + BODY_WIDTH, y);
-        shape.lineTo(x + BODY_WIDTH, y + BODY_HEIGHT);
-        shape.lineTo(x, y + TRAP_BOT);
-        shape.closePath();
-
         // Body
-        g2.setColor(theme.componentBody);
-        g2.fill(shape);
-
-        g2.setColor(theme.componentBorder);
-        g2.setStroke(new BasicStroke(2));
-        g2.draw(shape);
+        RenderResources.drawBody(g2, BODY, x, y, theme);
 
         // Lines for PINs
         g2.setColor(theme.pinLine);
@@ -103,6 +88,16 @@ public class Decoder extends LogicGate{
         g2.drawLine(x + BODY_WIDTH, y + OUTPUT_3, x + BODY_WIDTH + PIN_WIDTH, y + OUTPUT_3);
     }
 
+    private static Path2D createBody() {
+        Path2D.Double shape = new Path2D.Double();
+        shape.moveTo(0, TRAP_TOP);
+        shape.lineTo(BODY_WIDTH, 0);
+        shape.lineTo(BODY_WIDTH, BODY_HEIGHT);
+        shape.lineTo(0, TRAP_BOT);
+        shape.closePath();
+        return shape;
+    }
+
     @Override
     public Map<Integer, Point> getPinCoordinates() {
         Map<Integer, Point> coords = new HashMap<>();
@@ -1,6 +1,5 @@
 package sim.gates;
 
-import java.awt.BasicStroke;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.geom.Path2D;
@@ -8,9 +7,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import sim.CircuitManager;
 import sim.util.PinID;
 import sim.util.PinState;
+import sim.util.RenderResources;
 import sim.util.Theme;
 import sim.util.ThemeManager;
 
@@ -32,6 +31,9 @@ public class DemuxGate extends LogicGate {
     private static final int PIN_Y_OUTPUT_1 = 60;
 
 
+    // Body outline at the origin, translated into place when drawn
+    private static final Path2D BODY = createBody();
+
     public DemuxGate(String id, int x, int y) {
         super(id, x, y, BODY_WIDTH, BODY_HEIGHT, "DEMUX");
 
@@ -52,49 +54,30 @@ public class DemuxGate extends LogicGate {
     }
 
     @Override
-    public boolean updateState(CircuitManager manager) {
-        PinState input = manager.getPinState(inputPinIDs.get(0));
-        PinState select = manager.getPinState(inputPinIDs.get(1));
-        
-        PinState oldState0 = outputState[0];
-        PinState oldState1 = outputState[1];
+    public void evaluate(PinState[] inputs, PinState[] outputs) {
+        PinState input = inputs[0];
+        PinState select = inputs[1];
 
         if (select == PinState.FLOATING || input == PinState.FLOATING) {
-            outputState[0] = PinState.FLOATING;
-            outputState[1] = PinState.FLOATING;
+            outputs[0] = PinState.FLOATING;
+            outputs[1] = PinState.FLOATING;
         } else if (select == PinState.LOW) {
             // If select is 0, Y0 = IN, Y1 = 0
-            outputState[0] = input;
-            outputState[1] = PinState.LOW;
+            outputs[0] = input;
+            outputs[1] = PinState.LOW;
         } else {
             // If select is 1, Y0 = 0, Y1 = IN
-            outputState[0] = PinState.LOW;
-            outputState[1] = input;
+            outputs[0] = PinState.LOW;
+            outputs[1] = input;
         }
-        
-        // Return true if either output changed
-        return (outputState[0] != oldState0) || (outputState[1] != oldState1);
     }
 
     @Override
     public void draw(Graphics2D g2) {
         Theme theme = ThemeManager.getTheme();
         
-        // Create the inverted trapezoid shape
-        Path2D.Double shape = new Path2D.Double();
-        shape.moveTo(x, y + TRAP_TOP);
-        shape.lineTo(x + BODY_WIDTH, y);
-        shape.lineTo(x + BODY_WIDTH, y + BODY_HEIGHT);
-        shape.lineTo(x, y + TRAP_BOT);
-        shape.closePath();
-
         // Body
-        g2.setColor(theme.componentBody);
-        g2.fill(shape);
-        
-        g2.setColor(theme.componentBorder);
-        g2.setStroke(new BasicStroke(2));
-        g2.draw(shape);
+        RenderResources.drawBody(g2, BODY, x, y, theme);
 
         // Lines for PINs
         g2.setColor(theme.pinLine);
@@ -107,6 +90,16 @@ public class DemuxGate extends LogicGate {
         g2.drawLine(x + BODY_WIDTH, y + PIN_Y_OUTPUT_1, x + BODY_WIDTH + PIN_WIDTH, y + PIN_Y_OUTPUT_1);
     }
 
+    private static Path2D createBody() {
+        Path2D.Double shape = new Path2D.Double();
+        shape.moveTo(0, TRAP_TOP);
+        shape.lineTo(BODY_WIDTH, 0);
+        shape.lineTo(BODY_WIDTH, BODY_HEIGHT);
+        shape.lineTo(0, TRAP_BOT);
+        shape.closePath();
+        return shape;
+    }
+
     @Override
     public Map<Integer, Point> getPinCoordinates() {
         Map<Integer, Point> coords = new HashMap<>();
@@ -1,6 +1,5 @@
 package sim.gates;
 
-import java.awt.BasicStroke;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.geom.Path2D;
@@ -9,9 +8,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import sim.CircuitManager;
 import sim.util.PinID;
 import sim.util.PinState;
+import sim.util.RenderResources;
 import sim.util.Theme;
 import sim.util.ThemeManager;
 import sim.model.Tooltype;
@@ -36,6 +35,9 @@ public class Encoder extends LogicGate {
     private static final int OUTPUT_1 = 50;
     private static final int OUTPUT_V = 70; // For Validation that at least one input is on
 
+    // Body outline at the origin, translated into place when drawn
+    private static final Path2D BODY = createBody();
+
     public Encoder(String id, int x, int y) {
         super(id, x, y, BODY_WIDTH, BODY_HEIGHT, "ENCODER");
 
@@ -55,62 +57,45 @@ public class Encoder extends LogicGate {
     }
 
     @Override
-    public boolean updateState(CircuitManager manager) {
-        PinState i0 = manager.getPinState(inputPinIDs.get(0));
-        PinState i1 = manager.getPinState(inputPinIDs.get(1));
-        PinState i2 = manager.getPinState(inputPinIDs.get(2));
-        PinState i3 = manager.getPinState(inputPinIDs.get(3));
-
-        PinState[] oldState = Arrays.copyOf(outputState, 3);
-        
+    public void evaluate(PinState[] inputs, PinState[] outputs) {
+        PinState i0 = inputs[0];
+        PinState i1 = inputs[1];
+        PinState i2 = inputs[2];
+        PinState i3 = inputs[3];
+
         // Priority Encoder Logic
         if (i3 == PinState.HIGH) {
-            outputState[0] = PinState.HIGH; // Y0
-            outputState[1] = PinState.HIGH; // Y1
-            outputState[2] = PinState.HIGH; // V
+            outputs[0] = PinState.HIGH; // Y0
+            outputs[1] = PinState.HIGH; // Y1
+            outputs[2] = PinState.HIGH; // V
         } else if (i2 == PinState.HIGH) {
-            outputState[0] = PinState.LOW; // Y0
-            outputState[1] = PinState.HIGH;  // Y1
-            outputState[2] = PinState.HIGH; // V
+            outputs[0] = PinState.LOW; // Y0
+            outputs[1] = PinState.HIGH;  // Y1
+            outputs[2] = PinState.HIGH; // V
         } else if (i1 == PinState.HIGH) {
-            outputState[0] = PinState.HIGH;  // Y0
-            outputState[1] = PinState.LOW; // Y1
-            outputState[2] = PinState.HIGH; // V
+            outputs[0] = PinState.HIGH;  // Y0
+            outputs[1] = PinState.LOW; // Y1
+            outputs[2] = PinState.HIGH; // V
         } else if (i0 == PinState.HIGH) {
-            outputState[0] = PinState.LOW;  // Y0
-            outputState[1] = PinState.LOW;  // Y1
-            outputState[2] = PinState.HIGH; // V
+            outputs[0] = PinState.LOW;  // Y0
+            outputs[1] = PinState.LOW;  // Y1
+            outputs[2] = PinState.HIGH; // V
         } else if (i0 == PinState.FLOATING || i1 == PinState.FLOATING || i2 == PinState.FLOATING || i3 == PinState.FLOATING) {
-            Arrays.fill(outputState, PinState.FLOATING);
+            Arrays.fill(outputs, PinState.FLOATING);
         }
         else { // All are LOW
-            outputState[0] = PinState.FLOATING;
-            outputState[1] = PinState.FLOATING;
-            outputState[2] = PinState.LOW;
+            outputs[0] = PinState.FLOATING;
+            outputs[1] = PinState.FLOATING;
+            outputs[2] = PinState.LOW;
         }
-
-        return !Arrays.equals(outputState, oldState);
     }
 
     @Override
     public void draw(Graphics2D g2) {
         Theme theme = ThemeManager.getTheme();
 
-        // Inverted Trapezoid Shape (same as Decoder but mirrored)
-        Path2D.Double shape = new Path2D.Double();
-        shape.moveTo(x + BODY_WIDTH, y + TRAP_TOP);
-        shape.lineTo(x, y);
-        shape.lineTo(x, y + BODY_HEIGHT);
-        shape.lineTo(x + BODY_WIDTH, y + TRAP_BOT);
-        shape.closePath();
-
         // Body
-        g2.setColor(theme.componentBody);
-        g2.fill(shape);
-
-        g2.setColor(theme.componentBorder);
-        g2.setStroke(new BasicStroke(2));
-        g2.draw(shape);
+        RenderResources.drawBody(g2, BODY, x, y, theme);
 
         // Lines for PINs
         g2.setColor(theme.pinLine);
@@ -126,6 +111,16 @@ public class Encoder extends LogicGate {
         g2.drawLine(x + BODY_WIDTH, y + OUTPUT_V, x + BODY_WIDTH + PIN_WIDTH, y + OUTPUT_V);
     }
 
+    private static Path2D createBody() {
+        Path2D.Double shape = new Path2D.Double();
+        shape.moveTo(BODY_WIDTH, TRAP_TOP);
+        shape.lineTo(0, 0);
+        shape.lineTo(0, BODY_HEIGHT);
+        shape.lineTo(BODY_WIDTH, TRAP_BOT);
+        shape.closePath();
+        return shape;
+    }
+
     @Override
     public Map<Integer, Point> getPinCoordinates() {
         Map<Integer, Point> coords = new HashMap<>();
@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Map;
 
 import sim.CircuitComponent;
+import sim.CircuitManager;
 import sim.util.PinState;
 
 public abstract class LogicGate extends CircuitComponent {
@@ -19,6 +20,10 @@ public abstract class LogicGate extends CircuitComponent {
     protected String label;
     protected PinState[] outputState;
 
+    // Scratch buffers reused across updates to keep propagation allocation-free
+    private PinState[] inputScratch = new PinState[0];
+    private PinState[] outputScratch = new PinState[0];
+
     public LogicGate(String id, int x, int y, int width, int height, String label) {
         super(id, x, y, width, height);
         this.label = label;
@@ -42,6 +47,25 @@ public abstract class LogicGate extends CircuitComponent {
         return PinState.FLOATING;
     }
 
+    @Override
+    public boolean updateState(CircuitManager manager) {
+        if (inputScratch.length != inputPinIDs.size()) inputScratch = new PinState[inputPinIDs.size()];
+        if (outputScratch.length != outputState.length) outputScratch = new PinState[outputState.length];
+
+        for (int i = 0; i < inputScratch.length; i++) {
+            inputScratch[i] = manager.getPinState(inputPinIDs.get(i));
+        }
+        evaluate(inputScratch, outputScratch);
+
+        boolean hasChanged = !Arrays.equals(outputState, outputScratch);
+        System.arraycopy(outputScratch, 0, outputState, 0, outputState.length);
+        return hasChanged;
+    }
+
+    // Pure logic function of the gate: derives the outputs from the inputs only.
+    // Shared by live propagation and by compiled sub-circuit netlists.
+    public abstract void evaluate(PinState[] inputs, PinState[] outputs);
+
     public abstract void draw(Graphics2D g2);
 
     public abstract Map<Integer, Point> getPinCoordinates();
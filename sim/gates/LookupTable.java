@@ -0,0 +1,306 @@
+package sim.gates;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import sim.logic.SubCircuitDefinition;
+import sim.model.Tooltype;
+import sim.util.PinID;
+import sim.util.PinState;
+import sim.util.RenderResources;
+import sim.util.Theme;
+import sim.util.ThemeManager;
+
+/**
+ * A native lookup-table component holding the full truth table of a combinational block.
+ * Each input combination stores two bits per output (the PinState ordinal), packed into a long[],
+ * so evaluation is a single index regardless of how large the original block was.
+ */
+public class LookupTable extends LogicGate {
+
+    // --- CONSTANTS ---
+    public static final int MAX_INPUTS = 20;
+    public static final int MAX_OUTPUTS = 32;
+
+    private static final int PIN_WIDTH = 7;
+    private static final int PIN_SPACING = 25;
+    private static final int MIN_HEIGHT = 60;
+    private static final int FIXED_WIDTH = 120;
+    private static final PinState[] STATES = PinState.values();
+    private static final int PROGRESS_ROWS = 1 << 12; // Rows enumerated between progress reports
+
+    private final int inputCount;
+    private final int outputCount;
+    private final long[] table;
+    private final List<String> inputLabels;
+    private final List<String> outputLabels;
+
+    private Map<Integer, Point> pinCoordinates = new HashMap<>();
+
+    public LookupTable(String id, int x, int y, int inputCount, int outputCount, long[] table,
+                       List<String> inputLabels, List<String> outputLabels) {
+        this(id, x, y, freshPins(inputCount), freshPins(outputCount), inputCount, outputCount, table, inputLabels, outputLabels);
+    }
+
+    // Loading Constructor. A table that doesn't match its counts or pins fails with IllegalArgumentException.
+    public LookupTable(String id, int x, int y, List<Integer> inPins, List<Integer> outPins, Map<String, Object> data) {
+        this(id, x, y, inPins, outPins,
+             readCount(data, "inputs"),
+             readCount(data, "outputs"),
+             decodeTable(data.get("table")),
+             castToStringList(data.get("inLabels")),
+             castToStringList(data.get("outLabels")));
+    }
+
+    public LookupTable(String id, int x, int y, List<Integer> inPins, List<Integer> outPins, int inputCount, int outputCount,
+                       long[] table, List<String> inputLabels, List<String> outputLabels) {
+        super(id, x, y, FIXED_WIDTH, Math.max(MIN_HEIGHT, Math.max(inputCount, outputCount) * PIN_SPACING), "LUT", inPins, outPins);
+        if (inputCount < 0 || inputCount > MAX_INPUTS) {
+            throw new IllegalArgumentException("Lookup table " + id + " has " + inputCount + " inputs, at most " + MAX_INPUTS + " are supported");
+        }
+        if (outputCount < 0 || outputCount > MAX_OUTPUTS) {
+            throw new IllegalArgumentException("Lookup table " + id + " has " + outputCount + " outputs, at most " + MAX_OUTPUTS + " are supported");
+        }
+        if (table.length != tableLength(inputCount, outputCount)) {
+            throw new IllegalArgumentException("Lookup table " + id + " holds " + table.length + " words, "
+                    + tableLength(inputCount, outputCount) + " expected for its inputs and outputs");
+        }
+        if (inPins.size() != inputCount || outPins.size() != outputCount) {
+            throw new IllegalArgumentException("Lookup table " + id + " has " + inPins.size() + " input and " + outPins.size()
+                    + " output pins for a " + inputCount + " by " + outputCount + " table");
+        }
+        this.inputCount = inputCount;
+        this.outputCount = outputCount;
+        this.table = table;
+        this.inputLabels = inputLabels;
+        this.outputLabels = outputLabels;
+        calculatePinCoordinates();
+    }
+
+    // ==================================================================================
+    // CONVERSION
+    // ==================================================================================
+
+    // Returns null if the definition can be converted, otherwise the reason it can't
+    public static String validate(SubCircuitDefinition definition) {
+        if (!definition.isCombinational()) return "INVALID: Only combinational blocks can become a lookup table";
+        if (definition.getInputCount() > MAX_INPUTS) return "INVALID: Lookup tables support at most " + MAX_INPUTS + " inputs";
+        if (definition.getOutputCount() > MAX_OUTPUTS) return "INVALID: Lookup tables support at most " + MAX_OUTPUTS + " outputs";
+        return null;
+    }
+
+    // Exhaustively enumerate the definition into a table, reporting the share of rows done (0-100).
+    // Up to 2^MAX_INPUTS evaluations, so it is meant to run off the Swing thread; interrupting the thread stops it.
+    public static long[] enumerate(SubCircuitDefinition definition, IntConsumer progress) throws InterruptedException {
+        int inputs = definition.getInputCount();
+        int outputs = definition.getOutputCount();
+        long[] table = new long[tableLength(inputs, outputs)];
+        long rows = 1L << inputs;
+
+        for (long bits = 0; bits < rows; bits++) {
+            if ((bits & (PROGRESS_ROWS - 1)) == 0) {
+                if (Thread.interrupted()) throw new InterruptedException("Lookup table enumeration cancelled");
+                progress.accept((int) (bits * 100 / rows));
+            }
+            long packed = definition.computeOutputs(bits);
+            writeEntry(table, bits * 2 * outputs, 2 * outputs, packed);
+        }
+        progress.accept(100);
+        return table;
+    }
+
+    // The table enumerated from a definition, keeping the given external pins
+    public static LookupTable fromTable(String id, int x, int y, List<Integer> inPins, List<Integer> outPins,
+                                        SubCircuitDefinition definition, long[] table) {
+        int inputs = definition.getInputCount();
+        int outputs = definition.getOutputCount();
+
+        List<String> inLabels = new ArrayList<>();
+        for (int i = 0; i < inputs; i++) inLabels.add(definition.getInputLabel(i));
+        List<String> outLabels = new ArrayList<>();
+        for (int i = 0; i < outputs; i++) outLabels.add(definition.getOutputLabel(i));
+
+        return new LookupTable(id, x, y, inPins, outPins, inputs, outputs, table, inLabels, outLabels);
+    }
+
+    // ==================================================================================
+    // SIMULATION
+    // ==================================================================================
+
+    @Override
+    public void evaluate(PinState[] inputs, PinState[] outputs) {
+        // Same convention as a SubCircuit: an input that isn't HIGH reads as LOW
+        long index = 0;
+        for (int i = 0; i < inputCount && i < inputs.length; i++) {
+            if (inputs[i] == PinState.HIGH) index |= 1L << i;
+        }
+
+        long entry = readEntry(table, index * 2 * outputCount, 2 * outputCount);
+        for (int o = 0; o < outputCount && o < outputs.length; o++) {
+            outputs[o] = STATES[(int) (entry >>> (2 * o)) & 0b11];
+        }
+    }
+
+    private static long readEntry(long[] table, long bitOffset, int bitCount) {
+        if (bitCount == 0) return 0;
+        int word = (int) (bitOffset >>> 6);
+        int shift = (int) (bitOffset & 63);
+        long value = table[word] >>> shift;
+        if (shift + bitCount > 64) value |= table[word + 1] << (64 - shift);
+        return bitCount == 64 ? value : value & ((1L << bitCount) - 1);
+    }
+
+    private static void writeEntry(long[] table, long bitOffset, int bitCount, long value) {
+        if (bitCount == 0) return;
+        int word = (int) (bitOffset >>> 6);
+        int shift = (int) (bitOffset & 63);
+        table[word] |= value << shift;
+        if (shift + bitCount > 64) table[word + 1] |= value >>> (64 - shift);
+    }
+
+    private static int tableLength(int inputs, int outputs) {
+        long bits = (1L << inputs) * 2L * outputs;
+        return (int) ((bits + 63) / 64);
+    }
+
+    // ==================================================================================
+    // PERSISTENCE
+    // ==================================================================================
+
+    public Map<String, Object> getData() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("inputs", inputCount);
+        data.put("outputs", outputCount);
+        data.put("table", encodeTable(table));
+        data.put("inLabels", inputLabels);
+        data.put("outLabels", outputLabels);
+        return data;
+    }
+
+    private static String encodeTable(long[] table) {
+        ByteBuffer buffer = ByteBuffer.allocate(table.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asLongBuffer().put(table);
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    private static int readCount(Map<String, Object> data, String key) {
+        Object value = data.get(key);
+        if (!(value instanceof Number)) throw new IllegalArgumentException("Lookup table is missing its \"" + key + "\" count");
+        return ((Number) value).intValue();
+    }
+
+    private static long[] decodeTable(Object encoded) {
+        if (!(encoded instanceof String)) throw new IllegalArgumentException("Lookup table is missing its \"table\"");
+        ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode((String) encoded)).order(ByteOrder.LITTLE_ENDIAN);
+        long[] table = new long[buffer.remaining() / Long.BYTES];
+        buffer.asLongBuffer().get(table);
+        return table;
+    }
+
+    private static List<String> castToStringList(Object obj) {
+        List<String> result = new ArrayList<>();
+        if (obj instanceof List) {
+            for (Object o : (List<?>) obj) result.add(o instanceof String ? (String) o : null);
+        }
+        return result;
+    }
+
+    private static List<Integer> freshPins(int count) {
+        List<Integer> pins = new ArrayList<>();
+        for (int i = 0; i < count; i++) pins.add(PinID.getNextPinID());
+        return pins;
+    }
+
+    // ==================================================================================
+    // DRAWING
+    // ==================================================================================
+
+    @Override
+    public void draw(Graphics2D g2) {
+        Theme theme = ThemeManager.getTheme();
+
+        // Body
+        g2.setColor(theme.componentBody);
+        g2.fillRoundRect(x, y, width, height, 15, 15);
+        g2.setColor(theme.componentBorder);
+        g2.setStroke(RenderResources.OUTLINE_STROKE);
+        g2.drawRoundRect(x, y, width, height, 15, 15);
+
+        // Name and kind
+        g2.setColor(theme.text);
+        g2.setFont(RenderResources.TITLE_FONT);
+        int stringWidth = g2.getFontMetrics().stringWidth(id);
+        g2.drawString(id, x + (width - stringWidth) / 2, y + g2.getFontMetrics().getAscent());
+        g2.setFont(RenderResources.CAPTION_FONT);
+        stringWidth = g2.getFontMetrics().stringWidth(label);
+        g2.drawString(label, x + (width - stringWidth) / 2, y + height - 5);
+
+        // Pin Lines and Labels
+        g2.setStroke(RenderResources.OUTLINE_STROKE);
+        g2.setFont(RenderResources.PIN_FONT);
+        for (int i = 0; i < inputPinIDs.size(); i++) {
+            Point p = pinCoordinates.get(inputPinIDs.get(i));
+            if (p == null) continue;
+            g2.setColor(theme.pinLine);
+            g2.drawLine(p.x, p.y, p.x + PIN_WIDTH, p.y);
+
+            String pinLabel = i < inputLabels.size() ? inputLabels.get(i) : null;
+            if (pinLabel != null) {
+                g2.setColor(theme.text);
+                g2.drawString(pinLabel, x + 5, p.y + 4);
+            }
+        }
+        for (int i = 0; i < outputPinIDs.size(); i++) {
+            Point p = pinCoordinates.get(outputPinIDs.get(i));
+            if (p == null) continue;
+            g2.setColor(theme.pinLine);
+            g2.drawLine(p.x - PIN_WIDTH, p.y, p.x, p.y);
+
+            String pinLabel = i < outputLabels.size() ? outputLabels.get(i) : null;
+            if (pinLabel != null) {
+                g2.setColor(theme.text);
+                int lblWidth = g2.getFontMetrics().stringWidth(pinLabel);
+                g2.drawString(pinLabel, x + width - lblWidth - 5, p.y + 4);
+            }
+        }
+    }
+
+    private void calculatePinCoordinates() {
+        pinCoordinates.clear();
+        for (int i = 0; i < inputPinIDs.size(); i++) {
+            int pinY = y + (int) ((i + 1.0) * height / (inputPinIDs.size() + 1));
+            pinCoordinates.put(inputPinIDs.get(i), new Point(x - PIN_WIDTH, pinY));
+        }
+        for (int i = 0; i < outputPinIDs.size(); i++) {
+            int pinY = y + (int) ((i + 1.0) * height / (outputPinIDs.size() + 1));
+            pinCoordinates.put(outputPinIDs.get(i), new Point(x + width + PIN_WIDTH, pinY));
+        }
+    }
+
+    @Override
+    public Map<Integer, Point> getPinCoordinates() {
+        return pinCoordinates;
+    }
+
+    @Override
+    public void setLocation(int x, int y) {
+        super.setLocation(x, y);
+        calculatePinCoordinates();
+    }
+
+    public int getInputCount() { return inputCount; }
+    public int getOutputCount() { return outputCount; }
+
+    @Override
+    public Tooltype getToolType() {
+        return Tooltype.LOOKUP_TABLE;
+    }
+}
@@ -1,6 +1,5 @@
 package sim.gates;
 
-import java.awt.BasicStroke;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.geom.Path2D;
@@ -8,9 +7,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import sim.CircuitManager;
 import sim.util.PinID;
 import sim.util.PinState;
+import sim.util.RenderResources;
 import sim.util.Theme;
 import sim.util.ThemeManager;
 
@@ -32,6 +31,9 @@ public class MuxGate extends LogicGate {
     private static final int PIN_Y_OUTPUT = BODY_HEIGHT / 2;
 
 
+    // Body outline at the origin, translated into place when drawn
+    private static final Path2D BODY = createBody();
+
     public MuxGate(String id, int x, int y) {
         super(id, x, y, BODY_WIDTH, BODY_HEIGHT, "MUX");
 
@@ -49,10 +51,10 @@ public class MuxGate extends LogicGate {
     }
 
     @Override
-    public boolean updateState(CircuitManager manager) {
-        PinState inputA = manager.getPinState(inputPinIDs.get(0));
-        PinState inputB = manager.getPinState(inputPinIDs.get(1));
-        PinState select = manager.getPinState(inputPinIDs.get(2));
+    public void evaluate(PinState[] inputs, PinState[] outputs) {
+        PinState inputA = inputs[0];
+        PinState inputB = inputs[1];
+        PinState select = inputs[2];
         
         PinState newState;
         if (select == PinState.FLOATING) {
@@ -63,30 +65,15 @@ public class MuxGate extends LogicGate {
             newState = inputB;
         }
 
-        boolean hasChanged = (outputState[0] != newState);
-        outputState[0] = newState;
-        return hasChanged;
+        outputs[0] = newState;
     }
 
     @Override
     public void draw(Graphics2D g2) {
         Theme theme = ThemeManager.getTheme();
         
-        // Create the trapezoid shape
-        Path2D.Double shape = new Path2D.Double();
-        shape.moveTo(x, y);
-        shape.lineTo(x + BODY_WIDTH, y + TRAP_TOP);
-        shape.lineTo(x + BODY_WIDTH, y + TRAP_BOT);
-        shape.lineTo(x, y + BODY_HEIGHT);
-        shape.closePath();
-
         // Body
-        g2.setColor(theme.componentBody);
-        g2.fill(shape);
-        
-        g2.setColor(theme.componentBorder);
-        g2.setStroke(new BasicStroke(2));
-        g2.draw(shape);
+        RenderResources.drawBody(g2, BODY, x, y, theme);
 
         // Lines for PINs
         g2.setColor(theme.pinLine);
@@ -99,6 +86,16 @@ public class MuxGate extends LogicGate {
         g2.drawLine(x + BODY_WIDTH, y + PIN_Y_OUTPUT, x + BODY_WIDTH + PIN_WIDTH, y + PIN_Y_OUTPUT);
     }
 
+    private static Path2D createBody() {
+        Path2D.Double shape = new Path2D.Double();
+        shape.moveTo(0, 0);
+        shape.lineTo(BODY_WIDTH, TRAP_TOP);
+        shape.lineTo(BODY_WIDTH, TRAP_BOT);
+        shape.lineTo(0, BODY_HEIGHT);
+        shape.closePath();
+        return shape;
+    }
+
     @Override
     public Map<Integer, Point> getPinCoordinates() {
         Map<Integer, Point> coords = new HashMap<>();
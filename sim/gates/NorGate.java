@@ -1,6 +1,5 @@
 package sim.gates;
 
-import java.awt.BasicStroke;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.geom.Path2D;
@@ -8,9 +7,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import sim.CircuitManager;
 import sim.util.PinID;
 import sim.util.PinState;
+import sim.util.RenderResources;
 import sim.util.Theme;
 import sim.util.ThemeManager;
 
@@ -33,6 +32,9 @@ public class NorGate extends LogicGate {
     private static final int PIN_Y_INPUT_2 = 50;
     private static final int PIN_Y_OUTPUT = BODY_HEIGHT / 2;
 
+    // Body outline at the origin, translated into place when drawn
+    private static final Path2D BODY = createBody();
+
     public NorGate(String id, int x, int y) {
         super(id, x, y, TOTAL_WIDTH, BODY_HEIGHT, "NOR");
 
@@ -48,9 +50,9 @@ public class NorGate extends LogicGate {
     }
 
     @Override
-    public boolean updateState(CircuitManager manager) {
-        PinState in1 = manager.getPinState(inputPinIDs.get(0));
-        PinState in2 = manager.getPinState(inputPinIDs.get(1));
+    public void evaluate(PinState[] inputs, PinState[] outputs) {
+        PinState in1 = inputs[0];
+        PinState in2 = inputs[1];
         
         PinState newState;
         if (in1 == PinState.HIGH || in2 == PinState.HIGH) {
@@ -61,9 +63,7 @@ public class NorGate extends LogicGate {
             newState = PinState.FLOATING;
         }
 
-        boolean hasChanged = (outputState[0] != newState);
-        outputState[0] = newState;
-        return hasChanged;
+        outputs[0] = newState;
     }
 
     @Override
@@ -71,23 +71,10 @@ public class NorGate extends LogicGate {
         Theme theme = ThemeManager.getTheme();
         
         final int rightX = x + BODY_WIDTH;
-        final int bottomY = y + BODY_HEIGHT;
         final int midY = y + PIN_Y_OUTPUT;
 
-        Path2D.Double shape = new Path2D.Double();
-        shape.moveTo(x, y);
-        shape.quadTo(x + BODY_WIDTH * CURVE_BACK_RATIO, midY, x, bottomY);
-        shape.quadTo(x + BODY_WIDTH * CURVE_FRONT_RATIO, bottomY, rightX, midY);
-        shape.quadTo(x + BODY_WIDTH * CURVE_FRONT_RATIO, y, x, y);
-        shape.closePath();
-        
         // Body
-        g2.setColor(theme.componentBody);
-        g2.fill(shape);
-        
-        g2.setColor(theme.componentBorder);
-        g2.setStroke(new BasicStroke(2));
-        g2.draw(shape);
+        RenderResources.drawBody(g2, BODY, x, y, theme);
 
         // Inversion circle
         int circleX = rightX;
@@ -104,6 +91,16 @@ public class NorGate extends LogicGate {
         g2.drawLine(x + TOTAL_WIDTH, midY, x + TOTAL_WIDTH + PIN_WIDTH, midY);
     }
 
+    private static Path2D createBody() {
+        Path2D.Double shape = new Path2D.Double();
+        shape.moveTo(0, 0);
+        shape.quadTo(BODY_WIDTH * CURVE_BACK_RATIO, PIN_Y_OUTPUT, 0, BODY_HEIGHT);
+        shape.quadTo(BODY_WIDTH * CURVE_FRONT_RATIO, BODY_HEIGHT, BODY_WIDTH, PIN_Y_OUTPUT);
+        shape.quadTo(BODY_WIDTH * CURVE_FRONT_RATIO, 0, 0, 0);
+        shape.closePath();
+        return shape;
+    }
+
     @Override
     public Map<Integer, Point> getPinCoordinates() {
         Map<Integer, Point> coords = new HashMap<>();
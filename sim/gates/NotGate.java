@@ -1,6 +1,5 @@
 package sim.gates;
 
-import java.awt.BasicStroke;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.geom.Path2D;
@@ -8,9 +7,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import sim.CircuitManager;
 import sim.util.PinID;
 import sim.util.PinState;
+import sim.util.RenderResources;
 import sim.util.Theme;
 import sim.util.ThemeManager;
 
@@ -26,6 +25,9 @@ public class NotGate extends LogicGate {
     // Pin positions
     private static final int PIN_Y_MID = BODY_HEIGHT / 2;
 
+    // Body outline at the origin, translated into place when drawn
+    private static final Path2D BODY = createBody();
+
     public NotGate(String id, int x, int y) {
         super(id, x, y, TOTAL_WIDTH, BODY_HEIGHT, "NOT");
 
@@ -40,8 +42,8 @@ public class NotGate extends LogicGate {
     }
 
     @Override
-    public boolean updateState(CircuitManager manager) {
-        PinState in1 = manager.getPinState(inputPinIDs.get(0));
+    public void evaluate(PinState[] inputs, PinState[] outputs) {
+        PinState in1 = inputs[0];
         
         PinState newState;
         if (in1 == PinState.HIGH) {
@@ -52,29 +54,15 @@ public class NotGate extends LogicGate {
             newState = PinState.FLOATING;
         }
         
-        boolean hasChanged = (outputState[0] != newState);
-        outputState[0] = newState;
-        return hasChanged;
+        outputs[0] = newState;
     }
 
     @Override
     public void draw(Graphics2D g2) {
         Theme theme = ThemeManager.getTheme();
         
-        // Create the triangle shape
-        Path2D.Double shape = new Path2D.Double();
-        shape.moveTo(x, y);
-        shape.lineTo(x + BODY_WIDTH, y + PIN_Y_MID);
-        shape.lineTo(x, y + BODY_HEIGHT);
-        shape.closePath();
-
         // Body
-        g2.setColor(theme.componentBody);
-        g2.fill(shape);
-        
-        g2.setColor(theme.componentBorder);
-        g2.setStroke(new BasicStroke(2));
-        g2.draw(shape);
+        RenderResources.drawBody(g2, BODY, x, y, theme);
 
         // Inverter circle
         int circleX = x + BODY_WIDTH;
@@ -90,6 +78,15 @@ public class NotGate extends LogicGate {
         g2.drawLine(x + TOTAL_WIDTH, y + PIN_Y_MID, x + TOTAL_WIDTH + PIN_WIDTH, y + PIN_Y_MID); // Output
     }
 
+    private static Path2D createBody() {
+        Path2D.Double shape = new Path2D.Double();
+        shape.moveTo(0, 0);
+        shape.lineTo(BODY_WIDTH, PIN_Y_MID);
+        shape.lineTo(0, BODY_HEIGHT);
+        shape.closePath();
+        return shape;
+    }
+
     @Override
     public Map<Integer, Point> getPinCoordinates() {
         Map<Integer, Point> coords = new HashMap<>();
@@ -1,6 +1,5 @@
 package sim.gates;
 
-import java.awt.BasicStroke;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.geom.Path2D;
@@ -8,9 +7,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import sim.CircuitManager;
 import sim.util.PinID;
 import sim.util.PinState;
+import sim.util.RenderResources;
 import sim.util.Theme;
 import sim.util.ThemeManager;
 
@@ -31,6 +30,9 @@ public class OrGate extends LogicGate {
     private static final int PIN_Y_OUTPUT = BODY_HEIGHT / 2;
 
 
+    // Body outline at the origin, translated into place when drawn
+    private static final Path2D BODY = createBody();
+
     public OrGate(String id, int x, int y) {
         super(id, x, y, BODY_WIDTH, BODY_HEIGHT, "OR");
 
@@ -46,9 +48,9 @@ public class OrGate extends LogicGate {
     }
 
     @Override
-    public boolean updateState(CircuitManager manager) {
-        PinState in1 = manager.getPinState(inputPinIDs.get(0));
-        PinState in2 = manager.getPinState(inputPinIDs.get(1));
+    public void evaluate(PinState[] inputs, PinState[] outputs) {
+        PinState in1 = inputs[0];
+        PinState in2 = inputs[1];
         
         PinState newState;
         if (in1 == PinState.HIGH || in2 == PinState.HIGH) {
@@ -59,35 +61,18 @@ public class OrGate extends LogicGate {
             newState = PinState.FLOATING;
         }
 
-        boolean hasChanged = (outputState[0] != newState);
-        outputState[0] = newState;
-        return hasChanged;
+        outputs[0] = newState;
     }
 
     @Override
     public void draw(Graphics2D g2) {
         Theme theme = ThemeManager.getTheme();
         
-        // Define key points
         final int rightX = x + BODY_WIDTH;
-        final int bottomY = y + BODY_HEIGHT;
         final int midY = y + PIN_Y_OUTPUT;
 
-        // Create the curved shape
-        Path2D.Double shape = new Path2D.Double();
-        shape.moveTo(x, y);
-        shape.quadTo(x + BODY_WIDTH * CURVE_BACK_RATIO, midY, x, bottomY);
-        shape.quadTo(x + BODY_WIDTH * CURVE_FRONT_RATIO, bottomY, rightX, midY);
-        shape.quadTo(x + BODY_WIDTH * CURVE_FRONT_RATIO, y, x, y);
-        shape.closePath();
-        
         // Body
-        g2.setColor(theme.componentBody);
-        g2.fill(shape);
-        
-        g2.setColor(theme.componentBorder);
-        g2.setStroke(new BasicStroke(2));
-        g2.draw(shape);
+        RenderResources.drawBody(g2, BODY, x, y, theme);
 
         // Lines for PINs
         g2.setColor(theme.pinLine);
@@ -96,6 +81,16 @@ public class OrGate extends LogicGate {
         g2.drawLine(rightX, midY, rightX + PIN_WIDTH, midY);
     }
 
+    private static Path2D createBody() {
+        Path2D.Double shape = new Path2D.Double();
+        shape.moveTo(0, 0);
+        shape.quadTo(BODY_WIDTH * CURVE_BACK_RATIO, PIN_Y_OUTPUT, 0, BODY_HEIGHT);
+        shape.quadTo(BODY_WIDTH * CURVE_FRONT_RATIO, BODY_HEIGHT, BODY_WIDTH, PIN_Y_OUTPUT);
+        shape.quadTo(BODY_WIDTH * CURVE_FRONT_RATIO, 0, 0, 0);
+        shape.closePath();
+        return shape;
+    }
+
     @Override
     public Map<Integer, Point> getPinCoordinates() {
         Map<Integer, Point> coords = new HashMap<>();
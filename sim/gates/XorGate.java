@@ -1,6 +1,5 @@
 package sim.gates;
 
-import java.awt.BasicStroke;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.geom.Path2D;
@@ -8,9 +7,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import sim.CircuitManager;
 import sim.util.PinID;
 import sim.util.PinState;
+import sim.util.RenderResources;
 import sim.util.Theme;
 import sim.util.ThemeManager;
 
@@ -32,6 +31,10 @@ public class XorGate extends LogicGate {
     private static final int PIN_Y_OUTPUT = BODY_HEIGHT / 2;
 
 
+    // Body outline at the origin, translated into place when drawn
+    private static final Path2D BODY = createBody();
+    private static final Path2D BACK_CURVE = createBackCurve();
+
     public XorGate(String id, int x, int y) {
         super(id, x, y, BODY_WIDTH, BODY_HEIGHT, "XOR");
 
@@ -47,9 +50,9 @@ public class XorGate extends LogicGate {
     }
 
     @Override
-    public boolean updateState(CircuitManager manager) {
-        PinState in1 = manager.getPinState(inputPinIDs.get(0));
-        PinState in2 = manager.getPinState(inputPinIDs.get(1));
+    public void evaluate(PinState[] inputs, PinState[] outputs) {
+        PinState in1 = inputs[0];
+        PinState in2 = inputs[1];
         
         PinState newState;
         if (in1 == PinState.FLOATING || in2 == PinState.FLOATING) {
@@ -60,41 +63,19 @@ public class XorGate extends LogicGate {
             newState = PinState.LOW;
         }
 
-        boolean hasChanged = (outputState[0] != newState);
-        outputState[0] = newState;
-        return hasChanged;
+        outputs[0] = newState;
     }
 
     @Override
     public void draw(Graphics2D g2) {
         Theme theme = ThemeManager.getTheme();
 
-        final double gap = BODY_WIDTH * CURVE_GAP_RATIO;
         final int rightX = x + BODY_WIDTH;
-        final int bottomY = y + BODY_HEIGHT;
         final int midY = y + PIN_Y_OUTPUT;
         
-        // Main body curve
-        Path2D.Double shape = new Path2D.Double();
-        shape.moveTo(x + gap, y);
-        shape.quadTo(x + gap + BODY_WIDTH * CURVE_BACK_RATIO, midY, x + gap, bottomY);
-        shape.quadTo(x + gap + BODY_WIDTH * CURVE_FRONT_RATIO, bottomY, rightX, midY);
-        shape.quadTo(x + gap + BODY_WIDTH * CURVE_FRONT_RATIO, y, x + gap, y);
-        shape.closePath();
-        
-        // Body
-        g2.setColor(theme.componentBody);
-        g2.fill(shape);
-        
-        // Second back curve
-        Path2D.Double backCurve = new Path2D.Double();
-        backCurve.moveTo(x, y);
-        backCurve.quadTo(x + BODY_WIDTH * CURVE_BACK_RATIO, midY, x, bottomY);
-
-        g2.setColor(theme.componentBorder);
-        g2.setStroke(new BasicStroke(2));
-        g2.draw(shape);
-        g2.draw(backCurve);
+        // Main body curve and the second back curve
+        RenderResources.drawBody(g2, BODY, x, y, theme);
+        RenderResources.drawOutline(g2, BACK_CURVE, x, y);
 
         // Lines for PINs
         g2.setColor(theme.pinLine);
@@ -103,6 +84,24 @@ public class XorGate extends LogicGate {
         g2.drawLine(rightX, midY, rightX + PIN_WIDTH, midY);
     }
 
+    private static Path2D createBody() {
+        final double gap = BODY_WIDTH * CURVE_GAP_RATIO;
+        Path2D.Double shape = new Path2D.Double();
+        shape.moveTo(gap, 0);
+        shape.quadTo(gap + BODY_WIDTH * CURVE_BACK_RATIO, PIN_Y_OUTPUT, gap, BODY_HEIGHT);
+        shape.quadTo(gap + BODY_WIDTH * CURVE_FRONT_RATIO, BODY_HEIGHT, BODY_WIDTH, PIN_Y_OUTPUT);
+        shape.quadTo(gap + BODY_WIDTH * CURVE_FRONT_RATIO, 0, gap, 0);
+        shape.closePath();
+        return shape;
+    }
+
+    private static Path2D createBackCurve() {
+        Path2D.Double curve = new Path2D.Double();
+        curve.moveTo(0, 0);
+        curve.quadTo(BODY_WIDTH * CURVE_BACK_RATIO, PIN_Y_OUTPUT, 0, BODY_HEIGHT);
+        return curve;
+    }
+
     @Override
     public Map<Integer, Point> getPinCoordinates() {
         Map<Integer, Point> coords = new HashMap<>();
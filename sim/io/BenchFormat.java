@@ -0,0 +1,102 @@
+package sim.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import sim.CircuitManager;
+import sim.model.Tooltype;
+
+/**
+ * The ISCAS-85/89 benchmark format (.bench), read line by line:
+ *   INPUT(G1)
+ *   OUTPUT(G17)
+ *   G10 = NAND(G1, G3)
+ *   G5 = DFF(G10)
+ * There is no flip-flop component, so sequential circuits are imported full-scan: each DFF output
+ * becomes an input Switch and each DFF input an output LED, which leaves the combinational core.
+ */
+final class BenchFormat {
+    private BenchFormat() {
+        /* This utility class should not be instantiated */
+    }
+
+    static void read(CircuitManager manager, Reader in, boolean autoPlace) throws IOException {
+        NetlistBuilder builder = new NetlistBuilder(autoPlace);
+        List<String[]> flipFlops = new ArrayList<>(); // Q and D nets
+
+        BufferedReader reader = new BufferedReader(in, 1 << 16);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment >= 0) line = line.substring(0, comment);
+            line = line.trim();
+            if (line.isEmpty()) continue;
+
+            int open = line.indexOf('(');
+            int close = line.lastIndexOf(')');
+            if (open < 0 || close < open) throw error("Malformed line '" + line + "'", lineNumber);
+            int equals = line.indexOf('=');
+            String function = line.substring(equals + 1, open).trim().toUpperCase();
+            String[] args = line.substring(open + 1, close).split(",");
+            for (int i = 0; i < args.length; i++) args[i] = args[i].trim();
+
+            // 1. Ports
+            if (equals < 0) {
+                if (args.length != 1 || args[0].isEmpty()) throw error("Malformed line '" + line + "'", lineNumber);
+                if (function.equals("INPUT")) {
+                    builder.input(args[0], builder.net(args[0]));
+                } else if (function.equals("OUTPUT")) {
+                    builder.output(args[0], builder.net(args[0]));
+                } else {
+                    throw error("Unknown declaration '" + function + "'", lineNumber);
+                }
+                continue;
+            }
+
+            // 2. Gates, named after the net they drive
+            String output = line.substring(0, equals).trim();
+            int[] inputs = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].isEmpty()) throw error("Empty gate input", lineNumber);
+                inputs[i] = builder.net(args[i]);
+            }
+            int out = builder.net(output);
+
+            switch (function) {
+                case "AND" -> builder.gate(Tooltype.AND, output, inputs, out);
+                case "NAND" -> builder.gate(Tooltype.NAND, output, inputs, out);
+                case "OR" -> builder.gate(Tooltype.OR, output, inputs, out);
+                case "NOR" -> builder.gate(Tooltype.NOR, output, inputs, out);
+                case "XOR" -> builder.gate(Tooltype.XOR, output, inputs, out);
+                case "XNOR" -> builder.gate(Tooltype.XNOR, output, inputs, out);
+                case "NOT", "INV" -> builder.gate(Tooltype.NOT, output, single(inputs, lineNumber), out);
+                case "BUF", "BUFF" -> builder.alias(out, single(inputs, lineNumber)[0]);
+                case "DFF" -> {
+                    single(inputs, lineNumber);
+                    flipFlops.add(new String[] {output, args[0]});
+                }
+                default -> throw error("Unsupported gate '" + function + "'", lineNumber);
+            }
+        }
+
+        // 3. Scan ports, after the real ones
+        for (String[] ff : flipFlops) builder.input(ff[0], builder.net(ff[0]));
+        for (String[] ff : flipFlops) builder.output(ff[0] + ".D", builder.net(ff[1]));
+        builder.forgetNames();
+        builder.finish(manager);
+    }
+
+    private static int[] single(int[] inputs, int lineNumber) throws IOException {
+        if (inputs.length != 1) throw error("Expected exactly one input", lineNumber);
+        return inputs;
+    }
+
+    private static IOException error(String message, int lineNumber) {
+        return new IOException(message + " on line " + lineNumber);
+    }
+}
@@ -0,0 +1,593 @@
+package sim.io;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+import sim.CircuitComponent;
+import sim.CircuitManager;
+import sim.logic.SubCircuitDefinition;
+import sim.model.Tooltype;
+import sim.model.Wire;
+import sim.util.ComponentFactory;
+
+/**
+ * The compact binary circuit format (.dcb). It holds exactly what the JSON format holds, so files
+ * convert both ways without loss, but is several times smaller and needs no text parsing.
+ *
+ * Layout, with every integer a LEB128 varint (signed values zigzag-encoded):
+ *   magic "DCB\x1A", format version
+ *   string table: count, then length and UTF-8 bytes of each string (types, IDs, hashes, labels)
+ *   definitions:  count, then hash, input pins, output pins and circuit of each, nested ones first
+ *   circuit:      the top-level circuit
+ * A circuit is a component count and records followed by a wire count and (src, dest) pairs.
+ * Pins are written as deltas from the previous pin, so sequential IDs cost one byte.
+ */
+final class BinaryCircuitFormat {
+    private BinaryCircuitFormat() {
+        /* This utility class should not be instantiated */
+    }
+
+    static final byte[] MAGIC = {'D', 'C', 'B', 0x1A};
+    static final int VERSION = 1;
+
+    // Component extras
+    private static final int EXTRA_NONE = 0;
+    private static final int EXTRA_DEFINITION = 1;
+    private static final int EXTRA_LOOKUP_TABLE = 2;
+
+    private static final int PROGRESS_STEP = 1 << 16; // Bytes read between progress reports
+    private static final int MAX_PREALLOCATED = 1 << 16; // Largest list sized up front from a count, since a stream can't check counts against what is left
+
+    static boolean hasMagic(byte[] header) {
+        if (header.length < MAGIC.length) return false;
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    // ==================================================================================
+    // WRITING
+    // ==================================================================================
+
+    static void write(CircuitSnapshot snapshot, OutputStream out) throws IOException {
+        List<SubCircuitDefinition> definitions = collectDefinitions(snapshot.getComponents());
+
+        // 1. String table
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (SubCircuitDefinition d : definitions) {
+            intern(strings, d.getContentHash());
+            internTree(strings, d.getInternalCircuit());
+        }
+        for (CircuitSnapshot.Entry c : snapshot.getComponents()) {
+            intern(strings, c.type().toString());
+            intern(strings, c.id());
+            if (c.definition() != null) intern(strings, c.definition().getContentHash());
+            if (c.data() != null) internTree(strings, c.data());
+        }
+
+        Encoder enc = new Encoder(out);
+        out.write(MAGIC);
+        out.write(VERSION);
+        enc.uint(strings.size());
+        for (String s : strings.keySet()) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            enc.uint(bytes.length);
+            out.write(bytes);
+        }
+
+        // 2. Definitions
+        enc.uint(definitions.size());
+        for (SubCircuitDefinition d : definitions) {
+            enc.uint(strings.get(d.getContentHash()));
+            enc.uint(d.getInputCount());
+            for (int i = 0; i < d.getInputCount(); i++) enc.uint(d.getInputPin(i));
+            enc.uint(d.getOutputCount());
+            for (int i = 0; i < d.getOutputCount(); i++) enc.uint(d.getOutputPin(i));
+            writeCircuitTree(enc, strings, d.getInternalCircuit());
+        }
+
+        // 3. Top-level circuit
+        enc.lastPin = 0;
+        enc.uint(snapshot.getComponents().size());
+        for (CircuitSnapshot.Entry c : snapshot.getComponents()) {
+            String def = c.definition() != null ? c.definition().getContentHash() : null;
+            writeComponent(enc, strings, c.type().toString(), c.id(), c.x(), c.y(), c.inPins(), c.outPins(), def, c.data());
+        }
+        enc.uint(snapshot.getWires().size());
+        for (Wire w : snapshot.getWires()) {
+            enc.pin(w.getSourcePinID());
+            enc.pin(w.getDestPinID());
+        }
+        out.flush();
+    }
+
+    // Definition bodies are kept as trees; they share the component record layout
+    @SuppressWarnings("unchecked")
+    private static void writeCircuitTree(Encoder enc, Map<String, Integer> strings, Map<String, Object> circuit) throws IOException {
+        enc.lastPin = 0;
+        List<Object> components = (List<Object>) circuit.getOrDefault("components", List.of());
+        enc.uint(components.size());
+        for (Object obj : components) {
+            Map<String, Object> map = (Map<String, Object>) obj;
+            writeComponent(enc, strings, (String) map.get("type"), (String) map.get("id"),
+                    ((Number) map.get("x")).intValue(), ((Number) map.get("y")).intValue(),
+                    CircuitPersistence.castToIntList(map.get("inPins")), CircuitPersistence.castToIntList(map.get("outPins")),
+                    (String) map.get("def"), (Map<String, Object>) map.get("data"));
+        }
+
+        List<Object> wires = (List<Object>) circuit.getOrDefault("wires", List.of());
+        enc.uint(wires.size());
+        for (Object obj : wires) {
+            Map<String, Object> map = (Map<String, Object>) obj;
+            enc.pin(((Number) map.get("src")).intValue());
+            enc.pin(((Number) map.get("dest")).intValue());
+        }
+    }
+
+    private static void writeComponent(Encoder enc, Map<String, Integer> strings, String type, String id, int x, int y,
+                                       List<Integer> inPins, List<Integer> outPins, String def,
+                                       Map<String, Object> lutData) throws IOException {
+        enc.uint(strings.get(type));
+        enc.optionalString(strings, id);
+        enc.sint(x);
+        enc.sint(y);
+        enc.uint(inPins.size());
+        for (int p : inPins) enc.pin(p);
+        enc.uint(outPins.size());
+        for (int p : outPins) enc.pin(p);
+
+        if (def != null) {
+            enc.uint(EXTRA_DEFINITION);
+            enc.uint(strings.get(def));
+        } else if (lutData != null) {
+            enc.uint(EXTRA_LOOKUP_TABLE);
+            enc.uint(((Number) lutData.get("inputs")).intValue());
+            enc.uint(((Number) lutData.get("outputs")).intValue());
+            String table = (String) lutData.get("table");
+            byte[] raw = table != null ? Base64.getDecoder().decode(table) : new byte[0];
+            enc.uint(raw.length);
+            enc.out.write(raw);
+            enc.stringList(strings, lutData.get("inLabels"));
+            enc.stringList(strings, lutData.get("outLabels"));
+        } else {
+            enc.uint(EXTRA_NONE);
+        }
+    }
+
+    // Every definition reachable from the components, dependencies before the blocks that use them
+    private static List<SubCircuitDefinition> collectDefinitions(List<CircuitSnapshot.Entry> components) {
+        List<SubCircuitDefinition> ordered = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (CircuitSnapshot.Entry c : components) {
+            if (c.definition() != null) visit(c.definition(), seen, ordered);
+        }
+        return ordered;
+    }
+
+    private static void visit(SubCircuitDefinition definition, Set<String> seen, List<SubCircuitDefinition> ordered) {
+        if (!seen.add(definition.getContentHash())) return;
+        for (SubCircuitDefinition nested : definition.getDependencies().values()) visit(nested, seen, ordered);
+        ordered.add(definition);
+    }
+
+    private static void intern(Map<String, Integer> strings, String s) {
+        if (s != null) strings.putIfAbsent(s, strings.size());
+    }
+
+    private static void internTree(Map<String, Integer> strings, Object value) {
+        if (value instanceof Map) {
+            for (Object v : ((Map<?, ?>) value).values()) internTree(strings, v);
+        } else if (value instanceof List) {
+            for (Object v : (List<?>) value) internTree(strings, v);
+        } else if (value instanceof String) {
+            intern(strings, (String) value);
+        }
+    }
+
+    // ==================================================================================
+    // READING
+    // ==================================================================================
+
+    // Reads a whole file, from a mapped buffer or a stream, into the manager.
+    // A corrupt file fails with an IOException, never with an unchecked exception or a huge allocation.
+    static void read(CircuitManager manager, Input in, PinCompactor pins) throws IOException {
+        try {
+            readFile(manager, in, pins);
+        } catch (EOFException e) {
+            throw malformed("unexpected end of file");
+        }
+    }
+
+    private static void readFile(CircuitManager manager, Input in, PinCompactor pins) throws IOException {
+        Decoder dec = new Decoder(in);
+        byte[] header = new byte[MAGIC.length];
+        in.readFully(header);
+        if (!hasMagic(header)) throw new IOException("Not a binary circuit file");
+        int version = in.readByte();
+        if (version > VERSION) throw new IOException("Unsupported binary circuit version " + version);
+
+        // 1. String table
+        int stringCount = dec.count();
+        List<String> stringList = new ArrayList<>(Math.min(stringCount, MAX_PREALLOCATED));
+        for (int i = 0; i < stringCount; i++) {
+            stringList.add(new String(dec.bytes(), StandardCharsets.UTF_8));
+        }
+        String[] strings = stringList.toArray(new String[0]);
+
+        // 2. Definitions, read in order and then built and compiled on the loader pool
+        Map<String, Object> table = new HashMap<>();
+        int definitionCount = dec.count();
+        for (int d = 0; d < definitionCount; d++) {
+            String hash = dec.string(strings);
+            List<Integer> inputs = dec.uintList();
+            List<Integer> outputs = dec.uintList();
+            Map<String, Object> entry = readCircuitTree(dec, strings);
+            entry.put("inputs", inputs);
+            entry.put("outputs", outputs);
+            table.put(hash, entry);
+        }
+        Map<String, SubCircuitDefinition> definitions;
+        try {
+            definitions = CircuitPersistence.deserializeDefinitions(table);
+        } catch (IllegalArgumentException e) {
+            throw malformed(e.getMessage());
+        }
+
+        // 3. Top-level circuit, built directly
+        dec.lastPin = 0;
+        int componentCount = dec.count();
+        List<CircuitComponent> components = new ArrayList<>(Math.min(componentCount, MAX_PREALLOCATED));
+        for (int i = 0; i < componentCount; i++) {
+            Tooltype type = dec.type(strings);
+            String id = dec.optionalString(strings);
+            int x = dec.sint();
+            int y = dec.sint();
+            List<Integer> inPins = pins.map(dec.pinList());
+            List<Integer> outPins = pins.map(dec.pinList());
+            checkPins(type, inPins, outPins);
+
+            SubCircuitDefinition definition = null;
+            Map<String, Object> data = null;
+            int extra = dec.uint();
+            if (extra == EXTRA_DEFINITION) {
+                String hash = dec.string(strings);
+                definition = definitions.get(hash);
+                if (definition == null) throw malformed("unknown definition " + hash);
+                if (inPins.size() != definition.getInputCount() || outPins.size() != definition.getOutputCount()) {
+                    throw malformed("pins of " + type + " don't match its definition");
+                }
+            } else if (extra == EXTRA_LOOKUP_TABLE) {
+                data = readLookupTableData(dec, strings);
+            } else if (extra != EXTRA_NONE) {
+                throw malformed("unknown component extra " + extra);
+            }
+            try {
+                components.add(CircuitPersistence.createComponent(type, id, x, y, inPins, outPins, definition, data));
+            } catch (IllegalArgumentException e) {
+                throw malformed(e.getMessage());
+            }
+        }
+
+        int wireCount = dec.count();
+        List<Wire> wires = new ArrayList<>(Math.min(wireCount, MAX_PREALLOCATED));
+        for (int i = 0; i < wireCount; i++) {
+            wires.add(new Wire(pins.map(dec.pin()), pins.map(dec.pin())));
+        }
+
+        CircuitPersistence.finishLoad(manager, components, wires, pins.count());
+    }
+
+    // Fewer pins are padded on load, as for old saves; more would be left without a state
+    private static void checkPins(Tooltype type, List<Integer> inPins, List<Integer> outPins) throws IOException {
+        int[] expected = ComponentFactory.pinCounts(type);
+        if (expected != null && (inPins.size() > expected[0] || outPins.size() > expected[1])) {
+            throw malformed("too many pins on " + type);
+        }
+    }
+
+    // Rebuilds the same tree the JSON reader produces, so the content hash is identical
+    private static Map<String, Object> readCircuitTree(Decoder dec, String[] strings) throws IOException {
+        dec.lastPin = 0;
+        int componentCount = dec.count();
+        List<Object> components = new ArrayList<>(Math.min(componentCount, MAX_PREALLOCATED));
+        for (int i = 0; i < componentCount; i++) {
+            Map<String, Object> map = new HashMap<>();
+            // Checked now, since definitions compile on first use
+            Tooltype type = dec.type(strings);
+            map.put("type", type.name());
+            map.put("id", dec.optionalString(strings));
+            map.put("x", dec.sint());
+            map.put("y", dec.sint());
+            List<Integer> inPins = dec.pinList();
+            List<Integer> outPins = dec.pinList();
+            checkPins(type, inPins, outPins);
+            map.put("inPins", inPins);
+            map.put("outPins", outPins);
+
+            int extra = dec.uint();
+            if (extra == EXTRA_DEFINITION) {
+                map.put("def", dec.string(strings));
+            } else if (extra == EXTRA_LOOKUP_TABLE) {
+                map.put("data", readLookupTableData(dec, strings));
+            } else if (extra != EXTRA_NONE) {
+                throw malformed("unknown component extra " + extra);
+            }
+            components.add(map);
+        }
+
+        int wireCount = dec.count();
+        List<Object> wires = new ArrayList<>(Math.min(wireCount, MAX_PREALLOCATED));
+        for (int i = 0; i < wireCount; i++) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("src", dec.pin());
+            map.put("dest", dec.pin());
+            wires.add(map);
+        }
+
+        Map<String, Object> circuit = new HashMap<>();
+        circuit.put("components", components);
+        circuit.put("wires", wires);
+        return circuit;
+    }
+
+    private static Map<String, Object> readLookupTableData(Decoder dec, String[] strings) throws IOException {
+        Map<String, Object> data = new HashMap<>();
+        data.put("inputs", dec.uint());
+        data.put("outputs", dec.uint());
+        data.put("table", Base64.getEncoder().encodeToString(dec.bytes()));
+        data.put("inLabels", dec.stringList(strings));
+        data.put("outLabels", dec.stringList(strings));
+        return data;
+    }
+
+    // ==================================================================================
+    // BYTE SOURCES
+    // ==================================================================================
+
+    interface Input {
+        int readByte() throws IOException;
+        void readFully(byte[] dst) throws IOException;
+        byte[] readBytes(int length) throws IOException;
+        long remaining(); // Long.MAX_VALUE when unknown
+    }
+
+    // A mapped file (or any buffer): reads go straight to the buffer without copying it first
+    static Input of(ByteBuffer buffer) {
+        return new Input() {
+            @Override
+            public int readByte() throws IOException {
+                if (!buffer.hasRemaining()) throw new EOFException();
+                return buffer.get() & 0xFF;
+            }
+
+            @Override
+            public void readFully(byte[] dst) throws IOException {
+                if (buffer.remaining() < dst.length) throw new EOFException();
+                buffer.get(dst);
+            }
+
+            @Override
+            public byte[] readBytes(int length) throws IOException {
+                byte[] dst = new byte[length];
+                readFully(dst);
+                return dst;
+            }
+
+            @Override
+            public long remaining() {
+                return buffer.remaining();
+            }
+        };
+    }
+
+    // As above, reporting the share of the buffer read so far (0-100) and stopping once the thread is interrupted
+    static Input of(ByteBuffer buffer, IntConsumer progress) {
+        Input in = of(buffer);
+        long size = Math.max(1, buffer.limit());
+        return new Input() {
+            private int nextReport = 0;
+
+            @Override
+            public int readByte() throws IOException {
+                int b = in.readByte();
+                if (buffer.position() >= nextReport) report();
+                return b;
+            }
+
+            @Override
+            public void readFully(byte[] dst) throws IOException {
+                in.readFully(dst);
+                if (buffer.position() >= nextReport) report();
+            }
+
+            @Override
+            public byte[] readBytes(int length) throws IOException {
+                byte[] dst = in.readBytes(length);
+                if (buffer.position() >= nextReport) report();
+                return dst;
+            }
+
+            @Override
+            public long remaining() {
+                return in.remaining();
+            }
+
+            private void report() throws InterruptedIOException {
+                CircuitPersistence.checkCancelled();
+                progress.accept((int) (buffer.position() * 100L / size));
+                nextReport = Math.min(buffer.position() + PROGRESS_STEP, buffer.limit());
+            }
+        };
+    }
+
+    static Input of(InputStream stream) {
+        DataInputStream data = new DataInputStream(stream);
+        return new Input() {
+            @Override
+            public int readByte() throws IOException {
+                return data.readUnsignedByte();
+            }
+
+            @Override
+            public void readFully(byte[] dst) throws IOException {
+                data.readFully(dst);
+            }
+
+            // Read in chunks, so a corrupt length runs into the end of the stream before it can exhaust memory
+            @Override
+            public byte[] readBytes(int length) throws IOException {
+                byte[] dst = data.readNBytes(length);
+                if (dst.length < length) throw new EOFException();
+                return dst;
+            }
+
+            @Override
+            public long remaining() {
+                return Long.MAX_VALUE;
+            }
+        };
+    }
+
+    // ==================================================================================
+    // VARINTS
+    // ==================================================================================
+
+    private static final class Encoder {
+        private final OutputStream out;
+        private int lastPin = 0;
+
+        private Encoder(OutputStream out) {
+            this.out = out;
+        }
+
+        private void uint(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+
+        private void sint(int value) throws IOException {
+            uint((value << 1) ^ (value >> 31));
+        }
+
+        private void pin(int pin) throws IOException {
+            sint(pin - lastPin);
+            lastPin = pin;
+        }
+
+        // Index + 1, with 0 standing for null
+        private void optionalString(Map<String, Integer> strings, String s) throws IOException {
+            uint(s == null ? 0 : strings.get(s) + 1);
+        }
+
+        private void stringList(Map<String, Integer> strings, Object list) throws IOException {
+            List<?> items = (list instanceof List) ? (List<?>) list : List.of();
+            uint(items.size());
+            for (Object item : items) optionalString(strings, item instanceof String ? (String) item : null);
+        }
+    }
+
+    private static final class Decoder {
+        private final Input in;
+        private int lastPin = 0;
+
+        private Decoder(Input in) {
+            this.in = in;
+        }
+
+        private int uint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = in.readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw malformed("varint too long");
+        }
+
+        private int sint() throws IOException {
+            int raw = uint();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        private int pin() throws IOException {
+            lastPin += sint();
+            return lastPin;
+        }
+
+        // A count of items that take at least a byte each, so it can't exceed what is left
+        private int count() throws IOException {
+            int count = uint();
+            if (count < 0 || count > in.remaining()) throw malformed("count " + count + " runs past the end of the file");
+            return count;
+        }
+
+        private byte[] bytes() throws IOException {
+            return in.readBytes(count());
+        }
+
+        private String string(String[] strings) throws IOException {
+            int index = uint();
+            if (index < 0 || index >= strings.length) throw malformed("string index " + index + " out of range");
+            return strings[index];
+        }
+
+        private Tooltype type(String[] strings) throws IOException {
+            String name = string(strings);
+            try {
+                return Tooltype.valueOf(name);
+            } catch (IllegalArgumentException e) {
+                throw malformed("unknown component type " + name);
+            }
+        }
+
+        private List<Integer> pinList() throws IOException {
+            int count = count();
+            List<Integer> pins = new ArrayList<>(Math.min(count, MAX_PREALLOCATED));
+            for (int i = 0; i < count; i++) pins.add(pin());
+            return pins;
+        }
+
+        private List<Integer> uintList() throws IOException {
+            int count = count();
+            List<Integer> values = new ArrayList<>(Math.min(count, MAX_PREALLOCATED));
+            for (int i = 0; i < count; i++) values.add(uint());
+            return values;
+        }
+
+        private String optionalString(String[] strings) throws IOException {
+            int index = uint();
+            if (index < 0 || index > strings.length) throw malformed("string index " + (index - 1) + " out of range");
+            return index == 0 ? null : strings[index - 1];
+        }
+
+        private List<String> stringList(String[] strings) throws IOException {
+            int count = count();
+            List<String> items = new ArrayList<>(Math.min(count, MAX_PREALLOCATED));
+            for (int i = 0; i < count; i++) items.add(optionalString(strings));
+            return items;
+        }
+    }
+
+    private static IOException malformed(String detail) {
+        return new IOException("Malformed binary circuit file: " + detail);
+    }
+}
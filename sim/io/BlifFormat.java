@@ -0,0 +1,198 @@
+package sim.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import sim.CircuitManager;
+import sim.model.Tooltype;
+
+/**
+ * The Berkeley Logic Interchange Format (.blif) used by the MCNC benchmarks, read one logical line at a time.
+ * Each ".names" cover becomes an AND per cube and an OR over the cubes (NOR for covers of the OFF-set),
+ * with a shared NOT per complemented input. Latches are imported full-scan, as in {@link BenchFormat}.
+ * Only flat models are supported; hierarchical (.subckt) and library-mapped (.gate) files are rejected.
+ */
+final class BlifFormat {
+    private BlifFormat() {
+        /* This utility class should not be instantiated */
+    }
+
+    static void read(CircuitManager manager, Reader in, boolean autoPlace) throws IOException {
+        NetlistBuilder builder = new NetlistBuilder(autoPlace);
+        new Parser(new BufferedReader(in, 1 << 16), builder).parse();
+        builder.finish(manager);
+    }
+
+    private static final class Parser {
+        private final BufferedReader reader;
+        private final NetlistBuilder builder;
+        private final Map<Integer, Integer> complements = new HashMap<>(); // Net -> its NOT
+        private final List<String[]> latches = new ArrayList<>();          // Q and D nets
+        private int lineNumber = 0;
+
+        // The cover being read
+        private String[] names;
+        private final List<String> rows = new ArrayList<>();
+        private int coverLine;
+
+        Parser(BufferedReader reader, NetlistBuilder builder) {
+            this.reader = reader;
+            this.builder = builder;
+        }
+
+        void parse() throws IOException {
+            boolean inModel = false;
+            String[] tokens;
+            while ((tokens = nextLine()) != null) {
+                String command = tokens[0];
+                if (!command.startsWith(".")) {
+                    if (names == null) throw error("Cover row outside of .names");
+                    rows.add(String.join(" ", tokens));
+                    continue;
+                }
+
+                finishCover();
+                switch (command) {
+                    case ".model" -> {
+                        if (inModel) throw error("Only one .model per file is supported");
+                        inModel = true;
+                    }
+                    case ".inputs" -> {
+                        for (int i = 1; i < tokens.length; i++) builder.input(tokens[i], builder.net(tokens[i]));
+                    }
+                    case ".outputs" -> {
+                        for (int i = 1; i < tokens.length; i++) builder.output(tokens[i], builder.net(tokens[i]));
+                    }
+                    case ".names" -> {
+                        if (tokens.length < 2) throw error(".names needs an output");
+                        names = tokens;
+                        coverLine = lineNumber;
+                    }
+                    case ".latch" -> {
+                        if (tokens.length < 3) throw error(".latch needs an input and an output");
+                        latches.add(new String[] {tokens[2], tokens[1]});
+                    }
+                    case ".end" -> {
+                        finish();
+                        return;
+                    }
+                    case ".exdc" -> {
+                        // External don't-care network: not part of the circuit
+                        finish();
+                        return;
+                    }
+                    case ".clock", ".area", ".delay", ".wire_load_slope", ".default_input_arrival",
+                         ".default_output_required", ".default_input_drive", ".default_output_load" -> { /* Timing only */ }
+                    case ".subckt", ".gate", ".mlatch" ->
+                        throw error(command + " is not supported; please flatten the netlist first");
+                    default -> throw error("Unknown command '" + command + "'");
+                }
+            }
+            finishCover();
+            finish();
+        }
+
+        private void finish() {
+            for (String[] latch : latches) builder.input(latch[0], builder.net(latch[0]));
+            for (String[] latch : latches) builder.output(latch[0] + ".D", builder.net(latch[1]));
+            builder.forgetNames();
+        }
+
+        // A cover is a sum of cubes over the inputs, e.g. "1-0 1"; an output column of 0 describes the OFF-set
+        private void finishCover() throws IOException {
+            if (names == null) return;
+            int inputCount = names.length - 2;
+            String output = names[names.length - 1];
+            int out = builder.net(output);
+
+            List<int[]> cubes = new ArrayList<>();
+            Boolean onSet = null;
+            boolean tautology = false;
+            for (String row : rows) {
+                String cube = (inputCount > 0) ? row.substring(0, row.indexOf(' ') < 0 ? row.length() : row.indexOf(' ')) : "";
+                String value = row.substring(cube.length()).trim();
+                if (cube.length() != inputCount || value.length() != 1 || "01".indexOf(value.charAt(0)) < 0) {
+                    throw error("Malformed cover row '" + row + "'", coverLine);
+                }
+                boolean rowOn = value.charAt(0) == '1';
+                if (onSet != null && onSet != rowOn) throw error("Cover of '" + output + "' mixes ON-set and OFF-set rows", coverLine);
+                onSet = rowOn;
+
+                List<Integer> literals = new ArrayList<>();
+                for (int i = 0; i < inputCount; i++) {
+                    char c = cube.charAt(i);
+                    if (c == '-') continue;
+                    if (c != '0' && c != '1') throw error("Malformed cover row '" + row + "'", coverLine);
+                    int net = builder.net(names[i + 1]);
+                    literals.add(c == '1' ? net : complement(net, names[i + 1]));
+                }
+                if (literals.isEmpty()) tautology = true;
+                cubes.add(literals.stream().mapToInt(Integer::intValue).toArray());
+            }
+
+            // No rows is constant 0; a cube without literals covers everything
+            if (cubes.isEmpty() || tautology) {
+                builder.alias(out, builder.constant(!cubes.isEmpty() && onSet));
+            } else if (cubes.size() == 1) {
+                builder.gate(onSet ? Tooltype.AND : Tooltype.NAND, output, cubes.get(0), out);
+            } else {
+                int[] terms = new int[cubes.size()];
+                for (int i = 0; i < terms.length; i++) {
+                    int[] cube = cubes.get(i);
+                    if (cube.length == 1) {
+                        terms[i] = cube[0];
+                    } else {
+                        terms[i] = builder.newNet();
+                        builder.gate(Tooltype.AND, output + "_c" + i, cube, terms[i]);
+                    }
+                }
+                builder.gate(onSet ? Tooltype.OR : Tooltype.NOR, output, terms, out);
+            }
+            names = null;
+            rows.clear();
+        }
+
+        private int complement(int net, String name) {
+            Integer inverted = complements.get(net);
+            if (inverted == null) {
+                inverted = builder.newNet();
+                builder.component(Tooltype.NOT, name + "_n", new int[] {net}, new int[] {inverted});
+                complements.put(net, inverted);
+            }
+            return inverted;
+        }
+
+        // The tokens of the next logical line: comments removed, "\" continuations joined
+        private String[] nextLine() throws IOException {
+            StringBuilder logical = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                int comment = line.indexOf('#');
+                if (comment >= 0) line = line.substring(0, comment);
+                line = line.strip();
+                if (line.endsWith("\\")) {
+                    logical.append(line, 0, line.length() - 1).append(' ');
+                    continue;
+                }
+                logical.append(line);
+                if (!logical.toString().isBlank()) return logical.toString().trim().split("\\s+");
+                logical.setLength(0);
+            }
+            return logical.toString().isBlank() ? null : logical.toString().trim().split("\\s+");
+        }
+
+        private IOException error(String message) {
+            return error(message, lineNumber);
+        }
+
+        private static IOException error(String message, int line) {
+            return new IOException(message + " on line " + line);
+        }
+    }
+}
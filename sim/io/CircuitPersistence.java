@@ -1,51 +1,315 @@
 package sim.io;
 
-import java.io.FileWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import sim.CircuitComponent;
 import sim.CircuitManager;
+import sim.gates.LookupTable;
+import sim.logic.SubCircuitDefinition;
 import sim.model.SubCircuit;
 import sim.model.Tooltype;
 import sim.model.Wire;
 import sim.util.ComponentFactory;
+import sim.util.JsonReader;
+import sim.util.JsonWriter;
 import sim.util.PinID;
-import sim.util.SimpleJson;
 
+/**
+ * Reads and writes circuits as JSON, or in the equivalent binary format (see {@link BinaryCircuitFormat}).
+ * Version 2 files hold every distinct sub-circuit definition once, in a "definitions" table keyed
+ * by content hash; instances (and nested definitions) refer to it with "def". Version 1 files,
+ * which embed the definition inline in each instance's "data", still load.
+ */
 public class CircuitPersistence {
     private CircuitPersistence() {
         /* This utility class should not be instantiated */
     }
 
+    public static final int FORMAT_VERSION = 2;
+    public static final String JSON_EXTENSION = ".json";
+    public static final String BINARY_EXTENSION = ".dcb";
+    public static final String COMPRESSED_SUFFIX = ".gz";
+    public static final String VERILOG_EXTENSION = ".v";
+    public static final String BENCH_EXTENSION = ".bench";
+    public static final String BLIF_EXTENSION = ".blif";
+
+    private static final byte[] GZIP_MAGIC = {(byte) 0x1f, (byte) 0x8b};
+    private static final int STREAM_BUFFER = 1 << 16;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // Builds sub-circuit definitions while a file loads
+    private static final ExecutorService LOADER_POOL = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), task -> {
+                Thread thread = new Thread(task, "circuit-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
 
     public static void save(CircuitManager manager, String filepath) throws IOException {
-        Map<String, Object> data = serialize(manager);
-        // Write
-        try (FileWriter writer = new FileWriter(filepath)) {
-            writer.write(SimpleJson.serialize(data));
+        save(CircuitSnapshot.of(manager), filepath);
+    }
+
+    // The format follows the extension: .dcb is binary, anything else JSON, and a trailing .gz
+    // compresses either one on the fly. The file is written beside the target and moved over it
+    // at the end, so an interrupted save leaves the previous version intact.
+    public static void save(CircuitSnapshot snapshot, String filepath) throws IOException {
+        boolean compressed = filepath.endsWith(COMPRESSED_SUFFIX);
+        String inner = compressed ? filepath.substring(0, filepath.length() - COMPRESSED_SUFFIX.length()) : filepath;
+        Path target = Paths.get(filepath);
+        Path temp = Paths.get(filepath + TEMP_SUFFIX);
+
+        OutputStream out = Files.newOutputStream(temp);
+        if (compressed) out = new GZIPOutputStream(out, STREAM_BUFFER) {
+            { def.setLevel(Deflater.BEST_SPEED); } // Pin and coordinate data compresses well even at the fastest level
+        };
+        out = new BufferedOutputStream(out, STREAM_BUFFER);
+
+        try {
+            if (inner.endsWith(BINARY_EXTENSION)) {
+                try (OutputStream binary = out) {
+                    BinaryCircuitFormat.write(snapshot, binary);
+                }
+            } else {
+                try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)))) {
+                    serialize(snapshot, writer);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
         }
     }
 
+    // Export a single block with every definition it needs
+    public static void saveBlock(SubCircuit sub, String filepath) throws IOException {
+        try (JsonWriter writer = new JsonWriter(Files.newBufferedWriter(Paths.get(filepath)))) {
+            serializeBlock(sub, writer);
+        }
+    }
+
+    // The format is detected from the file's first bytes, whatever its extension.
+    // Uncompressed binary files are memory-mapped; everything else is streamed.
     public static void load(CircuitManager manager, String filepath) throws IOException {
-        String json = new String(Files.readAllBytes(Paths.get(filepath)));
-        Map<String, Object> data = SimpleJson.parse(json);
-        deserialize(manager, data);
+        load(manager, filepath, true);
+    }
+
+    // As above, reporting the share of the file read so far (0-100). Interrupting the thread cancels the load.
+    public static void load(CircuitManager manager, String filepath, IntConsumer progress) throws IOException {
+        load(manager, filepath, true, progress);
+    }
+
+    // Pins are renumbered to 0..N-1 unless renumberPins is false
+    static void load(CircuitManager manager, String filepath, boolean renumberPins) throws IOException {
+        load(manager, filepath, renumberPins, percent -> {});
+    }
+
+    private static void load(CircuitManager manager, String filepath, boolean renumberPins, IntConsumer progress)
+            throws IOException {
+        checkCancelled(); // An interrupted thread would close the channel instead
+        Path path = Paths.get(filepath);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(BinaryCircuitFormat.MAGIC.length);
+            while (header.hasRemaining() && channel.read(header) != -1) { /* Fill the header */ }
+
+            if (BinaryCircuitFormat.hasMagic(header.array())) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                BinaryCircuitFormat.read(manager, BinaryCircuitFormat.of(mapped, progress), new PinCompactor(renumberPins));
+                return;
+            }
+        }
+        try (InputStream in = new ProgressInputStream(Files.newInputStream(path), Files.size(path), progress)) {
+            load(manager, in, new PinCompactor(renumberPins));
+        }
+    }
+
+    public static void load(CircuitManager manager, InputStream in) throws IOException {
+        load(manager, in, new PinCompactor());
+    }
+
+    // Streamed, so nothing keeps the file open or mapped once it returns
+    static void load(CircuitManager manager, InputStream in, boolean renumberPins) throws IOException {
+        load(manager, in, new PinCompactor(renumberPins));
+    }
+
+    private static void load(CircuitManager manager, InputStream in, PinCompactor pins) throws IOException {
+        InputStream stream = new BufferedInputStream(in, STREAM_BUFFER);
+        if (startsWith(stream, GZIP_MAGIC)) {
+            stream = new BufferedInputStream(new GZIPInputStream(stream, STREAM_BUFFER), STREAM_BUFFER);
+        }
+
+        if (startsWith(stream, BinaryCircuitFormat.MAGIC)) {
+            BinaryCircuitFormat.read(manager, BinaryCircuitFormat.of(stream), pins);
+        } else {
+            deserialize(manager, new JsonReader(new InputStreamReader(stream, StandardCharsets.UTF_8)), pins);
+        }
+    }
+
+    // Adds the default extension unless the path already names a known format
+    public static String withExtension(String filepath) {
+        String inner = filepath.endsWith(COMPRESSED_SUFFIX)
+                ? filepath.substring(0, filepath.length() - COMPRESSED_SUFFIX.length()) : filepath;
+        if (inner.endsWith(JSON_EXTENSION) || inner.endsWith(BINARY_EXTENSION)) return filepath;
+        return filepath + JSON_EXTENSION;
+    }
+
+    private static boolean startsWith(InputStream in, byte[] magic) throws IOException {
+        in.mark(magic.length);
+        byte[] header = in.readNBytes(magic.length);
+        in.reset();
+        return Arrays.equals(header, magic);
+    }
+
+    // ==================================================================================
+    // NETLIST EXCHANGE
+    // ==================================================================================
+
+    // Gate-level netlists from other tools (Verilog, ISCAS .bench, BLIF). The format follows the file name (a trailing .gz is
+    // decompressed on the fly). Without auto-placement components go on a plain grid, which is faster.
+    public static void importNetlist(CircuitManager manager, InputStream in, String filename, boolean autoPlace) throws IOException {
+        InputStream stream = new BufferedInputStream(in, STREAM_BUFFER);
+        if (startsWith(stream, GZIP_MAGIC)) stream = new GZIPInputStream(stream, STREAM_BUFFER);
+        Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
+
+        String name = filename.toLowerCase();
+        if (name.endsWith(COMPRESSED_SUFFIX)) name = name.substring(0, name.length() - COMPRESSED_SUFFIX.length());
+        if (name.endsWith(VERILOG_EXTENSION) || name.endsWith(".sv")) {
+            VerilogFormat.read(manager, reader, autoPlace);
+        } else if (name.endsWith(BENCH_EXTENSION)) {
+            BenchFormat.read(manager, reader, autoPlace);
+        } else if (name.endsWith(BLIF_EXTENSION)) {
+            BlifFormat.read(manager, reader, autoPlace);
+        } else {
+            throw new IOException("Unsupported netlist format: " + filename);
+        }
+    }
+
+    // Structural Verilog; the top module is named after the file
+    public static void exportVerilog(CircuitSnapshot snapshot, String filepath) throws IOException {
+        String module = Paths.get(filepath).getFileName().toString();
+        if (module.contains(".")) module = module.substring(0, module.indexOf('.'));
+        try (Writer writer = Files.newBufferedWriter(Paths.get(filepath), StandardCharsets.UTF_8)) {
+            VerilogFormat.write(snapshot, writer, module.isEmpty() ? "top" : module);
+        }
+    }
+
+    // ==================================================================================
+    // SERIALIZATION
+    // ==================================================================================
+
+    // Walks the circuit straight into the writer. Definitions come first so a streaming
+    // reader can resolve every instance as soon as it sees it.
+    public static void serialize(CircuitManager manager, JsonWriter writer) throws IOException {
+        serialize(CircuitSnapshot.of(manager), writer);
+    }
+
+    public static void serialize(CircuitSnapshot snapshot, JsonWriter writer) throws IOException {
+        Map<String, SubCircuitDefinition> references = new HashMap<>();
+        for (CircuitSnapshot.Entry c : snapshot.getComponents()) {
+            if (c.definition() != null) references.put(c.definition().getContentHash(), c.definition());
+        }
+
+        writer.beginObject();
+        writer.name("version").value(FORMAT_VERSION);
+        writer.name("definitions");
+        writeDefinitions(references.values(), writer);
+
+        // 1. Serialize Components
+        writer.name("components").beginArray();
+        for (CircuitSnapshot.Entry c : snapshot.getComponents()) {
+            writeComponent(c, writer);
+        }
+        writer.endArray();
+
+        // 2. Serialize Wires
+        writer.name("wires").beginArray();
+        for (Wire w : snapshot.getWires()) {
+            writer.beginObject();
+            writer.name("src").value(w.getSourcePinID());
+            writer.name("dest").value(w.getDestPinID());
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
     }
 
-    public static Map<String, Object> serialize(CircuitManager manager) {
+    public static void serializeBlock(SubCircuit sub, JsonWriter writer) throws IOException {
+        SubCircuitDefinition definition = sub.getCircuitDefinition();
+
+        writer.beginObject();
+        writer.name("version").value(FORMAT_VERSION);
+        writer.name("id").value(sub.getID());
+        writer.name("def").value(definition.getContentHash());
+        writer.name("definitions");
+        writeDefinitions(List.of(definition), writer);
+        writer.endObject();
+    }
+
+    static void writeComponent(CircuitSnapshot.Entry c, JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("type").value(c.type().toString());
+        writer.name("id").value(c.id());
+        writer.name("x").value(c.x());
+        writer.name("y").value(c.y());
+        writer.name("inPins").value(c.inPins());
+        writer.name("outPins").value(c.outPins());
+
+        if (c.definition() != null) {
+            writer.name("def").value(c.definition().getContentHash());
+        } else if (c.data() != null) {
+            writer.name("data").tree(c.data());
+        }
+        writer.endObject();
+    }
+
+    // Components and wires of one circuit level as a tree: the stored body of a definition.
+    // Sub-circuits are written as a "def" reference.
+    public static Map<String, Object> serializeCircuit(List<CircuitComponent> components, List<Wire> wires) {
         Map<String, Object> data = new HashMap<>();
-        
+
         // 1. Serialize Components
         List<Map<String, Object>> compList = new ArrayList<>();
-        for (CircuitComponent c : manager.getComponents()) {
+        for (CircuitComponent c : components) {
             Map<String, Object> cMap = new HashMap<>();
-            
+
             // Determine type
             Tooltype type = c.getToolType();
             if (type == null) continue;
@@ -54,35 +318,232 @@ public class CircuitPersistence {
             cMap.put("id", c.getID());
             cMap.put("x", c.getX());
             cMap.put("y", c.getY());
-            cMap.put("inPins", c.getInputPinIDs());
-            cMap.put("outPins", c.getOutputPinIDs());
-            
+            cMap.put("inPins", new ArrayList<>(c.getInputPinIDs()));
+            cMap.put("outPins", new ArrayList<>(c.getOutputPinIDs()));
+
             if (c instanceof SubCircuit) {
-                cMap.put("data", ((SubCircuit) c).getDefinition());
+                cMap.put("def", ((SubCircuit) c).getCircuitDefinition().getContentHash());
+            } else if (c instanceof LookupTable) {
+                cMap.put("data", ((LookupTable) c).getData());
             }
-            
+
             compList.add(cMap);
         }
         data.put("components", compList);
 
         // 2. Serialize Wires
         List<Map<String, Object>> wireList = new ArrayList<>();
-        for (Wire w : manager.getWires()) {
+        for (Wire w : wires) {
             Map<String, Object> wMap = new HashMap<>();
             wMap.put("src", w.getSourcePinID());
             wMap.put("dest", w.getDestPinID());
             wireList.add(wMap);
         }
         data.put("wires", wireList);
-        
+
         return data;
     }
 
+    // The definitions table for the given roots and everything nested inside them
+    static void writeDefinitions(Collection<SubCircuitDefinition> roots, JsonWriter writer) throws IOException {
+        Set<String> written = new HashSet<>();
+        Deque<SubCircuitDefinition> pending = new ArrayDeque<>(roots);
+
+        writer.beginObject();
+        while (!pending.isEmpty()) {
+            SubCircuitDefinition definition = pending.poll();
+            if (!written.add(definition.getContentHash())) continue;
+
+            List<Integer> inputs = new ArrayList<>();
+            for (int i = 0; i < definition.getInputCount(); i++) inputs.add(definition.getInputPin(i));
+            List<Integer> outputs = new ArrayList<>();
+            for (int i = 0; i < definition.getOutputCount(); i++) outputs.add(definition.getOutputPin(i));
+
+            writer.name(definition.getContentHash()).beginObject();
+            writer.name("inputs").value(inputs);
+            writer.name("outputs").value(outputs);
+            for (Map.Entry<String, Object> entry : definition.getInternalCircuit().entrySet()) {
+                writer.name(entry.getKey()).tree(entry.getValue());
+            }
+            writer.endObject();
+
+            pending.addAll(definition.getDependencies().values());
+        }
+        writer.endObject();
+    }
+
+    // ==================================================================================
+    // DESERIALIZATION
+    // ==================================================================================
+
+    // Builds the circuit straight from the token stream. Only definition bodies and component
+    // "data" are read as trees; sub-circuits that appear before the definitions table are
+    // instantiated once it has been read.
+    public static void deserialize(CircuitManager manager, JsonReader reader) throws IOException {
+        deserialize(manager, reader, new PinCompactor());
+    }
+
     @SuppressWarnings("unchecked")
-    public static void deserialize(CircuitManager manager, Map<String, Object> data) {
+    private static void deserialize(CircuitManager manager, JsonReader reader, PinCompactor pins) throws IOException {
         // Clear current
         manager.clear();
 
+        Map<String, SubCircuitDefinition> definitions = new HashMap<>();
+        List<CircuitComponent> loaded = new ArrayList<>();
+        Map<Integer, ComponentRecord> pending = new HashMap<>();
+        List<Wire> wires = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "definitions":
+                    definitions = deserializeDefinitions((Map<String, Object>) reader.readValue());
+                    break;
+                case "components":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        ComponentRecord record = readComponent(reader, pins);
+
+                        if (record.def() != null && !definitions.containsKey(record.def())) {
+                            pending.put(loaded.size(), record);
+                            loaded.add(null);
+                        } else {
+                            loaded.add(record.create(definitions));
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                case "wires":
+                    reader.beginArray();
+                    while (reader.hasNext()) wires.add(readWire(reader));
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        reader.endDocument();
+        checkCancelled();
+
+        for (Map.Entry<Integer, ComponentRecord> entry : pending.entrySet()) {
+            loaded.set(entry.getKey(), entry.getValue().create(definitions));
+        }
+        // Wires are renumbered last, so IDs follow component order wherever the wires appear in the file
+        wires.replaceAll(w -> new Wire(pins.map(w.getSourcePinID()), pins.map(w.getDestPinID())));
+        finishLoad(manager, loaded, wires, pins.count());
+    }
+
+    // Common end of every load: add everything in one go, then settle the circuit once.
+    // The pins have been renumbered to 0..pinCount-1. The counter is only ever raised here, as loads
+    // may run off the Swing thread; CircuitManager.replaceWith() brings it back down.
+    static void finishLoad(CircuitManager manager, List<CircuitComponent> components, List<Wire> wires, int pinCount)
+            throws InterruptedIOException {
+        checkCancelled();
+        for (CircuitComponent c : components) {
+            if (c != null) manager.getComponents().add(c);
+        }
+        for (Wire w : wires) {
+            manager.addWireDirectly(w);
+        }
+
+        // Update PinID Generator. Components made for incomplete entries may hold fresh pins above the range.
+        int nextPinID = pinCount;
+        for (CircuitComponent c : components) {
+            if (c == null) continue;
+            for (int p : c.getInputPinIDs()) nextPinID = Math.max(nextPinID, p + 1);
+            for (int p : c.getOutputPinIDs()) nextPinID = Math.max(nextPinID, p + 1);
+        }
+        PinID.setNextPinID(nextPinID);
+
+        manager.refreshAllPinLocations();
+        checkCancelled();
+        manager.propagate(); // Stops early if the load is cancelled
+        checkCancelled();
+    }
+
+    // A load is cancelled by interrupting the thread running it, which the phases of a load check in between
+    static void checkCancelled() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Load cancelled");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ComponentRecord readComponent(JsonReader reader, PinCompactor pins) throws IOException {
+        Tooltype type = null;
+        String id = null;
+        String def = null;
+        int x = 0;
+        int y = 0;
+        List<Integer> inPins = new ArrayList<>();
+        List<Integer> outPins = new ArrayList<>();
+        Map<String, Object> data = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "type": type = Tooltype.valueOf(reader.nextString()); break;
+                case "id": id = reader.nextString(); break;
+                case "def": def = reader.nextString(); break;
+                case "x": x = reader.nextInt(); break;
+                case "y": y = reader.nextInt(); break;
+                case "inPins": inPins = pins.map(readIntList(reader)); break;
+                case "outPins": outPins = pins.map(readIntList(reader)); break;
+                case "data": data = (Map<String, Object>) reader.readValue(); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new ComponentRecord(type, id, x, y, inPins, outPins, def, data);
+    }
+
+    private static Wire readWire(JsonReader reader) throws IOException {
+        int src = 0;
+        int dest = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "src": src = reader.nextInt(); break;
+                case "dest": dest = reader.nextInt(); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Wire(src, dest);
+    }
+
+    private static List<Integer> readIntList(JsonReader reader) throws IOException {
+        List<Integer> result = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) result.add(reader.nextInt());
+        reader.endArray();
+        return result;
+    }
+
+    // One component entry as read from a file, before it is turned into a CircuitComponent
+    private record ComponentRecord(Tooltype type, String id, int x, int y, List<Integer> inPins, List<Integer> outPins,
+                                   String def, Map<String, Object> data) {
+        CircuitComponent create(Map<String, SubCircuitDefinition> definitions) {
+            return createComponent(type, id, x, y, inPins, outPins, def != null ? definitions.get(def) : null, data);
+        }
+    }
+
+    // An exported block in either format, null if the data isn't one
+    @SuppressWarnings("unchecked")
+    public static SubCircuitDefinition deserializeBlock(Map<String, Object> data) {
+        if (data.containsKey("def")) {
+            Map<String, SubCircuitDefinition> definitions = deserializeDefinitions((Map<String, Object>) data.get("definitions"));
+            return definitions.get((String) data.get("def"));
+        }
+        if (data.containsKey("internalCircuit")) {
+            return SubCircuitDefinition.fromData(data);
+        }
+        return null;
+    }
+
+    // Loads components and wires into the manager without clearing it or propagating. Returns the highest pin ID seen.
+    @SuppressWarnings("unchecked")
+    public static int deserializeCircuit(CircuitManager manager, Map<String, Object> data,
+                                         Map<String, SubCircuitDefinition> definitions) {
         // 1. Load Components
         List<Object> compList = (List<Object>) data.get("components");
         int maxPinID = 0;
@@ -104,21 +565,10 @@ public class CircuitPersistence {
                 for (int p : inPins) maxPinID = Math.max(maxPinID, p);
                 for (int p : outPins) maxPinID = Math.max(maxPinID, p);
 
-                CircuitComponent c = null;
-                
-                if (type == Tooltype.SUB_CIRCUIT) {
-                    Map<String, Object> subData = (Map<String, Object>) map.get("data");
-                    if (subData != null) {
-                        c = new SubCircuit(subData, false);
-                    } else {
-                        // Fallback if data is missing (should not happen in valid saves)
-                        c = ComponentFactory.createForLoad(type, id, x, y, inPins, outPins);
-                    }
-                } else {
-                    c = ComponentFactory.createForLoad(type, id, x, y, inPins, outPins);
-                }
+                CircuitComponent c = createComponent(type, id, x, y, inPins, outPins,
+                        definitions.get((String) map.get("def")), (Map<String, Object>) map.get("data"));
 
-                if (c != null) manager.addComponent(c);
+                if (c != null) manager.getComponents().add(c);
             }
         }
 
@@ -133,11 +583,97 @@ public class CircuitPersistence {
             }
         }
 
-        // 3. Update PinID Generator
-        PinID.setNextPinID(maxPinID + 1);
-        
-        manager.refreshAllPinLocations();
-        manager.propagate();
+        return maxPinID;
+    }
+
+    static CircuitComponent createComponent(Tooltype type, String id, int x, int y, List<Integer> inPins,
+                                                    List<Integer> outPins, SubCircuitDefinition definition, Map<String, Object> data) {
+        if (type == Tooltype.SUB_CIRCUIT) {
+            if (definition != null) {
+                return new SubCircuit(id, x, y, inPins, outPins, definition);
+            } else if (data != null) {
+                // Version 1: the definition is embedded in the instance. The pins may have been renumbered.
+                Map<String, Object> instance = new HashMap<>(data);
+                instance.put("inPins", inPins);
+                instance.put("outPins", outPins);
+                return new SubCircuit(instance, SubCircuitDefinition.fromData(data), false);
+            }
+            // Fallback if data is missing (should not happen in valid saves)
+            return ComponentFactory.createForLoad(type, id, x, y, inPins, outPins);
+        } else if (type == Tooltype.LOOKUP_TABLE) {
+            return data != null ? new LookupTable(id, x, y, inPins, outPins, data) : null;
+        }
+        return ComponentFactory.createForLoad(type, id, x, y, inPins, outPins);
+    }
+
+    // Resolve a definitions table on the loader pool. Every definition is built as soon as the ones
+    // nested in it are done, so independent blocks are built side by side. Compiling is left to first use.
+    static Map<String, SubCircuitDefinition> deserializeDefinitions(Map<String, Object> table) {
+        Map<String, SubCircuitDefinition> resolved = new HashMap<>();
+        if (table == null) return resolved;
+
+        Map<String, CompletableFuture<SubCircuitDefinition>> futures = new HashMap<>();
+        Set<String> visiting = new HashSet<>();
+        for (String key : table.keySet()) {
+            resolveDefinition(key, table, futures, visiting);
+        }
+
+        try {
+            for (Map.Entry<String, CompletableFuture<SubCircuitDefinition>> entry : futures.entrySet()) {
+                resolved.put(entry.getKey(), entry.getValue().get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            // The load was cancelled: definitions not started yet are dropped
+            for (CompletableFuture<SubCircuitDefinition> future : futures.values()) future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Load cancelled");
+        }
+        return resolved;
+    }
+
+    // Schedules one entry after its nested definitions. The graph itself is walked on the calling thread.
+    @SuppressWarnings("unchecked")
+    private static CompletableFuture<SubCircuitDefinition> resolveDefinition(String key, Map<String, Object> table,
+            Map<String, CompletableFuture<SubCircuitDefinition>> futures, Set<String> visiting) {
+        CompletableFuture<SubCircuitDefinition> future = futures.get(key);
+        if (future != null) return future;
+
+        Map<String, Object> entry = (Map<String, Object>) table.get(key);
+        if (entry == null) return null;
+        if (!visiting.add(key)) throw new IllegalArgumentException("Sub-circuit definition contains itself: " + key);
+
+        List<Object> compList = (List<Object>) entry.get("components");
+        Map<String, CompletableFuture<SubCircuitDefinition>> nested = new HashMap<>();
+        if (compList != null) {
+            for (Object obj : compList) {
+                Object ref = ((Map<String, Object>) obj).get("def");
+                if (!(ref instanceof String)) continue;
+                CompletableFuture<SubCircuitDefinition> dependency = resolveDefinition((String) ref, table, futures, visiting);
+                if (dependency != null) nested.put((String) ref, dependency);
+            }
+        }
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("components", compList != null ? compList : new ArrayList<>());
+        body.put("wires", entry.get("wires") != null ? entry.get("wires") : new ArrayList<>());
+        List<Integer> inputs = castToIntList(entry.get("inputs"));
+        List<Integer> outputs = castToIntList(entry.get("outputs"));
+
+        future = CompletableFuture.allOf(nested.values().toArray(new CompletableFuture<?>[0])).thenApplyAsync(done -> {
+            Map<String, SubCircuitDefinition> dependencies = new HashMap<>();
+            for (Map.Entry<String, CompletableFuture<SubCircuitDefinition>> e : nested.entrySet()) {
+                dependencies.put(e.getKey(), e.getValue().join());
+            }
+            return SubCircuitDefinition.fromBody(inputs, outputs, body, dependencies);
+        }, LOADER_POOL);
+
+        visiting.remove(key);
+        futures.put(key, future);
+        return future;
     }
 
     // Helper
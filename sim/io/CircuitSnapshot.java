@@ -0,0 +1,56 @@
+package sim.io;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import sim.CircuitComponent;
+import sim.CircuitManager;
+import sim.gates.LookupTable;
+import sim.logic.SubCircuitDefinition;
+import sim.model.SubCircuit;
+import sim.model.Tooltype;
+import sim.model.Wire;
+
+/**
+ * An immutable copy of everything a save writes. Taking one is a quick pass over the circuit,
+ * so a save can snapshot on the Swing thread and format and write on another while editing goes on.
+ * Definitions are immutable already and are shared, not copied.
+ */
+public final class CircuitSnapshot {
+
+    // One component as it will be saved; definition is set for sub-circuits, data for lookup tables
+    public record Entry(Tooltype type, String id, int x, int y, List<Integer> inPins, List<Integer> outPins,
+                        SubCircuitDefinition definition, Map<String, Object> data) {}
+
+    private final List<Entry> components;
+    private final List<Wire> wires;
+
+    private CircuitSnapshot(List<Entry> components, List<Wire> wires) {
+        this.components = components;
+        this.wires = wires;
+    }
+
+    public static CircuitSnapshot of(CircuitManager manager) {
+        List<Entry> components = new ArrayList<>(manager.getComponents().size());
+        for (CircuitComponent c : manager.getComponents()) {
+            Entry entry = entryOf(c);
+            if (entry != null) components.add(entry);
+        }
+        return new CircuitSnapshot(List.copyOf(components), List.copyOf(manager.getWires()));
+    }
+
+    // Null for components without a tool type, which are never saved
+    public static Entry entryOf(CircuitComponent c) {
+        Tooltype type = c.getToolType();
+        if (type == null) return null;
+
+        SubCircuitDefinition definition = (c instanceof SubCircuit) ? ((SubCircuit) c).getCircuitDefinition() : null;
+        Map<String, Object> data = (c instanceof LookupTable) ? ((LookupTable) c).getData() : null;
+        return new Entry(type, c.getID(), c.getX(), c.getY(),
+                List.copyOf(c.getInputPinIDs()), List.copyOf(c.getOutputPinIDs()), definition, data);
+    }
+
+    public List<Entry> getComponents() { return components; }
+    public List<Wire> getWires() { return wires; }
+}
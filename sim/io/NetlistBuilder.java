@@ -0,0 +1,454 @@
+package sim.io;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import sim.CircuitComponent;
+import sim.CircuitManager;
+import sim.logic.SubCircuitDefinition;
+import sim.model.SubCircuit;
+import sim.model.Switch;
+import sim.model.Tooltype;
+import sim.model.Wire;
+import sim.util.ComponentFactory;
+
+/**
+ * Collects a gate-level netlist from an importer (named nets, cells, ports and nested blocks) and turns it
+ * into components and wires in one pass. Nets are plain ints; buffers and assigns merge nets instead of
+ * adding components. Pins are numbered densely in component order, as every load expects.
+ * Ports become Switches (inputs) and LEDs (outputs), so a module can be loaded as the circuit or
+ * become a sub-circuit definition of its own.
+ *
+ * Constants (1'b0, 1'b1, supply nets) are folded into the gates that read them while building, e.g. 'a & 1'
+ * becomes a and 'a ^ 1' a NOT. Only constants that something else still reads (an output port, a MUX data
+ * input, a module instance) get a source: a Switch named CONST_0 or CONST_1 in the circuit, or an extra
+ * input port in a module. Flipping a CONST_ switch changes the imported logic.
+ */
+final class NetlistBuilder {
+
+    // Auto-placement: one column per logic level, left to right
+    private static final int COLUMN_WIDTH = 160;
+    private static final int ROW_GAP = 20;
+    private static final int GRID_SPACING = 100; // Without auto-placement components go on a plain grid
+
+    // A built module. Constants it still reads after folding are extra input ports after the real ones,
+    // which every instance ties to constants of its own.
+    record Block(SubCircuitDefinition definition, boolean[] constants) {}
+
+    private record Cell(Tooltype type, String id, int[] in, int[] out, Block block) {}
+
+    private final boolean autoPlace;
+    private final Map<String, Integer> netNames = new HashMap<>();
+    private int[] parent = new int[64]; // Union-find over nets, for aliases
+    private int netCount = 0;
+    private final int[] constantNets = {-1, -1};
+
+    private final List<Cell> inputs = new ArrayList<>();
+    private final List<Cell> outputs = new ArrayList<>();
+    private final List<Cell> cells = new ArrayList<>();
+
+    NetlistBuilder(boolean autoPlace) {
+        this.autoPlace = autoPlace;
+    }
+
+    // ==================================================================================
+    // NETS
+    // ==================================================================================
+
+    int net(String name) {
+        Integer net = netNames.get(name);
+        if (net == null) {
+            net = newNet();
+            netNames.put(name, net);
+        }
+        return net;
+    }
+
+    // Names are only needed while the source is read; dropping them early keeps large imports smaller
+    void forgetNames() {
+        netNames.clear();
+    }
+
+    int newNet() {
+        if (netCount == parent.length) parent = Arrays.copyOf(parent, netCount * 2);
+        parent[netCount] = netCount;
+        return netCount++;
+    }
+
+    int constant(boolean high) {
+        int index = high ? 1 : 0;
+        if (constantNets[index] < 0) constantNets[index] = newNet();
+        return constantNets[index];
+    }
+
+    // The two nets are one from now on
+    void alias(int a, int b) {
+        a = find(a);
+        b = find(b);
+        if (a != b) parent[b] = a;
+    }
+
+    private int find(int net) {
+        while (parent[net] != net) {
+            parent[net] = parent[parent[net]];
+            net = parent[net];
+        }
+        return net;
+    }
+
+    // ==================================================================================
+    // CELLS
+    // ==================================================================================
+
+    void input(String name, int net) {
+        inputs.add(new Cell(Tooltype.SWITCH, name, new int[0], new int[] {net}, null));
+    }
+
+    void output(String name, int net) {
+        outputs.add(new Cell(Tooltype.LED, name, new int[] {net}, new int[0], null));
+    }
+
+    // AND, OR, XOR and their complements take any number of inputs; wider ones become a tree of two-input gates
+    void gate(Tooltype type, String id, int[] in, int out) {
+        if (in.length == 1) {
+            if (isInverting(type)) {
+                cells.add(new Cell(Tooltype.NOT, id, in, new int[] {out}, null));
+            } else {
+                alias(out, in[0]);
+            }
+            return;
+        }
+
+        Tooltype inner = switch (type) {
+            case NAND -> Tooltype.AND;
+            case NOR -> Tooltype.OR;
+            case XNOR -> Tooltype.XOR;
+            default -> type;
+        };
+        int[] level = in;
+        int part = 0;
+        while (level.length > 2) {
+            int[] next = new int[(level.length + 1) / 2];
+            for (int i = 0; i < level.length; i += 2) {
+                if (i + 1 == level.length) {
+                    next[i / 2] = level[i];
+                } else {
+                    next[i / 2] = newNet();
+                    cells.add(new Cell(inner, id + "_" + (++part), new int[] {level[i], level[i + 1]}, new int[] {next[i / 2]}, null));
+                }
+            }
+            level = next;
+        }
+        cells.add(new Cell(type, id, level, new int[] {out}, null));
+    }
+
+    // A component with fixed pins, e.g. NOT or MUX
+    void component(Tooltype type, String id, int[] in, int[] out) {
+        cells.add(new Cell(type, id, in, out, null));
+    }
+
+    void instance(String id, Block block, int[] in, int[] out) {
+        int[] allIn = Arrays.copyOf(in, in.length + block.constants().length);
+        for (int i = 0; i < block.constants().length; i++) allIn[in.length + i] = constant(block.constants()[i]);
+        cells.add(new Cell(Tooltype.SUB_CIRCUIT, id, allIn, out, block));
+    }
+
+    private static boolean isInverting(Tooltype type) {
+        return type == Tooltype.NAND || type == Tooltype.NOR || type == Tooltype.XNOR || type == Tooltype.NOT;
+    }
+
+    // ==================================================================================
+    // BUILDING
+    // ==================================================================================
+
+    // Loads the netlist as the manager's circuit. The manager is expected to be empty.
+    void finish(CircuitManager manager) throws InterruptedIOException {
+        CircuitPersistence.checkCancelled();
+        List<CircuitComponent> components = new ArrayList<>();
+        List<Wire> wires = new ArrayList<>();
+        int pinCount = build(components, wires);
+        CircuitPersistence.finishLoad(manager, components, wires, pinCount);
+    }
+
+    // Builds the netlist as a sub-circuit definition
+    Block toBlock() {
+        List<CircuitComponent> components = new ArrayList<>();
+        List<Wire> wires = new ArrayList<>();
+        build(components, wires);
+
+        boolean[] constants = new boolean[(constantNets[0] >= 0 ? 1 : 0) + (constantNets[1] >= 0 ? 1 : 0)];
+        if (constantNets[1] >= 0) constants[constants.length - 1] = true;
+        return new Block(SubCircuitDefinition.fromComponents(components, wires), constants);
+    }
+
+    // Order: input ports, constants, output ports, then every other cell. Returns the pin count.
+    private int build(List<CircuitComponent> components, List<Wire> wires) {
+        foldConstants();
+        dropUnusedConstants();
+        List<Cell> ordered = new ArrayList<>(inputs.size() + outputs.size() + cells.size() + 2);
+        ordered.addAll(inputs);
+        if (constantNets[0] >= 0) ordered.add(new Cell(Tooltype.SWITCH, "CONST_0", new int[0], new int[] {constantNets[0]}, null));
+        if (constantNets[1] >= 0) ordered.add(new Cell(Tooltype.SWITCH, "CONST_1", new int[0], new int[] {constantNets[1]}, null));
+        ordered.addAll(outputs);
+        ordered.addAll(cells);
+
+        // 1. Components, recording the output pin that drives each net
+        int[] drivers = new int[netCount];
+        Arrays.fill(drivers, -1);
+        int pin = 0;
+        int conflicts = 0;
+        for (Cell cell : ordered) {
+            List<Integer> inPins = new ArrayList<>(cell.in().length);
+            for (int i = 0; i < cell.in().length; i++) inPins.add(pin++);
+            List<Integer> outPins = new ArrayList<>(cell.out().length);
+            for (int net : cell.out()) {
+                int root = find(net);
+                if (drivers[root] == -1) {
+                    drivers[root] = pin;
+                } else {
+                    conflicts++;
+                }
+                outPins.add(pin++);
+            }
+            components.add(create(cell, inPins, outPins));
+        }
+        if (conflicts > 0) {
+            System.err.println("Warning: " + conflicts + " net(s) have more than one driver; only the first is connected");
+        }
+
+        // 2. Wires, walking the pins in the same order
+        pin = 0;
+        for (Cell cell : ordered) {
+            for (int net : cell.in()) {
+                int driver = drivers[find(net)];
+                if (driver != -1) wires.add(new Wire(driver, pin));
+                pin++;
+            }
+            pin += cell.out().length;
+        }
+
+        if (autoPlace) {
+            placeByLevel(components, wires, pin);
+        } else {
+            placeOnGrid(components);
+        }
+        return pin;
+    }
+
+    // Simplifies the gates reading a constant, passing the result on, until nothing changes. Each pass
+    // removes or replaces at least one cell, and chains of constant logic are short in practice.
+    private void foldConstants() {
+        if (constantNets[0] < 0 && constantNets[1] < 0) return;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            List<Cell> kept = new ArrayList<>(cells.size());
+            for (Cell cell : cells) changed |= fold(cell, kept);
+            cells.clear();
+            cells.addAll(kept);
+        }
+    }
+
+    // Adds the cell, or the simpler cells it becomes, to kept. Returns whether it was simplified.
+    private boolean fold(Cell cell, List<Cell> kept) {
+        int[] in = cell.in();
+        int out = (cell.out().length == 1) ? cell.out()[0] : -1;
+        if (cell.block() != null || out < 0) {
+            kept.add(cell);
+            return false;
+        }
+
+        switch (cell.type()) {
+            case NOT -> {
+                int value = constantOf(in[0]);
+                if (value >= 0) {
+                    alias(constant(value == 0), out);
+                    return true;
+                }
+            }
+            case MUX -> {
+                int select = constantOf(in[2]); // Inputs are low, high, select
+                if (select >= 0) {
+                    alias(in[select], out);
+                    return true;
+                }
+                int low = constantOf(in[0]);
+                int high = constantOf(in[1]);
+                if (low < 0 && high < 0) break;
+
+                // A constant data input makes it an AND or OR with the select, inverted where needed
+                String id = cell.id();
+                if (low >= 0 && high >= 0) {
+                    if (low == high) {
+                        alias(in[0], out);
+                    } else if (high == 1) {
+                        alias(in[2], out);
+                    } else {
+                        kept.add(new Cell(Tooltype.NOT, id, new int[] {in[2]}, cell.out(), null));
+                    }
+                } else if (low == 0) {
+                    kept.add(new Cell(Tooltype.AND, id, new int[] {in[2], in[1]}, cell.out(), null));
+                } else if (high == 1) {
+                    kept.add(new Cell(Tooltype.OR, id, new int[] {in[2], in[0]}, cell.out(), null));
+                } else {
+                    int notSelect = newNet();
+                    kept.add(new Cell(Tooltype.NOT, id + "_n", new int[] {in[2]}, new int[] {notSelect}, null));
+                    kept.add(high == 0
+                            ? new Cell(Tooltype.AND, id, new int[] {notSelect, in[0]}, cell.out(), null)
+                            : new Cell(Tooltype.OR, id, new int[] {notSelect, in[1]}, cell.out(), null));
+                }
+                return true;
+            }
+            case AND, OR, XOR, NAND, NOR, XNOR -> {
+                if (in.length != 2) break;
+                int a = constantOf(in[0]);
+                int b = constantOf(in[1]);
+                if (a < 0 && b < 0) break;
+
+                boolean inverting = isInverting(cell.type());
+                Tooltype base = switch (cell.type()) {
+                    case NAND -> Tooltype.AND;
+                    case NOR -> Tooltype.OR;
+                    case XNOR -> Tooltype.XOR;
+                    default -> cell.type();
+                };
+                if (a >= 0 && b >= 0) {
+                    boolean value = switch (base) {
+                        case AND -> (a & b) == 1;
+                        case OR -> (a | b) == 1;
+                        default -> (a ^ b) == 1;
+                    };
+                    alias(constant(value != inverting), out);
+                    return true;
+                }
+
+                int c = (a >= 0) ? a : b;
+                int other = (a >= 0) ? in[1] : in[0];
+                if ((base == Tooltype.AND && c == 0) || (base == Tooltype.OR && c == 1)) {
+                    alias(constant((c == 1) != inverting), out); // The constant decides the output
+                } else if (inverting != (base == Tooltype.XOR && c == 1)) {
+                    kept.add(new Cell(Tooltype.NOT, cell.id(), new int[] {other}, cell.out(), null));
+                } else {
+                    alias(other, out); // The constant doesn't matter: a buffer
+                }
+                return true;
+            }
+            default -> { }
+        }
+        kept.add(cell);
+        return false;
+    }
+
+    // 0 or 1 for a net tied to a constant, -1 otherwise
+    private int constantOf(int net) {
+        int root = find(net);
+        for (int i = 0; i < constantNets.length; i++) {
+            if (constantNets[i] >= 0 && find(constantNets[i]) == root) return i;
+        }
+        return -1;
+    }
+
+    // Constants are handed out freely while parsing (e.g. padding), so only those something reads get a Switch
+    private void dropUnusedConstants() {
+        for (int i = 0; i < constantNets.length; i++) {
+            if (constantNets[i] < 0) continue;
+            int root = find(constantNets[i]);
+            boolean used = false;
+            for (Cell cell : outputs) used |= find(cell.in()[0]) == root;
+            for (int c = 0; c < cells.size() && !used; c++) {
+                for (int net : cells.get(c).in()) used |= find(net) == root;
+            }
+            if (!used) constantNets[i] = -1;
+        }
+    }
+
+    private CircuitComponent create(Cell cell, List<Integer> inPins, List<Integer> outPins) {
+        if (cell.block() != null) {
+            return new SubCircuit(cell.id(), 0, 0, inPins, outPins, cell.block().definition());
+        }
+        CircuitComponent c = ComponentFactory.createForLoad(cell.type(), cell.id(), 0, 0, inPins, outPins);
+        if (c instanceof Switch && cell.out()[0] == constantNets[1]) ((Switch) c).setState(true);
+        return c;
+    }
+
+    // ==================================================================================
+    // PLACEMENT
+    // ==================================================================================
+
+    // Every component goes one column right of the furthest component driving it. Components in a
+    // loop are placed after the last of their drivers seen so far. Output ports form the last column.
+    private static void placeByLevel(List<CircuitComponent> components, List<Wire> wires, int pinCount) {
+        int n = components.size();
+        int[] pinOwner = new int[pinCount];
+        for (int i = 0; i < n; i++) {
+            CircuitComponent c = components.get(i);
+            for (int p : c.getInputPinIDs()) pinOwner[p] = i;
+            for (int p : c.getOutputPinIDs()) pinOwner[p] = i;
+        }
+
+        // Fan-out lists as flat arrays: successors of i are targets[first[i]..first[i + 1])
+        int[] first = new int[n + 1];
+        int[] indegree = new int[n];
+        for (Wire w : wires) {
+            first[pinOwner[w.getSourcePinID()] + 1]++;
+            indegree[pinOwner[w.getDestPinID()]]++;
+        }
+        for (int i = 0; i < n; i++) first[i + 1] += first[i];
+        int[] targets = new int[wires.size()];
+        int[] fill = Arrays.copyOf(first, n);
+        for (Wire w : wires) targets[fill[pinOwner[w.getSourcePinID()]]++] = pinOwner[w.getDestPinID()];
+
+        int[] level = new int[n];
+        int[] queue = new int[n];
+        boolean[] queued = new boolean[n];
+        int head = 0, tail = 0;
+        for (int i = 0; i < n; i++) {
+            if (indegree[i] == 0) {
+                queue[tail++] = i;
+                queued[i] = true;
+            }
+        }
+        int next = 0;
+        while (head < n) {
+            if (head == tail) {
+                // Only loops are left: break one open at the first component not placed yet
+                while (queued[next]) next++;
+                queue[tail++] = next;
+                queued[next] = true;
+            }
+            int c = queue[head++];
+            for (int e = first[c]; e < first[c + 1]; e++) {
+                int t = targets[e];
+                if (queued[t]) continue;
+                level[t] = Math.max(level[t], level[c] + 1);
+                if (--indegree[t] == 0) {
+                    queue[tail++] = t;
+                    queued[t] = true;
+                }
+            }
+        }
+
+        int maxLevel = 0;
+        for (int i = 0; i < n; i++) {
+            if (components.get(i).getToolType() != Tooltype.LED) maxLevel = Math.max(maxLevel, level[i]);
+        }
+        int[] columnY = new int[maxLevel + 2];
+        for (int i = 0; i < n; i++) {
+            CircuitComponent c = components.get(i);
+            int column = (c.getToolType() == Tooltype.LED) ? maxLevel + 1 : level[i];
+            c.setLocation(column * COLUMN_WIDTH, columnY[column]);
+            columnY[column] += c.getHeight() + ROW_GAP;
+        }
+    }
+
+    private static void placeOnGrid(List<CircuitComponent> components) {
+        int columns = Math.max(1, (int) Math.ceil(Math.sqrt(components.size())));
+        for (int i = 0; i < components.size(); i++) {
+            components.get(i).setLocation((i % columns) * GRID_SPACING, (i / columns) * GRID_SPACING);
+        }
+    }
+}
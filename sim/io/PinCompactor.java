@@ -0,0 +1,50 @@
+package sim.io;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renumbers the pins of a circuit being loaded to 0..N-1, in the order they are first seen.
+ * Saved IDs are whatever the pin counter had reached when each pin was made, so they can be
+ * sparse and large; the loaded circuit's lookup arrays are sized by the highest ID.
+ */
+final class PinCompactor {
+
+    private final Map<Integer, Integer> ids = new HashMap<>();
+    private final boolean renumber;
+    private int limit = 0;
+
+    PinCompactor() {
+        this(true);
+    }
+
+    // Without renumbering, pins keep their saved IDs (replaying an edit journal relies on them)
+    PinCompactor(boolean renumber) {
+        this.renumber = renumber;
+    }
+
+    int map(int pin) {
+        if (!renumber) {
+            limit = Math.max(limit, pin + 1);
+            return pin;
+        }
+        Integer id = ids.get(pin);
+        if (id == null) {
+            id = ids.size();
+            ids.put(pin, id);
+        }
+        return id;
+    }
+
+    // Rewrites the list in place and returns it
+    List<Integer> map(List<Integer> pins) {
+        pins.replaceAll(this::map);
+        return pins;
+    }
+
+    // One past the highest pin ID handed out
+    int count() {
+        return renumber ? ids.size() : limit;
+    }
+}
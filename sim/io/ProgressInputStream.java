@@ -0,0 +1,44 @@
+package sim.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.function.IntConsumer;
+
+/**
+ * Reports how far into a file of known size a reader is, as a share from 0 to 100, and stops the read
+ * once its thread is interrupted.
+ */
+public final class ProgressInputStream extends FilterInputStream {
+
+    private final long size;
+    private final IntConsumer progress;
+    private long read = 0;
+
+    public ProgressInputStream(InputStream in, long size, IntConsumer progress) {
+        super(in);
+        this.size = Math.max(1, size);
+        this.progress = progress;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) advance(1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int n = super.read(buffer, offset, length);
+        if (n > 0) advance(n);
+        return n;
+    }
+
+    private void advance(int n) throws InterruptedIOException {
+        CircuitPersistence.checkCancelled();
+        read += n;
+        progress.accept((int) Math.min(100, read * 100 / size));
+    }
+}
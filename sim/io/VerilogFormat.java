@@ -0,0 +1,1106 @@
+package sim.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import sim.CircuitManager;
+import sim.gates.LookupTable;
+import sim.logic.SubCircuitDefinition;
+import sim.model.Tooltype;
+import sim.model.Wire;
+import sim.util.PinState;
+
+/**
+ * Structural (gate-level) Verilog. Export writes one module per sub-circuit definition and one for the
+ * circuit itself, using gate primitives wherever a component has one. Import reads the same subset that
+ * synthesis tools write: modules with scalar or vector ports, wire declarations, gate primitives
+ * (any number of inputs), module instances by position or by name, and continuous assigns of bitwise
+ * expressions. Everything is read in one pass over the text and built through a {@link NetlistBuilder}.
+ *
+ * Components without a primitive (MUX, DEMUX, ...) are written as instances of DIGICAD_* cells, whose
+ * gate-level bodies are included in the file for other tools and which load back as the native component.
+ * Lookup tables are written as sum-of-products modules and load back as sub-circuits.
+ */
+final class VerilogFormat {
+    private VerilogFormat() {
+        /* This utility class should not be instantiated */
+    }
+
+    private static final Pattern SIMPLE_IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_$]*");
+    private static final Set<String> KEYWORDS = Set.of(
+            "module", "endmodule", "macromodule", "input", "output", "inout", "wire", "reg", "logic", "tri", "wand", "wor",
+            "supply0", "supply1", "assign", "and", "nand", "or", "nor", "xor", "xnor", "not", "buf", "begin", "end",
+            "always", "initial", "parameter", "localparam", "function", "task", "generate", "if", "else", "case");
+
+    private static final Map<String, Tooltype> GATE_PRIMITIVES = Map.of(
+            "and", Tooltype.AND, "nand", Tooltype.NAND, "or", Tooltype.OR, "nor", Tooltype.NOR,
+            "xor", Tooltype.XOR, "xnor", Tooltype.XNOR);
+
+    // Components without a gate primitive: outputs first, as with primitives
+    private record NativeCell(String name, Tooltype type, String[] outputs, String[] inputs, String body) {}
+
+    private static final List<NativeCell> NATIVE_CELLS = List.of(
+            new NativeCell("DIGICAD_MUX", Tooltype.MUX, new String[] {"Y"}, new String[] {"A", "B", "S"},
+                    "  wire sn, a0, b1;\n  not (sn, S);\n  and (a0, A, sn);\n  and (b1, B, S);\n  or (Y, a0, b1);\n"),
+            new NativeCell("DIGICAD_DEMUX", Tooltype.DEMUX, new String[] {"Y0", "Y1"}, new String[] {"IN", "S"},
+                    "  wire sn;\n  not (sn, S);\n  and (Y0, IN, sn);\n  and (Y1, IN, S);\n"),
+            new NativeCell("DIGICAD_DECODER", Tooltype.DECODER, new String[] {"Y0", "Y1", "Y2", "Y3"}, new String[] {"A0", "A1"},
+                    "  wire n0, n1;\n  not (n0, A0);\n  not (n1, A1);\n"
+                    + "  and (Y0, n1, n0);\n  and (Y1, n1, A0);\n  and (Y2, A1, n0);\n  and (Y3, A1, A0);\n"),
+            new NativeCell("DIGICAD_ENCODER", Tooltype.ENCODER, new String[] {"Y0", "Y1", "V"}, new String[] {"I0", "I1", "I2", "I3"},
+                    "  wire n2, t1;\n  not (n2, I2);\n  and (t1, n2, I1);\n"
+                    + "  or (Y0, I3, t1);\n  or (Y1, I3, I2);\n  or (V, I0, I1, I2, I3);\n"),
+            new NativeCell("DIGICAD_SEVEN_SEGMENT", Tooltype.SEVEN_SEGMENT, new String[0],
+                    new String[] {"S0", "S1", "S2", "S3", "S4", "S5", "S6"}, ""));
+
+    private static NativeCell nativeCell(Tooltype type) {
+        for (NativeCell cell : NATIVE_CELLS) {
+            if (cell.type() == type) return cell;
+        }
+        return null;
+    }
+
+    private static NativeCell nativeCell(String name) {
+        for (NativeCell cell : NATIVE_CELLS) {
+            if (cell.name().equals(name)) return cell;
+        }
+        return null;
+    }
+
+    // ==================================================================================
+    // WRITING
+    // ==================================================================================
+
+    static void write(CircuitSnapshot snapshot, Writer out, String topName) throws IOException {
+        ModuleNames names = new ModuleNames();
+        for (NativeCell cell : NATIVE_CELLS) names.reserve(cell.name());
+
+        // 1. Every definition once, nested ones first, named after the first instance seen
+        List<SubCircuitDefinition> definitions = new ArrayList<>();
+        collectDefinitions(snapshot.getComponents(), names, new HashSet<>(), definitions);
+
+        out.write("// Structural netlist written by DigiCAD\n\n");
+        Set<NativeCell> usedCells = new HashSet<>();
+        for (SubCircuitDefinition d : definitions) {
+            List<CircuitSnapshot.Entry> body = entriesOf(d);
+            List<Integer> ins = new ArrayList<>();
+            for (int i = 0; i < d.getInputCount(); i++) ins.add(d.getInputPin(i));
+            List<Integer> outs = new ArrayList<>();
+            for (int i = 0; i < d.getOutputCount(); i++) outs.add(d.getOutputPin(i));
+            writeModule(out, names.of(d), body, d.getInternalCircuit(), ins, outs, names, usedCells);
+            out.write(names.takeDeferred());
+        }
+
+        // 2. The circuit itself: every Switch is an input, every LED an output
+        List<Integer> ins = new ArrayList<>();
+        List<Integer> outs = new ArrayList<>();
+        for (CircuitSnapshot.Entry c : snapshot.getComponents()) {
+            if (c.type() == Tooltype.SWITCH && !c.outPins().isEmpty()) ins.add(c.outPins().get(0));
+            if (c.type() == Tooltype.LED && !c.inPins().isEmpty()) outs.add(c.inPins().get(0));
+        }
+        Map<String, Object> wires = Map.of("wires", snapshot.getWires());
+        writeModule(out, names.unique(topName), snapshot.getComponents(), wires, ins, outs, names, usedCells);
+        out.write(names.takeDeferred());
+
+        // 3. Gate-level bodies of the DIGICAD_* cells used, for other tools
+        for (NativeCell cell : NATIVE_CELLS) {
+            if (!usedCells.contains(cell)) continue;
+            List<String> ports = new ArrayList<>(Arrays.asList(cell.outputs()));
+            ports.addAll(Arrays.asList(cell.inputs()));
+            out.write("module " + cell.name() + " (" + String.join(", ", ports) + ");\n");
+            for (String p : cell.outputs()) out.write("  output " + p + ";\n");
+            for (String p : cell.inputs()) out.write("  input " + p + ";\n");
+            out.write(cell.body());
+            out.write("endmodule\n\n");
+        }
+        out.flush();
+    }
+
+    private static void collectDefinitions(List<CircuitSnapshot.Entry> components, ModuleNames names,
+                                           Set<String> seen, List<SubCircuitDefinition> ordered) {
+        for (CircuitSnapshot.Entry c : components) {
+            SubCircuitDefinition d = c.definition();
+            if (d == null || !seen.add(d.getContentHash())) continue;
+            names.name(d, c.id());
+            collectDefinitions(entriesOf(d), names, seen, ordered);
+            ordered.add(d);
+        }
+    }
+
+    // The source form of a definition as snapshot entries
+    @SuppressWarnings("unchecked")
+    private static List<CircuitSnapshot.Entry> entriesOf(SubCircuitDefinition d) {
+        List<CircuitSnapshot.Entry> entries = new ArrayList<>();
+        Object compList = d.getInternalCircuit().get("components");
+        if (!(compList instanceof List)) return entries;
+
+        for (Object obj : (List<Object>) compList) {
+            Map<String, Object> map = (Map<String, Object>) obj;
+            Tooltype type = Tooltype.valueOf((String) map.get("type"));
+            SubCircuitDefinition nested = d.getDependencies().get((String) map.get("def"));
+            entries.add(new CircuitSnapshot.Entry(type, (String) map.get("id"),
+                    ((Number) map.get("x")).intValue(), ((Number) map.get("y")).intValue(),
+                    CircuitPersistence.castToIntList(map.get("inPins")), CircuitPersistence.castToIntList(map.get("outPins")),
+                    nested, (Map<String, Object>) map.get("data")));
+        }
+        return entries;
+    }
+
+    // Writes one module. Inputs and outputs are the port pins in port order; any other Switch is an undriven wire.
+    // The components are walked twice, once to name and declare every net and once for the instances.
+    @SuppressWarnings("unchecked")
+    private static void writeModule(Writer out, String name, List<CircuitSnapshot.Entry> components, Map<String, Object> circuit,
+                                    List<Integer> ins, List<Integer> outs, ModuleNames modules, Set<NativeCell> usedCells) throws IOException {
+        Map<Integer, Integer> drivers = new HashMap<>();
+        Object wireList = circuit.get("wires");
+        if (wireList instanceof List) {
+            for (Object obj : (List<Object>) wireList) {
+                if (obj instanceof Wire) {
+                    drivers.putIfAbsent(((Wire) obj).getDestPinID(), ((Wire) obj).getSourcePinID());
+                } else {
+                    Map<String, Object> map = (Map<String, Object>) obj;
+                    drivers.putIfAbsent(((Number) map.get("dest")).intValue(), ((Number) map.get("src")).intValue());
+                }
+            }
+        }
+
+        // 1. Port names come from the Switch and LED IDs
+        Set<String> used = new HashSet<>();
+        Map<Integer, String> portNames = new HashMap<>();
+        for (CircuitSnapshot.Entry c : components) {
+            if (c.type() == Tooltype.SWITCH && !c.outPins().isEmpty() && ins.contains(c.outPins().get(0))) {
+                portNames.put(c.outPins().get(0), unique(used, c.id()));
+            } else if (c.type() == Tooltype.LED && !c.inPins().isEmpty() && outs.contains(c.inPins().get(0))) {
+                portNames.put(c.inPins().get(0), unique(used, c.id()));
+            }
+        }
+        List<String> header = new ArrayList<>();
+        for (int pin : ins) if (portNames.containsKey(pin)) header.add(identifier(portNames.get(pin)));
+        for (int pin : outs) if (portNames.containsKey(pin)) header.add(identifier(portNames.get(pin)));
+        out.write("module " + identifier(name) + " (" + String.join(", ", header) + ");\n");
+        for (int pin : ins) if (portNames.containsKey(pin)) out.write("  input " + identifier(portNames.get(pin)) + ";\n");
+        for (int pin : outs) if (portNames.containsKey(pin)) out.write("  output " + identifier(portNames.get(pin)) + ";\n");
+
+        // 2. Every other output pin drives a wire of its own
+        Map<Integer, String> nets = new HashMap<>();
+        for (CircuitSnapshot.Entry c : components) {
+            for (int pin : c.outPins()) {
+                String port = portNames.get(pin);
+                if (port != null) {
+                    nets.put(pin, port);
+                } else {
+                    String net = unique(used, "n" + pin);
+                    nets.put(pin, net);
+                    out.write("  wire " + identifier(net) + ";\n");
+                }
+            }
+        }
+
+        // 3. Instances
+        Set<String> instances = new HashSet<>();
+        for (CircuitSnapshot.Entry c : components) {
+            String id = identifier(unique(instances, c.id()));
+            switch (c.type()) {
+                case AND, OR, NAND, NOR, XOR, XNOR, NOT -> {
+                    List<String> terminals = new ArrayList<>();
+                    terminals.add(netOf(nets, c.outPins(), 0));
+                    for (int pin : c.inPins()) terminals.add(source(nets, drivers, pin));
+                    out.write("  " + c.type().toString().toLowerCase() + " " + id + " (" + String.join(", ", terminals) + ");\n");
+                }
+                case SUB_CIRCUIT, LOOKUP_TABLE -> {
+                    String module = (c.type() == Tooltype.LOOKUP_TABLE) ? writeLookupTable(c, modules)
+                            : (c.definition() != null) ? modules.of(c.definition()) : null;
+                    if (module == null) continue;
+                    List<String> terminals = new ArrayList<>();
+                    for (int pin : c.inPins()) terminals.add(source(nets, drivers, pin));
+                    for (int i = 0; i < c.outPins().size(); i++) terminals.add(netOf(nets, c.outPins(), i));
+                    out.write("  " + identifier(module) + " " + id + " (" + String.join(", ", terminals) + ");\n");
+                }
+                case LED -> {
+                    String port = c.inPins().isEmpty() ? null : portNames.get(c.inPins().get(0));
+                    if (port != null) out.write("  assign " + identifier(port) + " = " + source(nets, drivers, c.inPins().get(0)) + ";\n");
+                }
+                case SWITCH -> { /* Inputs, or undriven wires */ }
+                default -> {
+                    NativeCell cell = nativeCell(c.type());
+                    if (cell == null) continue;
+                    usedCells.add(cell);
+                    List<String> terminals = new ArrayList<>();
+                    for (int i = 0; i < cell.outputs().length && i < c.outPins().size(); i++) {
+                        terminals.add("." + cell.outputs()[i] + "(" + netOf(nets, c.outPins(), i) + ")");
+                    }
+                    for (int i = 0; i < cell.inputs().length && i < c.inPins().size(); i++) {
+                        terminals.add("." + cell.inputs()[i] + "(" + source(nets, drivers, c.inPins().get(i)) + ")");
+                    }
+                    out.write("  " + cell.name() + " " + id + " (" + String.join(", ", terminals) + ");\n");
+                }
+            }
+        }
+        out.write("endmodule\n\n");
+    }
+
+    // A lookup table becomes a module of its own, one minterm per HIGH table row. Equal tables share one.
+    private static String writeLookupTable(CircuitSnapshot.Entry c, ModuleNames modules) {
+        if (c.data() == null) return null;
+        String existing = modules.ofTable(c.data());
+        if (existing != null) return existing;
+
+        LookupTable table = new LookupTable(c.id(), 0, 0, new ArrayList<>(c.inPins()), new ArrayList<>(c.outPins()), c.data());
+        int inputs = table.getInputCount();
+        int outputs = table.getOutputCount();
+        String name = modules.nameTable(c.data(), "lut_" + c.id());
+
+        // The module is written into a buffer, as the caller is in the middle of its own module
+        StringBuilder module = new StringBuilder();
+        List<String> ports = new ArrayList<>();
+        for (int i = 0; i < inputs; i++) ports.add("A" + i);
+        for (int o = 0; o < outputs; o++) ports.add("Y" + o);
+        module.append("module ").append(identifier(name)).append(" (").append(String.join(", ", ports)).append(");\n");
+        for (int i = 0; i < inputs; i++) module.append("  input A").append(i).append(";\n");
+        for (int o = 0; o < outputs; o++) module.append("  output Y").append(o).append(";\n");
+        for (int i = 0; i < inputs; i++) module.append("  wire A").append(i).append("_n;\n  not (A").append(i).append("_n, A").append(i).append(");\n");
+
+        PinState[] in = new PinState[inputs];
+        PinState[] result = new PinState[outputs];
+        List<List<String>> terms = new ArrayList<>();
+        for (int o = 0; o < outputs; o++) terms.add(new ArrayList<>());
+        for (long row = 0; row < (1L << inputs); row++) {
+            for (int i = 0; i < inputs; i++) in[i] = ((row >> i) & 1) != 0 ? PinState.HIGH : PinState.LOW;
+            table.evaluate(in, result);
+
+            String minterm = null;
+            for (int o = 0; o < outputs; o++) {
+                if (result[o] != PinState.HIGH) continue;
+                if (minterm == null) {
+                    minterm = (inputs == 0) ? "1'b1" : "m" + row;
+                    if (inputs > 0) {
+                        List<String> literals = new ArrayList<>();
+                        for (int i = 0; i < inputs; i++) literals.add(((row >> i) & 1) != 0 ? "A" + i : "A" + i + "_n");
+                        module.append("  wire ").append(minterm).append(";\n  ")
+                              .append(inputs == 1 ? "buf" : "and").append(" (").append(minterm).append(", ")
+                              .append(String.join(", ", literals)).append(");\n");
+                    }
+                }
+                terms.get(o).add(minterm);
+            }
+        }
+        for (int o = 0; o < outputs; o++) {
+            List<String> t = terms.get(o);
+            if (t.isEmpty()) {
+                module.append("  assign Y").append(o).append(" = 1'b0;\n");
+            } else if (t.size() == 1) {
+                module.append("  assign Y").append(o).append(" = ").append(t.get(0)).append(";\n");
+            } else {
+                module.append("  or (Y").append(o).append(", ").append(String.join(", ", t)).append(");\n");
+            }
+        }
+        module.append("endmodule\n\n");
+        modules.defer(module.toString());
+        return name;
+    }
+
+    private static String netOf(Map<Integer, String> nets, List<Integer> outPins, int index) {
+        return index < outPins.size() ? identifier(nets.get(outPins.get(index))) : "";
+    }
+
+    // The net read by an input pin; unconnected inputs float
+    private static String source(Map<Integer, String> nets, Map<Integer, Integer> drivers, int inputPin) {
+        Integer driver = drivers.get(inputPin);
+        String net = (driver != null) ? nets.get(driver) : null;
+        return (net != null) ? identifier(net) : "1'bz";
+    }
+
+    private static String unique(Set<String> used, String base) {
+        if (base == null || base.isEmpty()) base = "u";
+        String name = base;
+        for (int i = 1; !used.add(name); i++) name = base + "_" + i;
+        return name;
+    }
+
+    // Names that aren't plain identifiers are written as escaped identifiers, which keeps them intact
+    static String identifier(String name) {
+        if (SIMPLE_IDENTIFIER.matcher(name).matches() && !KEYWORDS.contains(name)) return name;
+        return "\\" + name.replaceAll("\\s", "_") + " ";
+    }
+
+    // Module names across the file
+    private static final class ModuleNames {
+        private final Set<String> used = new HashSet<>();
+        private final Map<String, String> definitions = new HashMap<>();
+        private final Map<Map<String, Object>, String> tables = new HashMap<>();
+        private final StringBuilder deferred = new StringBuilder();
+
+        void reserve(String name) { used.add(name); }
+        String unique(String base) { return VerilogFormat.unique(used, base); }
+        void name(SubCircuitDefinition d, String base) { definitions.put(d.getContentHash(), unique(base)); }
+        String of(SubCircuitDefinition d) { return definitions.get(d.getContentHash()); }
+        String ofTable(Map<String, Object> data) { return tables.get(data); }
+
+        String nameTable(Map<String, Object> data, String base) {
+            String name = unique(base);
+            tables.put(data, name);
+            return name;
+        }
+
+        // Modules found while another is being written go out once it is done
+        void defer(String module) { deferred.append(module); }
+
+        String takeDeferred() {
+            String modules = deferred.toString();
+            deferred.setLength(0);
+            return modules;
+        }
+    }
+
+    // ==================================================================================
+    // READING
+    // ==================================================================================
+
+    static void read(CircuitManager manager, Reader in, boolean autoPlace) throws IOException {
+        Parser parser = new Parser(new Lexer(in), autoPlace);
+        parser.parseFile();
+
+        // The top module is the last one no other module instantiates
+        Module top = null;
+        for (Module m : parser.modules.values()) {
+            if (!parser.instantiated.contains(m.name) && nativeCell(m.name) == null) top = m;
+        }
+        if (top == null) throw new IOException("No top-level module found");
+
+        elaborateInstances(top, parser.modules);
+        top.builder.finish(manager);
+    }
+
+    // Builds every module the given one instantiates, innermost first, and adds the instances to it
+    private static void elaborateInstances(Module module, Map<String, Module> modules) throws IOException {
+        module.visiting = true;
+        for (Instance instance : module.instances) {
+            Module child = modules.get(instance.module());
+            if (child == null) throw new IOException("Unknown module '" + instance.module() + "' on line " + instance.line());
+            if (child.block == null) {
+                if (child.visiting) throw new IOException("Module '" + child.name + "' instantiates itself");
+                elaborateInstances(child, modules);
+                child.block = child.builder.toBlock();
+                child.builder = null; // Only the definition is needed from here on
+            }
+            module.builder.instance(instance.name(), child.block,
+                    connect(module, child, instance, true), connect(module, child, instance, false));
+        }
+        module.instances.clear();
+        module.visiting = false;
+    }
+
+    // The parent's nets for the child's input (or output) bits, in port order
+    private static int[] connect(Module parent, Module child, Instance instance, boolean inputs) throws IOException {
+        if (instance.positional() != null && instance.positional().size() > child.ports.size()) {
+            throw new IOException("Too many connections to '" + child.name + "' on line " + instance.line());
+        }
+
+        List<Integer> nets = new ArrayList<>();
+        for (int p = 0; p < child.ports.size(); p++) {
+            Port port = child.ports.get(p);
+            if (port.input() != inputs) continue;
+
+            int[] expr = (instance.named() != null) ? instance.named().get(port.name())
+                    : (p < instance.positional().size()) ? instance.positional().get(p) : null;
+
+            // Unconnected ports float. Otherwise right-aligned as in Verilog: missing high input bits are 0.
+            int width = port.bits().length;
+            for (int b = 0; b < width; b++) {
+                int source = (expr != null) ? expr.length - width + b : -1;
+                if (source >= 0) {
+                    nets.add(expr[source]);
+                } else {
+                    nets.add(inputs && expr != null ? parent.builder.constant(false) : parent.builder.newNet());
+                }
+            }
+        }
+        int[] result = new int[nets.size()];
+        for (int i = 0; i < result.length; i++) result[i] = nets.get(i);
+        return result;
+    }
+
+    private record Port(String name, boolean input, String[] bits) {}
+
+    // A module instance; connections are by position or by port name
+    private record Instance(String module, String name, List<int[]> positional, Map<String, int[]> named, int line) {}
+
+    private static final class Module {
+        final String name;
+        NetlistBuilder builder;
+        final List<String> portOrder = new ArrayList<>();
+        final Map<String, String> directions = new HashMap<>();
+        final Map<String, int[]> ranges = new HashMap<>(); // Vectors: msb, lsb
+        final List<Port> ports = new ArrayList<>();
+        final List<Instance> instances = new ArrayList<>();
+        int generated = 0; // Names for unnamed gates
+        NetlistBuilder.Block block;
+        boolean visiting;
+
+        Module(String name, boolean autoPlace) {
+            this.name = name;
+            this.builder = new NetlistBuilder(autoPlace);
+        }
+
+        // The bit names of a declared net, most significant first
+        String[] bits(String net) {
+            int[] range = ranges.get(net);
+            if (range == null) return new String[] {net};
+            int width = Math.abs(range[0] - range[1]) + 1;
+            String[] bits = new String[width];
+            int step = range[0] >= range[1] ? -1 : 1;
+            for (int i = 0, b = range[0]; i < width; i++, b += step) bits[i] = net + "[" + b + "]";
+            return bits;
+        }
+    }
+
+    /**
+     * Recursive descent over the structural subset. Module bodies are turned into builder calls as they
+     * are read; only instances of other modules wait until the whole file is known.
+     */
+    private static final class Parser {
+        private final Lexer lexer;
+        private final boolean autoPlace;
+        final Map<String, Module> modules = new LinkedHashMap<>();
+        final Set<String> instantiated = new HashSet<>();
+        private Module module;
+
+        Parser(Lexer lexer, boolean autoPlace) {
+            this.lexer = lexer;
+            this.autoPlace = autoPlace;
+        }
+
+        void parseFile() throws IOException {
+            String token;
+            while ((token = lexer.next()) != null) {
+                if (token.equals("module") || token.equals("macromodule")) {
+                    parseModule();
+                } else {
+                    throw error("Expected 'module' but found '" + token + "'");
+                }
+            }
+        }
+
+        private void parseModule() throws IOException {
+            String name = name(lexer.next());
+            if (modules.containsKey(name)) throw error("Module '" + name + "' is defined twice");
+            module = new Module(name, autoPlace);
+            modules.put(name, module);
+
+            if (accept("#")) skipParenthesized();
+            if (accept("(")) parsePortList();
+            expect(";");
+
+            String token;
+            while (!(token = required()).equals("endmodule")) {
+                parseItem(token);
+            }
+            finishPorts();
+            module.builder.forgetNames();
+            module = null;
+        }
+
+        // Plain names, or ANSI declarations such as "input [3:0] a, b, output y"
+        private void parsePortList() throws IOException {
+            if (accept(")")) return;
+            String direction = null;
+            int[] range = null;
+            do {
+                String token = required();
+                if (isDirection(token)) {
+                    direction = token;
+                    range = null;
+                    token = required();
+                    while (token.equals("wire") || token.equals("reg") || token.equals("logic") || token.equals("signed")) token = required();
+                    if (token.equals("[")) {
+                        range = parseRange();
+                        token = required();
+                    }
+                }
+                String port = name(token);
+                module.portOrder.add(port);
+                if (direction != null) declare(port, direction, range);
+            } while (accept(","));
+            expect(")");
+        }
+
+        private void parseItem(String token) throws IOException {
+            if (isDirection(token)) {
+                parseDeclaration(token);
+            } else if (isNetType(token)) {
+                parseDeclaration(null, token);
+            } else if (token.equals("assign")) {
+                parseAssign();
+            } else if (GATE_PRIMITIVES.containsKey(token) || token.equals("buf") || token.equals("not")) {
+                parsePrimitive(token);
+            } else if (token.equals("parameter") || token.equals("localparam") || token.equals("defparam")
+                    || token.equals("timeunit") || token.equals("timeprecision")) {
+                skipTo(";");
+            } else if (token.equals("specify")) {
+                while (!required().equals("endspecify")) { /* Timing only */ }
+            } else if (token.equals(";")) {
+                // Empty item
+            } else if (isIdentifier(token) && !KEYWORDS.contains(token)) {
+                parseInstances(name(token));
+            } else {
+                throw error("Unsupported construct '" + token + "' (only structural netlists can be imported)");
+            }
+        }
+
+        private void parseDeclaration(String direction) throws IOException {
+            String token = lexer.peek();
+            if (isNetType(token) || "signed".equals(token)) {
+                parseDeclaration(direction, lexer.next());
+            } else {
+                parseDeclaration(direction, null);
+            }
+        }
+
+        // e.g. "output [7:0] q;", "wire a, b = c;", "supply0 gnd;"
+        private void parseDeclaration(String direction, String netType) throws IOException {
+            if (direction != null && direction.equals("inout")) throw error("inout ports are not supported");
+            while (accept("signed") || accept("wire") || accept("reg") || accept("logic")) { /* Types make no difference here */ }
+            int[] range = accept("[") ? parseRange() : null;
+            if (accept("#")) skipDelay();
+
+            do {
+                String net = name(required());
+                if (direction != null) {
+                    declare(net, direction, range);
+                } else if (range != null) {
+                    module.ranges.put(net, range);
+                }
+                if ("supply0".equals(netType) || "supply1".equals(netType)) {
+                    int constant = module.builder.constant(netType.equals("supply1"));
+                    for (String bit : module.bits(net)) module.builder.alias(constant, module.builder.net(bit));
+                }
+                if (accept("=")) assign(nets(net), parseExpression());
+            } while (accept(","));
+            expect(";");
+        }
+
+        private void declare(String port, String direction, int[] range) throws IOException {
+            if (direction.equals("inout")) throw error("inout ports are not supported");
+            module.directions.put(port, direction);
+            if (range != null) module.ranges.put(port, range);
+        }
+
+        // Ports become builder inputs and outputs in header order, bit by bit
+        private void finishPorts() throws IOException {
+            for (String port : module.portOrder) {
+                String direction = module.directions.get(port);
+                if (direction == null) throw error("Port '" + port + "' of module '" + module.name + "' has no direction");
+                boolean input = direction.equals("input");
+                String[] bits = module.bits(port);
+                for (String bit : bits) {
+                    if (input) {
+                        module.builder.input(bit, module.builder.net(bit));
+                    } else {
+                        module.builder.output(bit, module.builder.net(bit));
+                    }
+                }
+                module.ports.add(new Port(port, input, bits));
+            }
+        }
+
+        private void parseAssign() throws IOException {
+            if (accept("#")) skipDelay();
+            do {
+                int[] target = parsePrimary();
+                expect("=");
+                assign(target, parseExpression());
+            } while (accept(","));
+            expect(";");
+        }
+
+        // Right-aligned; missing high bits are 0
+        private void assign(int[] target, int[] value) {
+            for (int i = 0; i < target.length; i++) {
+                int source = value.length - target.length + i;
+                module.builder.alias(target[i], source >= 0 ? value[source] : module.builder.constant(false));
+            }
+        }
+
+        // e.g. "nand #1 g1 (y, a, b, c), g2 (z, a, d);" - the output comes first, buf and not may have several
+        private void parsePrimitive(String primitive) throws IOException {
+            if (accept("#")) skipDelay();
+            do {
+                String id = accept("(") ? null : name(required());
+                if (id != null) {
+                    if (accept("[")) throw error("Arrays of gate instances are not supported");
+                    expect("(");
+                }
+                if (id == null) id = primitive + "_" + (++module.generated);
+
+                List<Integer> terminals = new ArrayList<>();
+                do {
+                    int[] bits = parseExpression();
+                    if (bits.length != 1) throw error("Gate terminals must be single bits");
+                    terminals.add(bits[0]);
+                } while (accept(","));
+                expect(")");
+                if (terminals.size() < 2) throw error("Gate '" + id + "' needs an output and at least one input");
+                addPrimitive(primitive, id, terminals);
+            } while (accept(","));
+            expect(";");
+        }
+
+        private void addPrimitive(String primitive, String id, List<Integer> terminals) {
+            NetlistBuilder builder = module.builder;
+            if (primitive.equals("buf") || primitive.equals("not")) {
+                int in = terminals.get(terminals.size() - 1);
+                for (int i = 0; i < terminals.size() - 1; i++) {
+                    String gateId = (terminals.size() > 2) ? id + "_" + i : id;
+                    if (primitive.equals("buf")) {
+                        builder.alias(terminals.get(i), in);
+                    } else {
+                        builder.component(Tooltype.NOT, gateId, new int[] {in}, new int[] {terminals.get(i)});
+                    }
+                }
+                return;
+            }
+            int[] in = new int[terminals.size() - 1];
+            for (int i = 0; i < in.length; i++) in[i] = terminals.get(i + 1);
+            builder.gate(GATE_PRIMITIVES.get(primitive), id, in, terminals.get(0));
+        }
+
+        // e.g. "full_adder #(.W(1)) fa0 (.a(x), .b(y), .s(s[0])), fa1 (x, y, s[1]);"
+        private void parseInstances(String cell) throws IOException {
+            instantiated.add(cell);
+            if (accept("#")) skipParenthesized();
+            do {
+                String id = name(required());
+                if (accept("[")) throw error("Arrays of module instances are not supported");
+                int line = lexer.line;
+                expect("(");
+
+                List<int[]> positional = null;
+                Map<String, int[]> named = null;
+                if (!accept(")")) {
+                    if (".".equals(lexer.peek())) {
+                        named = new HashMap<>();
+                        do {
+                            expect(".");
+                            String port = name(required());
+                            expect("(");
+                            named.put(port, accept(")") ? null : parseExpressionThen(")"));
+                        } while (accept(","));
+                    } else {
+                        positional = new ArrayList<>();
+                        do {
+                            String next = lexer.peek();
+                            positional.add((",".equals(next) || ")".equals(next)) ? null : parseExpression());
+                        } while (accept(","));
+                    }
+                    expect(")");
+                }
+                if (positional == null && named == null) positional = new ArrayList<>();
+
+                NativeCell nativeCell = nativeCell(cell);
+                if (nativeCell != null) {
+                    addNative(nativeCell, id, positional, named);
+                } else {
+                    module.instances.add(new Instance(cell, id, positional, named, line));
+                }
+            } while (accept(","));
+            expect(";");
+        }
+
+        private int[] parseExpressionThen(String closing) throws IOException {
+            int[] value = parseExpression();
+            expect(closing);
+            return value;
+        }
+
+        private void addNative(NativeCell cell, String id, List<int[]> positional, Map<String, int[]> named) throws IOException {
+            int[] out = new int[cell.outputs().length];
+            int[] in = new int[cell.inputs().length];
+            for (int i = 0; i < out.length + in.length; i++) {
+                boolean isOutput = i < out.length;
+                String port = isOutput ? cell.outputs()[i] : cell.inputs()[i - out.length];
+                int[] expr = (named != null) ? named.get(port) : (i < positional.size() ? positional.get(i) : null);
+                if (expr != null && expr.length != 1) throw error("Port '" + port + "' of " + cell.name() + " is a single bit");
+                int net = (expr != null) ? expr[0] : module.builder.newNet();
+                if (isOutput) {
+                    out[i] = net;
+                } else {
+                    in[i - out.length] = net;
+                }
+            }
+            module.builder.component(cell.type(), id, in, out);
+        }
+
+        // ~~~~~~~~~~ EXPRESSIONS ~~~~~~~~~~
+        // Bitwise only: ?:, |, ^, ~^, &, ~, concatenation and replication. Each yields its nets, MSB first.
+
+        private int[] parseExpression() throws IOException {
+            int[] value = parseBinary(0);
+            if (!accept("?")) return value;
+            int[] high = parseExpression();
+            expect(":");
+            int[] low = parseExpression();
+            if (value.length != 1) throw error("Conditions must be single bits");
+
+            int width = Math.max(high.length, low.length);
+            high = widen(high, width);
+            low = widen(low, width);
+            int[] result = new int[width];
+            for (int i = 0; i < width; i++) {
+                result[i] = module.builder.newNet();
+                module.builder.component(Tooltype.MUX, "mux_" + (++module.generated),
+                        new int[] {low[i], high[i], value[0]}, new int[] {result[i]});
+            }
+            return result;
+        }
+
+        private static final String[][] OPERATORS = {{"|"}, {"^", "~^", "^~"}, {"&"}};
+
+        private int[] parseBinary(int precedence) throws IOException {
+            if (precedence == OPERATORS.length) return parseUnary();
+            int[] left = parseBinary(precedence + 1);
+            while (true) {
+                String op = lexer.peek();
+                if (!Arrays.asList(OPERATORS[precedence]).contains(op)) return left;
+                lexer.next();
+                int[] right = parseBinary(precedence + 1);
+                Tooltype type = switch (op) {
+                    case "|" -> Tooltype.OR;
+                    case "&" -> Tooltype.AND;
+                    case "^" -> Tooltype.XOR;
+                    default -> Tooltype.XNOR;
+                };
+                int width = Math.max(left.length, right.length);
+                left = widen(left, width);
+                right = widen(right, width);
+                int[] result = new int[width];
+                for (int i = 0; i < width; i++) {
+                    result[i] = module.builder.newNet();
+                    module.builder.gate(type, type.toString().toLowerCase() + "_" + (++module.generated),
+                            new int[] {left[i], right[i]}, result[i]);
+                }
+                left = result;
+            }
+        }
+
+        private int[] parseUnary() throws IOException {
+            if (!accept("~")) return parsePrimary();
+            int[] operand = parseUnary();
+            int[] result = new int[operand.length];
+            for (int i = 0; i < operand.length; i++) {
+                result[i] = module.builder.newNet();
+                module.builder.component(Tooltype.NOT, "not_" + (++module.generated), new int[] {operand[i]}, new int[] {result[i]});
+            }
+            return result;
+        }
+
+        private int[] parsePrimary() throws IOException {
+            String token = required();
+            if (token.equals("(")) return parseExpressionThen(")");
+            if (token.equals("{")) return parseConcatenation();
+            if (Character.isDigit(token.charAt(0)) || token.charAt(0) == '\'') return constant(token);
+            if (!isIdentifier(token)) throw error("Unexpected '" + token + "' in expression");
+
+            String net = name(token);
+            if (!accept("[")) return nets(net);
+            int msb = parseInt(required());
+            int lsb = accept(":") ? parseInt(required()) : msb;
+            expect("]");
+            int width = Math.abs(msb - lsb) + 1;
+            int step = msb >= lsb ? -1 : 1;
+            int[] result = new int[width];
+            for (int i = 0, b = msb; i < width; i++, b += step) result[i] = module.builder.net(net + "[" + b + "]");
+            return result;
+        }
+
+        // "{a, b[1:0], 2'b01}" or replication "{4{x}}"
+        private int[] parseConcatenation() throws IOException {
+            List<int[]> parts = new ArrayList<>();
+            int[] first = parseExpression();
+            if (accept("{")) {
+                int count = constantValue(first);
+                int[] inner = parseConcatenation();
+                expect("}");
+                for (int i = 0; i < count; i++) parts.add(inner);
+            } else {
+                parts.add(first);
+                while (accept(",")) parts.add(parseExpression());
+                expect("}");
+            }
+            int width = 0;
+            for (int[] part : parts) width += part.length;
+            int[] result = new int[width];
+            int at = 0;
+            for (int[] part : parts) {
+                System.arraycopy(part, 0, result, at, part.length);
+                at += part.length;
+            }
+            return result;
+        }
+
+        private int[] nets(String net) {
+            String[] bits = module.bits(net);
+            int[] result = new int[bits.length];
+            for (int i = 0; i < bits.length; i++) result[i] = module.builder.net(bits[i]);
+            return result;
+        }
+
+        // Pads with 0 on the left
+        private int[] widen(int[] bits, int width) {
+            if (bits.length >= width) return bits;
+            int[] result = new int[width];
+            int pad = width - bits.length;
+            for (int i = 0; i < pad; i++) result[i] = module.builder.constant(false);
+            System.arraycopy(bits, 0, result, pad, bits.length);
+            return result;
+        }
+
+        // e.g. "1'b0", "4'hA", "8'bzzzz_0001", "12". x and z bits are left undriven.
+        private int[] constant(String token) throws IOException {
+            int tick = token.indexOf('\'');
+            if (tick < 0) return bitsOf(Long.toBinaryString(parseInt(token)), 32);
+
+            int width = (tick == 0) ? -1 : parseInt(token.substring(0, tick));
+            String rest = token.substring(tick + 1).toLowerCase().replace("_", "");
+            if (rest.startsWith("s")) rest = rest.substring(1);
+            if (rest.isEmpty()) throw error("Malformed number '" + token + "'");
+            char base = rest.charAt(0);
+            String digits = rest.substring(1);
+
+            StringBuilder binary = new StringBuilder();
+            int bitsPerDigit = switch (base) {
+                case 'b' -> 1;
+                case 'o' -> 3;
+                case 'h' -> 4;
+                case 'd' -> 0;
+                default -> throw error("Malformed number '" + token + "'");
+            };
+            if (bitsPerDigit == 0) {
+                binary.append(Long.toBinaryString(Long.parseLong(digits)));
+            } else {
+                for (char d : digits.toCharArray()) {
+                    if (d == 'x' || d == 'z' || d == '?') {
+                        binary.append(String.valueOf(d == '?' ? 'z' : d).repeat(bitsPerDigit));
+                    } else {
+                        int value = Character.digit(d, 1 << bitsPerDigit);
+                        if (value < 0) throw error("Malformed number '" + token + "'");
+                        String bits = Integer.toBinaryString(value);
+                        binary.append("0".repeat(bitsPerDigit - bits.length())).append(bits);
+                    }
+                }
+            }
+            return bitsOf(binary.toString(), width < 0 ? binary.length() : width);
+        }
+
+        private int[] bitsOf(String binary, int width) {
+            int[] result = new int[width];
+            for (int i = 0; i < width; i++) {
+                int index = binary.length() - width + i;
+                char bit = index >= 0 ? binary.charAt(index) : '0';
+                result[i] = (bit == '0' || bit == '1') ? module.builder.constant(bit == '1') : module.builder.newNet();
+            }
+            return result;
+        }
+
+        // The value of a constant expression, e.g. a replication count
+        private int constantValue(int[] bits) throws IOException {
+            int value = 0;
+            int zero = module.builder.constant(false);
+            int one = module.builder.constant(true);
+            for (int bit : bits) {
+                if (bit != zero && bit != one) throw error("Expected a constant");
+                value = (value << 1) | (bit == one ? 1 : 0);
+            }
+            return value;
+        }
+
+        // ~~~~~~~~~~ TOKENS ~~~~~~~~~~
+
+        private int[] parseRange() throws IOException {
+            int msb = parseInt(required());
+            expect(":");
+            int lsb = parseInt(required());
+            expect("]");
+            return new int[] {msb, lsb};
+        }
+
+        private int parseInt(String token) throws IOException {
+            try {
+                return Integer.parseInt(token.replace("_", ""));
+            } catch (NumberFormatException e) {
+                throw error("Expected a number but found '" + token + "' (parameters are not supported)");
+            }
+        }
+
+        private void skipDelay() throws IOException {
+            if (lexer.peek() != null && lexer.peek().equals("(")) {
+                skipParenthesized();
+            } else {
+                required();
+            }
+        }
+
+        private void skipParenthesized() throws IOException {
+            expect("(");
+            int depth = 1;
+            while (depth > 0) {
+                String token = required();
+                if (token.equals("(")) depth++;
+                if (token.equals(")")) depth--;
+            }
+        }
+
+        private void skipTo(String token) throws IOException {
+            while (!required().equals(token)) { /* Skipped */ }
+        }
+
+        private boolean accept(String token) throws IOException {
+            if (!token.equals(lexer.peek())) return false;
+            lexer.next();
+            return true;
+        }
+
+        private void expect(String token) throws IOException {
+            String found = required();
+            if (!found.equals(token)) throw error("Expected '" + token + "' but found '" + found + "'");
+        }
+
+        private String required() throws IOException {
+            String token = lexer.next();
+            if (token == null) throw error("Unexpected end of file");
+            return token;
+        }
+
+        private IOException error(String message) {
+            return new IOException(message + " on line " + lexer.line);
+        }
+
+        private static boolean isDirection(String token) {
+            return token.equals("input") || token.equals("output") || token.equals("inout");
+        }
+
+        private static boolean isNetType(String token) {
+            return switch (token) {
+                case "wire", "tri", "wand", "wor", "tri0", "tri1", "supply0", "supply1", "reg", "logic" -> true;
+                default -> false;
+            };
+        }
+
+        private static boolean isIdentifier(String token) {
+            char c = token.charAt(0);
+            return Character.isLetter(c) || c == '_' || c == '\\';
+        }
+
+        // Escaped identifiers keep their backslash as tokens, so they never read as keywords
+        private static String name(String token) {
+            return token.startsWith("\\") ? token.substring(1) : token;
+        }
+    }
+
+    /**
+     * Splits the text into tokens over a plain char buffer. Comments, attributes and compiler directives are dropped.
+     */
+    private static final class Lexer {
+        private final Reader in;
+        private final char[] buffer = new char[1 << 16];
+        private int position = 0;
+        private int limit = 0;
+        private String peeked;
+        int line = 1;
+
+        Lexer(Reader in) {
+            this.in = in;
+        }
+
+        String peek() throws IOException {
+            if (peeked == null) peeked = read();
+            return peeked;
+        }
+
+        String next() throws IOException {
+            String token = peek();
+            peeked = null;
+            return token;
+        }
+
+        private int current() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position];
+        }
+
+        private int take() throws IOException {
+            int c = current();
+            if (c != -1) {
+                position++;
+                if (c == '\n') line++;
+            }
+            return c;
+        }
+
+        private String read() throws IOException {
+            while (true) {
+                int c = take();
+                if (c == -1) return null;
+                if (Character.isWhitespace(c)) continue;
+
+                if (c == '/' && current() == '/') {
+                    while (c != -1 && c != '\n') c = take();
+                } else if (c == '/' && current() == '*') {
+                    take();
+                    int previous = 0;
+                    while ((c = take()) != -1 && !(previous == '*' && c == '/')) previous = c;
+                } else if (c == '(' && current() == '*') {
+                    // Attribute (* ... *)
+                    take();
+                    int previous = 0;
+                    while ((c = take()) != -1 && !(previous == '*' && c == ')')) previous = c;
+                } else if (c == '`') {
+                    // Compiler directive, e.g. `timescale
+                    while (c != -1 && c != '\n') c = take();
+                } else if (c == '\\') {
+                    StringBuilder token = new StringBuilder("\\");
+                    while ((c = current()) != -1 && !Character.isWhitespace(c)) token.append((char) take());
+                    return token.toString();
+                } else if (isWordChar(c)) {
+                    // Most words lie within the buffer and are copied out in one go
+                    int start = position - 1;
+                    while (position < limit && isWordChar(buffer[position])) position++;
+                    if (position < limit) return new String(buffer, start, position - start);
+
+                    StringBuilder token = new StringBuilder().append(buffer, start, position - start);
+                    while ((c = current()) != -1 && isWordChar(c)) token.append((char) take());
+                    return token.toString();
+                } else if (c == '~' && current() == '^') {
+                    take();
+                    return "~^";
+                } else if (c == '^' && current() == '~') {
+                    take();
+                    return "^~";
+                } else {
+                    return String.valueOf((char) c);
+                }
+            }
+        }
+
+        private static boolean isWordChar(int c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '_' || c == '$' || c == '\'';
+        }
+    }
+}
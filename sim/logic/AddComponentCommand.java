@@ -1,7 +1,9 @@
 package sim.logic;
 
+import java.util.List;
 import sim.CircuitComponent;
 import sim.CircuitManager;
+import sim.io.EditJournal;
 
 public class AddComponentCommand implements Command {
     private final CircuitManager manager;
@@ -21,4 +23,13 @@ public class AddComponentCommand implements Command {
     public void undo() {
         manager.removeComponenet(component);
     }
+
+    @Override
+    public void journal(EditJournal journal, boolean undone) {
+        if (undone) {
+            journal.removeComponents(List.of(component));
+        } else {
+            journal.addComponents(List.of(component), List.of());
+        }
+    }
 }
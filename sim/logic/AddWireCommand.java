@@ -1,6 +1,7 @@
 package sim.logic;
 
 import sim.CircuitManager;
+import sim.io.EditJournal;
 import sim.model.Wire;
 
 public class AddWireCommand implements Command {
@@ -22,4 +23,13 @@ public class AddWireCommand implements Command {
     public void undo() {
         manager.removeWire(wire);
     }
+
+    @Override
+    public void journal(EditJournal journal, boolean undone) {
+        if (undone) {
+            journal.removeWire(wire);
+        } else {
+            journal.addWire(wire);
+        }
+    }
 }
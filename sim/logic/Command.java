@@ -1,6 +1,11 @@
 package sim.logic;
 
+import sim.io.EditJournal;
+
 public interface Command {
     void execute();
     void undo();
+
+    // Append what execute() (or undo(), when undone is true) changed to the journal
+    void journal(EditJournal journal, boolean undone);
 }
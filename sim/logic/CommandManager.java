@@ -2,12 +2,21 @@ package sim.logic;
 
 import java.util.Stack;
 
+import sim.io.EditJournal;
+
 public class CommandManager {
     private final Stack<Command> undoStack = new Stack<>();
     private final Stack<Command> redoStack = new Stack<>();
+    private EditJournal journal;
+
+    // Every command executed, undone or redone from now on is also appended here (null to stop)
+    public void setJournal(EditJournal journal) {
+        this.journal = journal;
+    }
 
     public void executeCommand(Command command) {
         command.execute();
+        record(command, false);
         undoStack.push(command);
         redoStack.clear();
     }
@@ -16,6 +25,7 @@ public class CommandManager {
         if (!undoStack.isEmpty()) {
             Command command = undoStack.pop();
             command.undo();
+            record(command, true);
             redoStack.push(command);
         }
     }
@@ -24,6 +34,7 @@ public class CommandManager {
         if (!redoStack.isEmpty()) {
             Command command = redoStack.pop();
             command.execute();
+            record(command, false);
             undoStack.push(command);
         }
     }
@@ -40,4 +51,8 @@ public class CommandManager {
     public boolean canRedo() {
         return !redoStack.isEmpty();
     }
+
+    private void record(Command command, boolean undone) {
+        if (journal != null) command.journal(journal, undone);
+    }
 }
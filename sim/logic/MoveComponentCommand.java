@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.List;
 import sim.CircuitComponent;
 import sim.CircuitManager;
+import sim.io.EditJournal;
 
 public class MoveComponentCommand implements Command {
     private final CircuitManager manager;
@@ -30,16 +31,25 @@ public class MoveComponentCommand implements Command {
     @Override
     public void execute() {
         for (MoveInfo move : moves) {
-            move.component.setLocation(move.newPos);
+            manager.moveComponent(move.component, move.newPos.x, move.newPos.y);
         }
-        manager.refreshAllPinLocations();
     }
 
     @Override
     public void undo() {
         for (MoveInfo move : moves) {
-            move.component.setLocation(move.oldPos);
+            manager.moveComponent(move.component, move.oldPos.x, move.oldPos.y);
         }
-        manager.refreshAllPinLocations();
+    }
+
+    @Override
+    public void journal(EditJournal journal, boolean undone) {
+        List<CircuitComponent> components = new ArrayList<>();
+        List<Point> positions = new ArrayList<>();
+        for (MoveInfo move : moves) {
+            components.add(move.component);
+            positions.add(undone ? move.oldPos : move.newPos);
+        }
+        journal.moveComponents(components, positions);
     }
 }
@@ -1,20 +1,26 @@
 package sim.logic;
 
+import java.util.Set;
+
 import sim.CircuitComponent;
 import sim.CircuitManager;
 
 public class PropagationEngine {
 
-    public void propagate(CircuitManager manager) {
+    // Settles the circuit, adding every component whose state changed to the set.
+    // An interrupted thread (a cancelled load) stops after the current pass, leaving the circuit unsettled.
+    public void propagate(CircuitManager manager, Set<CircuitComponent> changed) {
         boolean circuitHasChanged = true;
         int iterations = 0;
         final int maxIterations = 100; // Safety break for oscillating circuits
 
         while (circuitHasChanged && iterations < maxIterations) {
+            if (Thread.currentThread().isInterrupted()) return;
             circuitHasChanged = false;
             for (CircuitComponent component : manager.getComponents()) {
                 if (component.updateState(manager)) {
                     circuitHasChanged = true;
+                    changed.add(component);
                 }
             }
             iterations++;
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 import sim.CircuitComponent;
 import sim.CircuitManager;
+import sim.io.EditJournal;
 import sim.model.Wire;
 
 public class RemoveComponentCommand implements Command {
@@ -52,4 +53,13 @@ public class RemoveComponentCommand implements Command {
         }
         manager.propagate();
     }
+
+    @Override
+    public void journal(EditJournal journal, boolean undone) {
+        if (undone) {
+            journal.addComponents(components, removedWires);
+        } else {
+            journal.removeComponents(components);
+        }
+    }
 }
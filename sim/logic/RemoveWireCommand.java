@@ -1,6 +1,7 @@
 package sim.logic;
 
 import sim.CircuitManager;
+import sim.io.EditJournal;
 import sim.model.Wire;
 
 public class RemoveWireCommand implements Command {
@@ -22,4 +23,13 @@ public class RemoveWireCommand implements Command {
         manager.addWireDirectly(wire);
         manager.propagate();
     }
+
+    @Override
+    public void journal(EditJournal journal, boolean undone) {
+        if (undone) {
+            journal.addWire(wire);
+        } else {
+            journal.removeWire(wire);
+        }
+    }
 }
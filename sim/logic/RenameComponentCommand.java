@@ -0,0 +1,36 @@
+package sim.logic;
+
+import sim.CircuitComponent;
+import sim.CircuitManager;
+import sim.io.EditJournal;
+
+public class RenameComponentCommand implements Command {
+    private final CircuitManager manager;
+    private final CircuitComponent component;
+    private final String oldID;
+    private final String newID;
+
+    public RenameComponentCommand(CircuitManager manager, CircuitComponent component, String newID) {
+        this.manager = manager;
+        this.component = component;
+        this.oldID = component.getID();
+        this.newID = newID;
+    }
+
+    @Override
+    public void execute() {
+        component.setID(newID);
+        manager.componentChanged(component);
+    }
+
+    @Override
+    public void undo() {
+        component.setID(oldID);
+        manager.componentChanged(component);
+    }
+
+    @Override
+    public void journal(EditJournal journal, boolean undone) {
+        journal.renameComponent(component, undone ? oldID : newID);
+    }
+}
@@ -0,0 +1,647 @@
+package sim.logic;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import sim.CircuitComponent;
+import sim.CircuitManager;
+import sim.gates.LogicGate;
+import sim.io.CircuitPersistence;
+import sim.model.LED;
+import sim.model.SubCircuit;
+import sim.model.Switch;
+import sim.model.Wire;
+import sim.util.PinState;
+
+/**
+ * The immutable, shareable part of a sub-circuit. The internal components and wires are
+ * compiled once into a flat netlist of primitive cells (nested sub-circuits are inlined),
+ * so every SubCircuit instance only has to keep one state byte per internal net.
+ * Loaded definitions keep only their source tree until first simulated, then compile.
+ */
+public final class SubCircuitDefinition {
+
+    // Net 0 is never driven, unconnected inputs read from it as FLOATING
+    private static final int FLOATING_NET = 0;
+    private static final int MAX_ITERATIONS = 100; // Safety break for oscillating circuits
+    private static final PinState[] STATES = PinState.values();
+
+    // Memoization limits for combinational definitions. Inputs are always HIGH/LOW, so an
+    // input vector packs into one bit per port; outputs pack into two bits per port.
+    private static final int DENSE_INPUT_LIMIT = 10;  // Up to 1024 precomputed entries
+    private static final int MAX_MEMO_INPUTS = 63;
+    private static final int MAX_MEMO_OUTPUTS = 32;
+    private static final int LRU_CAPACITY = 4096;
+
+    @FunctionalInterface
+    private interface Cell {
+        void evaluate(PinState[] inputs, PinState[] outputs);
+    }
+
+    // Nested sub-circuit inputs behave like the internal Switches they drive: anything but HIGH is LOW
+    private static final Cell INPUT_PORT = (in, out) -> out[0] = (in[0] == PinState.HIGH) ? PinState.HIGH : PinState.LOW;
+    private static final Cell OUTPUT_PORT = (in, out) -> out[0] = in[0];
+
+    // ~~~~~~~~~~ SOURCE FORM (save / export) ~~~~~~~~~~
+    private final Map<String, Object> internalCircuit;  // Components and wires, nested blocks by "def"
+    private final Map<String, SubCircuitDefinition> dependencies;  // Nested definitions by content hash
+    private final int[] inputPins;   // Internal Switch output pins, in port order
+    private final int[] outputPins;  // Internal LED input pins, in port order
+    private final List<String> inputLabels;
+    private final List<String> outputLabels;
+    private final String contentHash;
+
+    // ~~~~~~~~~~ COMPILED NETLIST (built on first use) ~~~~~~~~~~
+    private volatile Netlist netlist;
+    private List<CircuitComponent> liveComponents;  // Encapsulated components, kept until compiled
+    private List<Wire> liveWires;
+
+    private SubCircuitDefinition(Map<String, Object> internalCircuit, int[] inputPins, int[] outputPins, String contentHash,
+                                 Map<String, SubCircuitDefinition> dependencies,
+                                 List<CircuitComponent> liveComponents, List<Wire> liveWires) {
+        this.internalCircuit = Collections.unmodifiableMap(internalCircuit);
+        this.inputPins = inputPins;
+        this.outputPins = outputPins;
+        this.contentHash = contentHash;
+        this.dependencies = Collections.unmodifiableMap(dependencies);
+
+        Map<Integer, String> pinOwners = pinOwners(internalCircuit);
+        this.inputLabels = labelsFor(inputPins, pinOwners);
+        this.outputLabels = labelsFor(outputPins, pinOwners);
+
+        this.liveComponents = liveComponents;
+        this.liveWires = liveWires;
+    }
+
+    // Internals are only deserialized and compiled when the block is first simulated or inspected
+    private Netlist netlist() {
+        Netlist compiled = netlist;
+        if (compiled == null) {
+            synchronized (this) {
+                compiled = netlist;
+                if (compiled == null) {
+                    compiled = compile();
+                    netlist = compiled;
+                    liveComponents = null;
+                    liveWires = null;
+                }
+            }
+        }
+        return compiled;
+    }
+
+    private Netlist compile() {
+        if (liveComponents != null) return new Netlist(liveComponents, liveWires, inputPins, outputPins);
+
+        CircuitManager internal = new CircuitManager();
+        CircuitPersistence.deserializeCircuit(internal, internalCircuit, dependencies);
+        return new Netlist(internal.getComponents(), internal.getWires(), inputPins, outputPins);
+    }
+
+    // ==================================================================================
+    // FACTORIES
+    // ==================================================================================
+
+    // Build a definition from components being encapsulated: Switches become inputs, LEDs outputs.
+    // Identical blocks resolve to the definition already held by the SubCircuitLibrary.
+    public static SubCircuitDefinition fromComponents(List<CircuitComponent> components, List<Wire> wires) {
+        List<Integer> ins = new ArrayList<>();
+        List<Integer> outs = new ArrayList<>();
+        for (CircuitComponent c : components) {
+            if (c instanceof Switch) {
+                ins.add(c.getOutputPinIDs().get(0));
+            } else if (c instanceof LED) {
+                outs.add(c.getInputPinIDs().get(0));
+            }
+        }
+        return build(toArray(ins), toArray(outs), new ArrayList<>(components), new ArrayList<>(wires));
+    }
+
+    // Build a definition from a saved definitions table entry. Nested "def" references must already be resolved.
+    // Nothing is deserialized here; the body is kept as is until the block is first used.
+    public static SubCircuitDefinition fromBody(List<Integer> inputs, List<Integer> outputs, Map<String, Object> body,
+                                                Map<String, SubCircuitDefinition> definitions) {
+        int[] inputPins = toArray(inputs);
+        int[] outputPins = toArray(outputs);
+        Map<String, SubCircuitDefinition> dependencies = new HashMap<>();
+        body = resolveReferences(body, definitions, dependencies);
+        String hash = SubCircuitLibrary.contentHash(inputPins, outputPins, body);
+
+        SubCircuitDefinition cached = SubCircuitLibrary.get(hash);
+        if (cached != null) return cached;
+
+        return SubCircuitLibrary.intern(new SubCircuitDefinition(body, inputPins, outputPins, hash, dependencies, null, null));
+    }
+
+    // Build a definition from a version 1 sub-circuit ("inPins", "inputMapping", "internalCircuit", ...).
+    // Embedded nested blocks become definitions of their own, referenced by "def".
+    @SuppressWarnings("unchecked")
+    public static SubCircuitDefinition fromData(Map<String, Object> data) {
+        List<Integer> extIn = CircuitPersistence.castToIntList(data.get("inPins"));
+        List<Integer> extOut = CircuitPersistence.castToIntList(data.get("outPins"));
+        Map<String, Object> inMap = (Map<String, Object>) data.get("inputMapping");
+        Map<String, Object> outMap = (Map<String, Object>) data.get("outputMapping");
+
+        Map<String, Object> internalData = (Map<String, Object>) data.get("internalCircuit");
+        if (internalData == null) internalData = new HashMap<>();
+
+        // The embedded form hashes differently from the table form, so it is remembered as an alias
+        int[] inputPins = mapPorts(extIn, inMap);
+        int[] outputPins = mapPorts(extOut, outMap);
+        String legacyHash = SubCircuitLibrary.contentHash(inputPins, outputPins, internalData);
+
+        SubCircuitDefinition cached = SubCircuitLibrary.get(legacyHash);
+        if (cached != null) return cached;
+
+        Map<String, SubCircuitDefinition> nested = new HashMap<>();
+        List<Object> components = new ArrayList<>();
+        Object compList = internalData.get("components");
+        if (compList instanceof List) {
+            for (Object obj : (List<Object>) compList) {
+                Map<String, Object> map = (Map<String, Object>) obj;
+                Object nestedData = map.get("data");
+                if ("SUB_CIRCUIT".equals(map.get("type")) && nestedData instanceof Map) {
+                    SubCircuitDefinition definition = fromData((Map<String, Object>) nestedData);
+                    map = new HashMap<>(map);
+                    map.remove("data");
+                    map.put("def", definition.getContentHash());
+                    nested.put(definition.getContentHash(), definition);
+                }
+                components.add(map);
+            }
+        }
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("components", components);
+        body.put("wires", internalData.get("wires") != null ? internalData.get("wires") : new ArrayList<>());
+
+        SubCircuitDefinition definition = fromBody(toList(inputPins), toList(outputPins), body, nested);
+        SubCircuitLibrary.alias(legacyHash, definition);
+        return definition;
+    }
+
+    private static SubCircuitDefinition build(int[] inputPins, int[] outputPins, List<CircuitComponent> components, List<Wire> wires) {
+        Map<String, Object> body = CircuitPersistence.serializeCircuit(components, wires);
+        String hash = SubCircuitLibrary.contentHash(inputPins, outputPins, body);
+
+        SubCircuitDefinition cached = SubCircuitLibrary.get(hash);
+        if (cached != null) return cached;
+
+        return SubCircuitLibrary.intern(new SubCircuitDefinition(body, inputPins, outputPins, hash,
+                dependenciesOf(components), components, wires));
+    }
+
+    // Points every "def" in the body at the resolved definition's own hash (files may use other keys)
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> resolveReferences(Map<String, Object> body, Map<String, SubCircuitDefinition> definitions,
+                                                         Map<String, SubCircuitDefinition> dependencies) {
+        Object compList = body.get("components");
+        if (!(compList instanceof List)) return body;
+
+        List<Object> components = null;
+        List<Object> original = (List<Object>) compList;
+        for (int i = 0; i < original.size(); i++) {
+            Map<String, Object> map = (Map<String, Object>) original.get(i);
+            Object ref = map.get("def");
+            if (!(ref instanceof String)) continue;
+
+            SubCircuitDefinition nested = definitions.get(ref);
+            if (nested == null) continue;
+            dependencies.put(nested.getContentHash(), nested);
+            if (nested.getContentHash().equals(ref)) continue;
+
+            if (components == null) components = new ArrayList<>(original);
+            map = new HashMap<>(map);
+            map.put("def", nested.getContentHash());
+            components.set(i, map);
+        }
+        if (components == null) return body;
+
+        Map<String, Object> resolved = new HashMap<>(body);
+        resolved.put("components", components);
+        return resolved;
+    }
+
+    private static int[] mapPorts(List<Integer> externalPins, Map<String, Object> mapping) {
+        int[] result = new int[externalPins.size()];
+        for (int i = 0; i < result.length; i++) {
+            Object internal = (mapping != null) ? mapping.get(String.valueOf(externalPins.get(i))) : null;
+            result[i] = (internal instanceof Number) ? ((Number) internal).intValue() : -1;
+        }
+        return result;
+    }
+
+    // ==================================================================================
+    // SIMULATION
+    // ==================================================================================
+
+    // Fresh per-instance state vector, every net FLOATING
+    public byte[] createState() {
+        return netlist().createState();
+    }
+
+    public void setInput(byte[] nets, int port, PinState state) {
+        netlist().setInput(nets, port, state);
+    }
+
+    public PinState getOutput(byte[] nets, int port) {
+        return netlist().getOutput(nets, port);
+    }
+
+    // Settle the netlist for the current inputs. Acyclic netlists are sorted, so a single pass suffices.
+    public void evaluate(byte[] nets) {
+        netlist().evaluate(nets);
+    }
+
+    // Combinational definitions can be evaluated through lookup() without any per-instance state
+    public boolean isMemoized() {
+        return netlist().isMemoized();
+    }
+
+    // Packed output vector for the given input vector (bit i set = input port i HIGH)
+    public long lookup(long inputBits) {
+        return netlist().lookup(inputBits);
+    }
+
+    public static PinState unpackOutput(long packedOutputs, int port) {
+        return STATES[(int) (packedOutputs >>> (2 * port)) & 0b11];
+    }
+
+    // Evaluate one input vector from scratch, bypassing the caches
+    public long computeOutputs(long inputBits) {
+        return netlist().computeOutputs(inputBits);
+    }
+
+    // ==================================================================================
+    // GETTERS
+    // ==================================================================================
+
+    public Map<String, Object> getInternalCircuit() { return internalCircuit; }
+    public String getContentHash() { return contentHash; }
+    public Map<String, SubCircuitDefinition> getDependencies() { return dependencies; }
+    public int getInputCount() { return inputPins.length; }
+    public int getOutputCount() { return outputPins.length; }
+    public int getInputPin(int port) { return inputPins[port]; }
+    public int getOutputPin(int port) { return outputPins[port]; }
+    public String getInputLabel(int port) { return inputLabels.get(port); }
+    public String getOutputLabel(int port) { return outputLabels.get(port); }
+    public int getNetCount() { return netlist().netCount; }
+    public boolean isCombinational() { return netlist().combinational; }
+
+    public int indexOfInputPin(int internalPin) {
+        for (int i = 0; i < inputPins.length; i++) {
+            if (inputPins[i] == internalPin) return i;
+        }
+        return -1;
+    }
+
+    public int indexOfOutputPin(int internalPin) {
+        for (int i = 0; i < outputPins.length; i++) {
+            if (outputPins[i] == internalPin) return i;
+        }
+        return -1;
+    }
+
+    // ==================================================================================
+    // HELPERS
+    // ==================================================================================
+
+    private static Map<String, SubCircuitDefinition> dependenciesOf(List<CircuitComponent> components) {
+        Map<String, SubCircuitDefinition> result = new HashMap<>();
+        for (CircuitComponent c : components) {
+            if (c instanceof SubCircuit) {
+                SubCircuitDefinition nested = ((SubCircuit) c).getCircuitDefinition();
+                result.put(nested.getContentHash(), nested);
+            }
+        }
+        return result;
+    }
+
+    // Which component (by ID) owns each pin of the body, for the port labels
+    @SuppressWarnings("unchecked")
+    private static Map<Integer, String> pinOwners(Map<String, Object> body) {
+        Map<Integer, String> owners = new HashMap<>();
+        Object compList = body.get("components");
+        if (compList instanceof List) {
+            for (Object obj : (List<Object>) compList) {
+                Map<String, Object> map = (Map<String, Object>) obj;
+                String id = (String) map.get("id");
+                for (int pin : CircuitPersistence.castToIntList(map.get("inPins"))) owners.putIfAbsent(pin, id);
+                for (int pin : CircuitPersistence.castToIntList(map.get("outPins"))) owners.putIfAbsent(pin, id);
+            }
+        }
+        return owners;
+    }
+
+    private static List<String> labelsFor(int[] pins, Map<Integer, String> pinOwners) {
+        List<String> labels = new ArrayList<>();
+        for (int pin : pins) labels.add(pinOwners.get(pin));
+        return Collections.unmodifiableList(labels);
+    }
+
+    private static List<Integer> toList(int[] values) {
+        List<Integer> list = new ArrayList<>(values.length);
+        for (int v : values) list.add(v);
+        return list;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) result[i] = list.get(i);
+        return result;
+    }
+
+    /**
+     * The compiled form: primitive cells over numbered nets in evaluation order, plus the memo tables.
+     */
+    private static final class Netlist {
+        private final int netCount;
+        private final Cell[] cells;
+        private final int[][] cellInputs;
+        private final int[][] cellOutputs;
+        private final int[] inputNets;
+        private final int[] outputNets;
+        private final boolean combinational;
+        private final int maxInputs;
+        private final int maxOutputs;
+
+        // ~~~~~~~~~~ MEMOIZATION ~~~~~~~~~~
+        private final long[] denseTable;           // Input bits -> packed outputs, small blocks
+        private final Map<Long, Long> lruTable;    // Bounded cache, larger blocks
+
+        private Netlist(List<CircuitComponent> components, List<Wire> wires, int[] inputPins, int[] outputPins) {
+            NetlistCompiler compiler = new NetlistCompiler();
+            Map<Integer, Integer> pinNets = compiler.addCircuit(components, wires, inputPins);
+
+            this.inputNets = new int[inputPins.length];
+            for (int i = 0; i < inputPins.length; i++) {
+                this.inputNets[i] = pinNets.getOrDefault(inputPins[i], FLOATING_NET);
+            }
+            this.outputNets = new int[outputPins.length];
+            for (int i = 0; i < outputPins.length; i++) {
+                this.outputNets[i] = pinNets.getOrDefault(outputPins[i], FLOATING_NET);
+            }
+
+            this.netCount = compiler.netCount;
+            int[] order = compiler.topologicalOrder();
+            this.combinational = order != null;
+            if (order == null) {
+                // Feedback loops: keep placement order and iterate until stable
+                order = new int[compiler.cells.size()];
+                for (int i = 0; i < order.length; i++) order[i] = i;
+            }
+
+            this.cells = new Cell[order.length];
+            this.cellInputs = new int[order.length][];
+            this.cellOutputs = new int[order.length][];
+            int in = 0;
+            int out = 0;
+            for (int i = 0; i < order.length; i++) {
+                cells[i] = compiler.cells.get(order[i]);
+                cellInputs[i] = compiler.inputs.get(order[i]);
+                cellOutputs[i] = compiler.outputs.get(order[i]);
+                in = Math.max(in, cellInputs[i].length);
+                out = Math.max(out, cellOutputs[i].length);
+            }
+            this.maxInputs = in;
+            this.maxOutputs = out;
+
+            boolean memoizable = combinational && inputPins.length <= MAX_MEMO_INPUTS && outputPins.length <= MAX_MEMO_OUTPUTS;
+            if (memoizable && inputPins.length <= DENSE_INPUT_LIMIT) {
+                this.denseTable = new long[1 << inputPins.length];
+                for (int bits = 0; bits < denseTable.length; bits++) {
+                    denseTable[bits] = computeOutputs(bits);
+                }
+                this.lruTable = null;
+            } else if (memoizable) {
+                this.denseTable = null;
+                this.lruTable = new LinkedHashMap<>(256, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                        return size() > LRU_CAPACITY;
+                    }
+                };
+            } else {
+                this.denseTable = null;
+                this.lruTable = null;
+            }
+        }
+
+        private byte[] createState() {
+            byte[] nets = new byte[netCount];
+            Arrays.fill(nets, (byte) PinState.FLOATING.ordinal());
+            return nets;
+        }
+
+        private void setInput(byte[] nets, int port, PinState state) {
+            if (inputNets[port] != FLOATING_NET) nets[inputNets[port]] = (byte) state.ordinal();
+        }
+
+        private PinState getOutput(byte[] nets, int port) {
+            return STATES[nets[outputNets[port]]];
+        }
+
+        private void evaluate(byte[] nets) {
+            PinState[] in = new PinState[maxInputs];
+            PinState[] out = new PinState[maxOutputs];
+            int passes = combinational ? 1 : MAX_ITERATIONS;
+
+            for (int pass = 0; pass < passes; pass++) {
+                boolean changed = false;
+                for (int c = 0; c < cells.length; c++) {
+                    int[] inNets = cellInputs[c];
+                    int[] outNets = cellOutputs[c];
+                    for (int i = 0; i < inNets.length; i++) in[i] = STATES[nets[inNets[i]]];
+
+                    cells[c].evaluate(in, out);
+
+                    for (int o = 0; o < outNets.length; o++) {
+                        byte next = (byte) out[o].ordinal();
+                        if (nets[outNets[o]] != next) {
+                            nets[outNets[o]] = next;
+                            changed = true;
+                        }
+                    }
+                }
+                if (!changed) return;
+            }
+        }
+
+        private boolean isMemoized() {
+            return denseTable != null || lruTable != null;
+        }
+
+        private long lookup(long inputBits) {
+            if (denseTable != null) return denseTable[(int) inputBits];
+
+            synchronized (lruTable) {
+                Long cached = lruTable.get(inputBits);
+                if (cached != null) return cached;
+            }
+            long packed = computeOutputs(inputBits);
+            synchronized (lruTable) {
+                lruTable.put(inputBits, packed);
+            }
+            return packed;
+        }
+
+        private long computeOutputs(long inputBits) {
+            byte[] nets = createState();
+            for (int i = 0; i < inputNets.length; i++) {
+                setInput(nets, i, ((inputBits >>> i) & 1) == 1 ? PinState.HIGH : PinState.LOW);
+            }
+            evaluate(nets);
+
+            long packed = 0;
+            for (int i = 0; i < outputNets.length; i++) {
+                packed |= (long) getOutput(nets, i).ordinal() << (2 * i);
+            }
+            return packed;
+        }
+    }
+
+    /**
+     * Flattens components and wires (including nested sub-circuits) into cells over numbered nets.
+     */
+    private static final class NetlistCompiler {
+        private int netCount = 1; // Net 0 is reserved for FLOATING
+        private final List<Cell> cells = new ArrayList<>();
+        private final List<int[]> inputs = new ArrayList<>();
+        private final List<int[]> outputs = new ArrayList<>();
+
+        private int newNet() {
+            return netCount++;
+        }
+
+        private void addCell(Cell cell, int[] in, int[] out) {
+            cells.add(cell);
+            inputs.add(in);
+            outputs.add(out);
+        }
+
+        // Returns the net of every output pin and every input pin of the given circuit.
+        // Port pins are driven by the owning instance and get no cell of their own.
+        private Map<Integer, Integer> addCircuit(List<CircuitComponent> components, List<Wire> wires, int[] portPins) {
+            Map<Integer, Integer> pinNets = new HashMap<>();
+
+            // 1. Every output pin drives its own net
+            for (CircuitComponent c : components) {
+                for (int pin : c.getOutputPinIDs()) pinNets.put(pin, newNet());
+            }
+
+            // 2. Input pins read the net of the output driving them
+            for (Wire w : wires) {
+                Integer net = pinNets.get(w.getSourcePinID());
+                if (net != null) pinNets.put(w.getDestPinID(), net);
+            }
+            for (CircuitComponent c : components) {
+                for (int pin : c.getInputPinIDs()) pinNets.putIfAbsent(pin, FLOATING_NET);
+            }
+
+            // 3. Emit cells
+            for (CircuitComponent c : components) {
+                int[] in = netsOf(c.getInputPinIDs(), pinNets);
+                int[] out = netsOf(c.getOutputPinIDs(), pinNets);
+
+                if (c instanceof LogicGate) {
+                    addCell(((LogicGate) c)::evaluate, in, out);
+                } else if (c instanceof SubCircuit) {
+                    inline(((SubCircuit) c).getCircuitDefinition(), in, out);
+                } else if (c instanceof Switch && out.length > 0 && !contains(portPins, c.getOutputPinIDs().get(0))) {
+                    // A Switch that is not exposed as a port keeps its current level
+                    PinState level = c.getOutputState(0);
+                    addCell((i, o) -> o[0] = level, new int[0], out);
+                }
+                // LEDs and displays are sinks, nothing to evaluate
+            }
+            return pinNets;
+        }
+
+        private void inline(SubCircuitDefinition definition, int[] externalIn, int[] externalOut) {
+            Netlist nested = definition.netlist();
+
+            // Map nested nets into this netlist, sharing only the FLOATING net
+            int base = netCount - 1;
+            netCount += nested.netCount - 1;
+
+            for (int c = 0; c < nested.cells.length; c++) {
+                addCell(nested.cells[c], remap(nested.cellInputs[c], base), remap(nested.cellOutputs[c], base));
+            }
+            for (int i = 0; i < nested.inputNets.length && i < externalIn.length; i++) {
+                if (nested.inputNets[i] == FLOATING_NET) continue;
+                addCell(INPUT_PORT, new int[]{externalIn[i]}, new int[]{nested.inputNets[i] + base});
+            }
+            for (int i = 0; i < nested.outputNets.length && i < externalOut.length; i++) {
+                int net = nested.outputNets[i] == FLOATING_NET ? FLOATING_NET : nested.outputNets[i] + base;
+                addCell(OUTPUT_PORT, new int[]{net}, new int[]{externalOut[i]});
+            }
+        }
+
+        private static boolean contains(int[] values, int value) {
+            for (int v : values) {
+                if (v == value) return true;
+            }
+            return false;
+        }
+
+        private static int[] remap(int[] nets, int base) {
+            int[] result = new int[nets.length];
+            for (int i = 0; i < nets.length; i++) {
+                result[i] = nets[i] == FLOATING_NET ? FLOATING_NET : nets[i] + base;
+            }
+            return result;
+        }
+
+        private static int[] netsOf(List<Integer> pins, Map<Integer, Integer> pinNets) {
+            int[] result = new int[pins.size()];
+            for (int i = 0; i < result.length; i++) result[i] = pinNets.get(pins.get(i));
+            return result;
+        }
+
+        // Kahn's algorithm over cell dependencies, null if the netlist has feedback
+        private int[] topologicalOrder() {
+            int n = cells.size();
+            int[] driver = new int[netCount];
+            Arrays.fill(driver, -1);
+            for (int c = 0; c < n; c++) {
+                for (int net : outputs.get(c)) driver[net] = c;
+            }
+
+            int[] pending = new int[n];
+            List<List<Integer>> readers = new ArrayList<>();
+            for (int c = 0; c < n; c++) readers.add(new ArrayList<>());
+            for (int c = 0; c < n; c++) {
+                for (int net : inputs.get(c)) {
+                    int d = driver[net];
+                    if (d != -1) {
+                        pending[c]++;
+                        readers.get(d).add(c);
+                    }
+                }
+            }
+
+            Deque<Integer> ready = new ArrayDeque<>();
+            for (int c = 0; c < n; c++) {
+                if (pending[c] == 0) ready.add(c);
+            }
+
+            int[] order = new int[n];
+            int count = 0;
+            while (!ready.isEmpty()) {
+                int c = ready.poll();
+                order[count++] = c;
+                for (int r : readers.get(c)) {
+                    if (--pending[r] == 0) ready.add(r);
+                }
+            }
+            return count == n ? order : null;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package sim.logic;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import sim.util.JsonWriter;
+
+/**
+ * Process-wide cache of compiled sub-circuit definitions, keyed by a hash of their content.
+ * Any import or load that meets a block it has already seen reuses the compiled definition
+ * instead of rebuilding the internal circuit.
+ *
+ * Definitions are held weakly: an entry lasts as long as something still uses the definition
+ * (a circuit, the undo history, a snapshot being saved, an enclosing definition), so loads and
+ * imports over a long session don't pile up compiled blocks nobody can reach any more.
+ */
+public class SubCircuitLibrary {
+    private SubCircuitLibrary() {
+        /* This utility class should not be instantiated */
+    }
+
+    private static final Map<String, Entry> DEFINITIONS = new ConcurrentHashMap<>();
+
+    // Hashes of other encodings of a definition (the version 1 embedded form) mapped to the definition
+    private static final Map<String, Entry> ALIASES = new ConcurrentHashMap<>();
+
+    // Imported files by hash of their raw bytes: skips parsing as well as compiling
+    private static final Map<String, Entry> IMPORTS = new ConcurrentHashMap<>();
+
+    // Entries whose definition has been collected, to be removed from their map
+    private static final ReferenceQueue<SubCircuitDefinition> COLLECTED = new ReferenceQueue<>();
+
+    public record ImportedBlock(String name, SubCircuitDefinition definition) {}
+
+    private static final class Entry extends WeakReference<SubCircuitDefinition> {
+        final Map<String, Entry> map;
+        final String key;
+        final String name; // The block's name, for imports
+
+        Entry(Map<String, Entry> map, String key, SubCircuitDefinition definition, String name) {
+            super(definition, COLLECTED);
+            this.map = map;
+            this.key = key;
+            this.name = name;
+        }
+    }
+
+    public static SubCircuitDefinition get(String contentHash) {
+        SubCircuitDefinition definition = lookup(DEFINITIONS, contentHash);
+        return definition != null ? definition : lookup(ALIASES, contentHash);
+    }
+
+    // Returns the cached definition with the same content, registering this one if it is new
+    public static SubCircuitDefinition intern(SubCircuitDefinition definition) {
+        expungeCollected();
+        SubCircuitDefinition[] result = new SubCircuitDefinition[1];
+        DEFINITIONS.compute(definition.getContentHash(), (key, entry) -> {
+            SubCircuitDefinition existing = (entry != null) ? entry.get() : null;
+            result[0] = (existing != null) ? existing : definition;
+            return (existing != null) ? entry : new Entry(DEFINITIONS, key, definition, null);
+        });
+        return result[0];
+    }
+
+    public static void alias(String hash, SubCircuitDefinition definition) {
+        expungeCollected();
+        ALIASES.put(hash, new Entry(ALIASES, hash, definition, null));
+    }
+
+    public static ImportedBlock getImport(String fileHash) {
+        Entry entry = IMPORTS.get(fileHash);
+        SubCircuitDefinition definition = (entry != null) ? entry.get() : null;
+        return definition != null ? new ImportedBlock(entry.name, definition) : null;
+    }
+
+    public static void putImport(String fileHash, ImportedBlock block) {
+        expungeCollected();
+        IMPORTS.put(fileHash, new Entry(IMPORTS, fileHash, block.definition(), block.name()));
+    }
+
+    // The definitions currently held
+    public static Collection<SubCircuitDefinition> getDefinitions() {
+        List<SubCircuitDefinition> definitions = new ArrayList<>();
+        for (Entry entry : DEFINITIONS.values()) {
+            SubCircuitDefinition definition = entry.get();
+            if (definition != null) definitions.add(definition);
+        }
+        return definitions;
+    }
+
+    public static void clear() {
+        DEFINITIONS.clear();
+        ALIASES.clear();
+        IMPORTS.clear();
+    }
+
+    private static SubCircuitDefinition lookup(Map<String, Entry> map, String key) {
+        Entry entry = map.get(key);
+        return (entry != null) ? entry.get() : null;
+    }
+
+    private static void expungeCollected() {
+        Reference<? extends SubCircuitDefinition> ref;
+        while ((ref = COLLECTED.poll()) != null) {
+            Entry entry = (Entry) ref;
+            entry.map.remove(entry.key, entry);
+        }
+    }
+
+    // ==================================================================================
+    // HASHING
+    // ==================================================================================
+
+    public static String hash(byte[] content) {
+        return toHex(sha256().digest(content));
+    }
+
+    // As above, for content streamed from a file
+    public static String hash(InputStream content) throws IOException {
+        MessageDigest digest = sha256();
+        content.transferTo(new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+        return toHex(digest.digest());
+    }
+
+    // Hash of what makes two definitions interchangeable: the port order and the internal circuit.
+    // Nested blocks appear in the circuit by their own hash, so equal hashes mean equal trees.
+    // The canonical JSON is streamed into the digest rather than built as a String.
+    public static String contentHash(int[] inputPins, int[] outputPins, Map<String, Object> internalCircuit) {
+        MessageDigest digest = sha256();
+        Writer sink = new OutputStreamWriter(new DigestOutputStream(OutputStream.nullOutputStream(), digest), StandardCharsets.UTF_8);
+        try (JsonWriter writer = JsonWriter.canonical(sink)) {
+            writer.beginArray();
+            writer.value(toList(inputPins));
+            writer.value(toList(outputPins));
+            writer.tree(internalCircuit);
+            writer.endArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // The digest stream doesn't throw
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static List<Integer> toList(int[] values) {
+        List<Integer> list = new ArrayList<>(values.length);
+        for (int v : values) list.add(v);
+        return list;
+    }
+}
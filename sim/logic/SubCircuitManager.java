@@ -1,17 +1,23 @@
 package sim.logic;
 
+import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
 
 import sim.CircuitComponent;
 import sim.CircuitManager;
+import sim.gates.LookupTable;
 import sim.model.SubCircuit;
 import sim.model.Wire;
 
 public class SubCircuitManager {
 
+    private static final String CHANGED = "The circuit changed while the lookup table was being built";
+
     private final CircuitManager manager;
 
     public SubCircuitManager(CircuitManager manager) {
@@ -19,39 +25,82 @@ public class SubCircuitManager {
     }
 
     public void createSubCircuit(String name, List<CircuitComponent> componentsToEncapsulate) {
-        if (componentsToEncapsulate == null || componentsToEncapsulate.isEmpty()) return;
-        
-        // Create the SubCircuit object. This will define its pins and dimensions.
-        SubCircuit newSub = new SubCircuit(name, 0, 0, componentsToEncapsulate);
+        encapsulate(name, componentsToEncapsulate, null, null);
+    }
+
+    // Lookup tables: enumerating a table can take long, so it happens between taking the block's definition
+    // (defineBlock() or the sub-circuit's own) and swapping the finished table in, and may run
+    // off the Swing thread. The swap fails if the block changed in the meantime.
+
+    // The definition encapsulating the components would get, without changing the circuit
+    public SubCircuitDefinition defineBlock(List<CircuitComponent> components) {
+        List<Wire> internalWires = new ArrayList<>();
+        partitionWires(components, internalWires, new ArrayList<>());
+        return SubCircuitDefinition.fromComponents(components, internalWires);
+    }
+
+    // Encapsulate the components and replace them with a table enumerated from defineBlock(components).
+    // Returns an error message on failure.
+    public String createLookupTable(String name, List<CircuitComponent> componentsToEncapsulate,
+                                    SubCircuitDefinition definition, long[] table) {
+        if (componentsToEncapsulate == null || !containsAll(componentsToEncapsulate)) return CHANGED;
+        return encapsulate(name, componentsToEncapsulate, definition, table);
+    }
+
+    // Replace a combinational sub-circuit in place with a table enumerated from its definition, keeping its
+    // pins and wires. Returns an error message on failure.
+    public String convertToLookupTable(SubCircuit sub, long[] table) {
+        if (!containsAll(List.of(sub))) return CHANGED;
+        SubCircuitDefinition definition = sub.getCircuitDefinition();
+        LookupTable lut = LookupTable.fromTable(sub.getID(), sub.getX(), sub.getY(),
+                new ArrayList<>(sub.getInputPinIDs()), new ArrayList<>(sub.getOutputPinIDs()), definition, table);
+
+        List<Integer> pins = new ArrayList<>(sub.getInputPinIDs());
+        pins.addAll(sub.getOutputPinIDs());
+        List<Wire> attached = new ArrayList<>();
+        for (Wire w : manager.getWires()) {
+            if (pins.contains(w.getSourcePinID()) || pins.contains(w.getDestPinID())) attached.add(w);
+        }
+
+        manager.removeComponenet(sub);
+        manager.addComponent(lut);
+        for (Wire w : attached) {
+            manager.addWireDirectly(w);
+        }
+
+        manager.refreshAllPinLocations();
+        manager.propagate();
+        return null;
+    }
+
+    // With a table, the components become a lookup table enumerated from tableDefinition instead of a sub-circuit
+    private String encapsulate(String name, List<CircuitComponent> componentsToEncapsulate,
+                               SubCircuitDefinition tableDefinition, long[] table) {
+        if (componentsToEncapsulate == null || componentsToEncapsulate.isEmpty()) return "Nothing selected";
+        boolean asLookupTable = table != null;
 
-        // Partition wires into internal and external lists.
         Set<String> encapsulatedIds = new HashSet<>();
         for (CircuitComponent c : componentsToEncapsulate) {
             encapsulatedIds.add(c.getID());
         }
-
         List<Wire> internalWires = new ArrayList<>();
         List<Wire> externalWires = new ArrayList<>();
-        
-        // Access wires via manager
-        List<Wire> allWires = manager.getWires();
+        partitionWires(componentsToEncapsulate, internalWires, externalWires);
 
-        for (Wire w : allWires) {
-            CircuitComponent src = manager.getComponentByPin(w.getSourcePinID());
-            CircuitComponent dest = manager.getComponentByPin(w.getDestPinID());
-
-            boolean srcIsInternal = src != null && encapsulatedIds.contains(src.getID());
-            boolean destIsInternal = dest != null && encapsulatedIds.contains(dest.getID());
+        // Compile the shared definition and create the SubCircuit object. This defines its pins and dimensions.
+        SubCircuitDefinition definition = SubCircuitDefinition.fromComponents(componentsToEncapsulate, internalWires);
+        if (asLookupTable && !definition.getContentHash().equals(tableDefinition.getContentHash())) return CHANGED;
+        SubCircuit newSub = new SubCircuit(name, 0, 0, definition);
 
-            if (srcIsInternal && destIsInternal) {
-                internalWires.add(w);
-            } else if (srcIsInternal || destIsInternal) {
-                externalWires.add(w);
-            }
+        // Position the new abstract block in the center of the original components
+        Rectangle bounds = null;
+        for (CircuitComponent c : componentsToEncapsulate) {
+            Rectangle r = new Rectangle(c.getX(), c.getY(), c.getWidth(), c.getHeight());
+            if (bounds == null) bounds = r;
+            else bounds.add(r);
         }
-
-        // Initialize the sub-circuit's internal state.
-        newSub.initializeInternalCircuit(internalWires);
+        newSub.setLocation(bounds.x + bounds.width / 2 - newSub.getWidth() / 2,
+                           bounds.y + bounds.height / 2 - newSub.getHeight() / 2);
 
         // Remove the original components. This will also remove all wires attached to them.
         // We do this after finding the wires we need to preserve.
@@ -59,8 +108,13 @@ public class SubCircuitManager {
             manager.removeComponenet(c);
         }
 
-        // Add the new SubCircuit component to the main circuit.
-        manager.addComponent(newSub);
+        // Add the new block to the main circuit. A lookup table takes over the SubCircuit's pins.
+        if (asLookupTable) {
+            manager.addComponent(LookupTable.fromTable(name, newSub.getX(), newSub.getY(),
+                    newSub.getInputPinIDs(), newSub.getOutputPinIDs(), definition, table));
+        } else {
+            manager.addComponent(newSub);
+        }
 
         // Re-wire the external connections to the new sub-circuit block.
         for (Wire w : externalWires) {
@@ -82,5 +136,34 @@ public class SubCircuitManager {
         // Finalize
         manager.refreshAllPinLocations();
         manager.propagate();
+        return null;
+    }
+
+    // Wires between two of the components are internal, wires with one end on them external
+    private void partitionWires(List<CircuitComponent> components, List<Wire> internal, List<Wire> external) {
+        Set<String> encapsulatedIds = new HashSet<>();
+        for (CircuitComponent c : components) {
+            encapsulatedIds.add(c.getID());
+        }
+
+        for (Wire w : manager.getWires()) {
+            CircuitComponent src = manager.getComponentByPin(w.getSourcePinID());
+            CircuitComponent dest = manager.getComponentByPin(w.getDestPinID());
+
+            boolean srcIsInternal = src != null && encapsulatedIds.contains(src.getID());
+            boolean destIsInternal = dest != null && encapsulatedIds.contains(dest.getID());
+
+            if (srcIsInternal && destIsInternal) {
+                internal.add(w);
+            } else if (srcIsInternal || destIsInternal) {
+                external.add(w);
+            }
+        }
+    }
+
+    private boolean containsAll(List<CircuitComponent> components) {
+        Set<CircuitComponent> present = Collections.newSetFromMap(new IdentityHashMap<>());
+        present.addAll(manager.getComponents());
+        return present.containsAll(components);
     }
 }
@@ -1,8 +1,6 @@
 package sim.model;
 
-import java.awt.BasicStroke;
 import java.awt.Color;
-import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.util.HashMap;
@@ -12,6 +10,7 @@ import java.util.Map;
 import sim.CircuitManager;
 import sim.util.PinID;
 import sim.util.PinState;
+import sim.util.RenderResources;
 import sim.util.Theme;
 import sim.util.ThemeManager;
 
@@ -85,26 +84,26 @@ public class LED extends SinkSource {
                 g2.setColor(theme.ledOff);
                 g2.fillOval(x, y, WIDTH, HEIGHT);
                 g2.setColor(theme.componentBorder);
-                g2.setStroke(new BasicStroke(1));
+                g2.setStroke(RenderResources.THIN_STROKE);
                 g2.drawOval(x, y, WIDTH, HEIGHT);
                 break;
             case FLOATING:
                 g2.setColor(theme.ledFloating);
                 g2.fillOval(x, y, WIDTH, HEIGHT);
                 g2.setColor(theme.componentBorder);
-                g2.setStroke(new BasicStroke(1));
+                g2.setStroke(RenderResources.THIN_STROKE);
                 g2.drawOval(x, y, WIDTH, HEIGHT);
                 break;
         }
 
         // Input Pin Lines
         g2.setColor(theme.pinLine);
-        g2.setStroke(new BasicStroke(2));
+        g2.setStroke(RenderResources.OUTLINE_STROKE);
         g2.drawLine(x - PIN_WIDTH, y + PIN_Y_MID, x, y + PIN_Y_MID);
         
         // Label
         g2.setColor(theme.text);
-        g2.setFont(new Font("Arial", Font.BOLD, 10));
+        g2.setFont(RenderResources.LABEL_FONT);
         g2.drawString(id, x, y - LABEL_Y_OFFSET);
     }
 
@@ -127,4 +126,9 @@ public class LED extends SinkSource {
     public Tooltype getToolType() {
         return Tooltype.LED;
     }
+
+    @Override
+    public boolean drawsState() {
+        return true;
+    }
 }
\ No newline at end of file
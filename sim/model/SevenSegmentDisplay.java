@@ -1,6 +1,5 @@
 package sim.model;
 
-import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Point;
@@ -13,6 +12,7 @@ import java.util.Map;
 import sim.CircuitManager;
 import sim.util.PinID;
 import sim.util.PinState;
+import sim.util.RenderResources;
 import sim.util.Theme;
 import sim.util.ThemeManager;
 
@@ -155,6 +155,7 @@ public class SevenSegmentDisplay extends SinkSource {
         g2.fillRect(x, y, WIDTH, HEIGHT);
 
         g2.setColor(theme.componentBorder);
+        g2.setStroke(RenderResources.OUTLINE_STROKE);
         g2.drawRect(x, y, WIDTH, HEIGHT);
         
 
@@ -164,36 +165,36 @@ public class SevenSegmentDisplay extends SinkSource {
 
                 // Draw glow effect for individual segment
                 g2.setColor(SEGMENT_GLOW_COLOR_OUTER);
-                g2.setStroke(new BasicStroke(2)); // Thicker stroke for outer glow
+                g2.setStroke(RenderResources.OUTLINE_STROKE); // Thicker stroke for outer glow
                 g2.draw(segments[i]);
 
                 g2.setColor(SEGMENT_GLOW_COLOR_INNER);
-                g2.setStroke(new BasicStroke(1)); // Thinner stroke for inner glow
+                g2.setStroke(RenderResources.THIN_STROKE); // Thinner stroke for inner glow
                 g2.draw(segments[i]);
                 
                 // Set color for the actual segment
                 g2.setColor(SEGMENT_ON_COLOR);
                 g2.fill(segments[i]); // Fill the segment
-                g2.setStroke(new BasicStroke((float) 0.5)); // Reset stroke for subsequent draws
+                g2.setStroke(RenderResources.FINE_STROKE); // Reset stroke for subsequent draws
 
             } else if (segmentStates[i] == PinState.LOW) {
 
                 g2.setColor(theme.ledOff);
                 g2.fill(segments[i]);
-                g2.setStroke(new BasicStroke(1)); // Ensure solid stroke for off segments
+                g2.setStroke(RenderResources.THIN_STROKE); // Ensure solid stroke for off segments
 
             } else { // FLOATING
 
                 g2.setColor(theme.ledFloating);
                 g2.fill(segments[i]);
-                g2.setStroke(new BasicStroke(1)); // Ensure solid stroke for floating segments
+                g2.setStroke(RenderResources.THIN_STROKE); // Ensure solid stroke for floating segments
 
             }
         }
 
         // INPUT Pin Lines
         g2.setColor(theme.pinLine);
-        g2.setStroke(new BasicStroke(1));
+        g2.setStroke(RenderResources.THIN_STROKE);
         g2.drawLine(x + INPUT_TOP, y - PIN_WIDTH, x + INPUT_TOP, y); // a
         g2.drawLine(x + WIDTH, y + INPUT_TLR, x + WIDTH + PIN_WIDTH, y + INPUT_TLR); // b
         g2.drawLine(x + WIDTH, y + INPUT_BLR, x + WIDTH + PIN_WIDTH, y + INPUT_BLR); // c
@@ -240,6 +241,11 @@ public class SevenSegmentDisplay extends SinkSource {
     public Tooltype getToolType() {
         return Tooltype.SEVEN_SEGMENT;
     }
+
+    @Override
+    public boolean drawsState() {
+        return true;
+    }
     
     @Override
     public PinState getOutputState(int pinIndex) {
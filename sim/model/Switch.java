@@ -1,8 +1,6 @@
 package sim.model;
 
-import java.awt.BasicStroke;
 import java.awt.Color;
-import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.util.HashMap;
@@ -13,6 +11,7 @@ import sim.CircuitManager;
 import sim.util.Clickable;
 import sim.util.PinID;
 import sim.util.PinState;
+import sim.util.RenderResources;
 import sim.util.Theme;
 import sim.util.ThemeManager;
 
@@ -26,6 +25,10 @@ public class Switch extends SinkSource implements Clickable {
     private static final int HANDLE_PADDING = 2;
     private static final int LABEL_Y_OFFSET = 5;
 
+    // Handle colors for ON/OFF states
+    private static final Color ON_COLOR = new Color(0, 180, 0); // Brighter green
+    private static final Color OFF_COLOR = new Color(180, 0, 0); // Brighter red
+
     private boolean state = false;
 
     // Switch is a source
@@ -72,25 +75,21 @@ public class Switch extends SinkSource implements Clickable {
         g2.setColor(theme.componentBody);
         g2.fillRoundRect(x, y, WIDTH, HEIGHT, CORNER_ARC, CORNER_ARC);
         g2.setColor(theme.componentBorder);
-        g2.setStroke(new BasicStroke(2));
+        g2.setStroke(RenderResources.OUTLINE_STROKE);
         g2.drawRoundRect(x, y, WIDTH, HEIGHT, CORNER_ARC, CORNER_ARC);
 
-        // Define colors for ON/OFF states
-        Color onColor = new Color(0, 180, 0); // Brighter green
-        Color offColor = new Color(180, 0, 0); // Brighter red
-        
         int handleWidth = WIDTH / 2;
         int handleX = state ? (x + WIDTH - handleWidth - HANDLE_PADDING) : (x + HANDLE_PADDING);
 
         // Draw the handle
-        g2.setColor(state ? onColor : offColor);
+        g2.setColor(state ? ON_COLOR : OFF_COLOR);
         g2.fillRoundRect(handleX, y + HANDLE_PADDING, handleWidth, HEIGHT - (2 * HANDLE_PADDING), CORNER_ARC, CORNER_ARC);
-        g2.setColor(theme.componentBorder.darker());
+        g2.setColor(RenderResources.darker(theme.componentBorder));
         g2.drawRoundRect(handleX, y + HANDLE_PADDING, handleWidth, HEIGHT - (2 * HANDLE_PADDING), CORNER_ARC, CORNER_ARC);
         
         // Label
         g2.setColor(theme.text);
-        g2.setFont(new Font("Arial", Font.BOLD, 10));
+        g2.setFont(RenderResources.LABEL_FONT);
         g2.drawString(id, x + WIDTH / 2 - g2.getFontMetrics().stringWidth(id) / 2, y - LABEL_Y_OFFSET);
 
         // Output pin Line
@@ -114,4 +113,9 @@ public class Switch extends SinkSource implements Clickable {
     public Tooltype getToolType() {
         return Tooltype.SWITCH;
     }
+
+    @Override
+    public boolean drawsState() {
+        return true;
+    }
 }
\ No newline at end of file
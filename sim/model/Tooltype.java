@@ -18,6 +18,7 @@ public enum Tooltype {
     LED,
     SEVEN_SEGMENT,
     SUB_CIRCUIT,
+    LOOKUP_TABLE,
     WIRE,
     DELETE
 }
\ No newline at end of file
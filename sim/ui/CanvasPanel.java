@@ -1,6 +1,5 @@
 package sim.ui;
 
-import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics;
@@ -14,7 +13,7 @@ import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Point2D;
 import java.awt.Rectangle;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 import javax.swing.JPanel;
 
@@ -22,7 +21,7 @@ import sim.CircuitComponent;
 import sim.CircuitManager;
 import sim.logic.CommandManager;
 import sim.model.Wire;
-import sim.util.PinState;
+import sim.util.RenderResources;
 import sim.util.Theme;
 import sim.util.ThemeManager;
 
@@ -40,12 +39,39 @@ public class CanvasPanel extends JPanel {
     private ToolButton resetButton;
     private ToolButton undoButton;
     private ToolButton redoButton;
+    private static final Color ERROR_COLOR = new Color(255, 0, 0, 200);
     private String errorMessage = "";
     private long errorExpireTime = 0;
 
+    // ~~~~~~~~~~ CULLING ~~~~~~~~~~
+    private static final int CULL_MARGIN = 40; // World units around the view for labels and pin stubs
+    private static final int STATE_MARGIN = 6; // World units state is drawn outside its bounds (wire and LED glow)
+
+    // ~~~~~~~~~~ LEVEL OF DETAIL ~~~~~~~~~~
+    // Zoomed out, components become plain blocks without text and wires thin lines without glow.
+    // Further out, cells of the screen holding several components are shaded by how many they hold.
+    private enum Detail { FULL, BLOCKS, DENSITY }
+    private static final double BLOCKS_ZOOM = 0.5;   // Below this, blocks
+    private static final double DENSITY_ZOOM = 0.2;  // Below this, density cells
+    private static final int DENSITY_CELL = 8;       // Device pixels
+    private static final int DENSITY_LEVELS = 8;
+    private Color[] densityColors;
+
     // ~~~~~~~~~~ GRID ~~~~~~~~~~
     private boolean gridVisible = false;
     private int gridSize = 20;
+    private static final int MIN_GRID_SPACING = 8; // Device pixels between drawn dots
+    private Color gridColor;
+
+    // ~~~~~~~~~~ CACHED LAYERS ~~~~~~~~~~
+    // The grid and the components that don't show state only change on edits, so they are drawn
+    // into tiles once and copied on each repaint. Wires, state and overlays are drawn over them live.
+    private final TileLayer gridLayer = new TileLayer(this::drawGrid, 0);
+    private final TileLayer componentLayer = new TileLayer(this::drawStaticComponents, CULL_MARGIN);
+
+    // ~~~~~~~~~~ FRAME PACING ~~~~~~~~~~
+    // State changes are drawn at most once per frame, however often the simulation settles
+    private final RenderScheduler renderScheduler = new RenderScheduler(this::repaintWorld);
 
     // ~~~~~~~~~~ THEME ~~~~~~~~~~
     private Theme theme = ThemeManager.getTheme();
@@ -59,6 +85,11 @@ public class CanvasPanel extends JPanel {
         ThemeManager.addThemeListener(() -> {
             theme = ThemeManager.getTheme();
             setBackground(theme.bg);
+            gridLayer.setBackground(theme.bg);
+            gridLayer.invalidateAll();
+            componentLayer.invalidateAll();
+            densityColors = createDensityColors();
+            gridColor = createGridColor();
             if (resetButton != null)
                 resetButton.refreshAppearance();
             if (undoButton != null)
@@ -70,6 +101,11 @@ public class CanvasPanel extends JPanel {
 
         // Initial background set
         setBackground(theme.bg);
+        gridLayer.setBackground(theme.bg);
+        densityColors = createDensityColors();
+        gridColor = createGridColor();
+        manager.addLayoutListener(componentLayer::invalidate);
+        manager.addStateListener(this::repaintChanged);
 
         setupHUDButtons();
 
@@ -142,38 +178,58 @@ public class CanvasPanel extends JPanel {
     }
 
     public void setGridVisible(boolean visible, int size) {
+        if (size != gridSize) gridLayer.invalidateAll();
+        if (!visible) gridLayer.flush();
         this.gridVisible = visible;
         this.gridSize = size;
     }
 
+    // The most state-change frames drawn per second
+    public int getMaxFps() {
+        return renderScheduler.getMaxFps();
+    }
+
+    public void setMaxFps(int fps) {
+        renderScheduler.setMaxFps(fps);
+    }
+
+    // Turbo stops drawing state changes so the simulation runs flat out; turning it off catches up
+    public boolean isTurbo() {
+        return renderScheduler.isTurbo();
+    }
+
+    public void setTurbo(boolean turbo) {
+        renderScheduler.setTurbo(turbo);
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
+        renderScheduler.framePainted();
         Graphics2D g2 = (Graphics2D) g;
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
         AffineTransform savedTransform = g2.getTransform();
+        Rectangle viewport = savedTransform.createTransformedShape(new Rectangle(0, 0, getWidth(), getHeight())).getBounds();
 
         // Apply Pan and Zoom
         g2.translate(panX, panY);
         g2.scale(zoom, zoom);
 
-        // --- DRAW GRID FIRST ---
-        if (gridVisible) {
-            drawGrid(g2);
-        }
+        // Only what intersects the area being painted is drawn
+        Rectangle view = visibleWorld(g2);
 
-        // Set wire state
-        for (Wire wire : manager.getWires()) {
-            PinState state = manager.getPinState(wire.getSourcePinID());
-            wire.setState(state);
+        // --- DRAW GRID FIRST ---
+        if (gridVisible && !gridLayer.paint(g2, g2.getTransform(), viewport)) {
+            drawGrid(g2, view);
         }
 
         // Order is important. DO NOT CHANGE
-        drawWires(g2);
+        drawWires(g2, view);
         drawInteractiveWires(g2);
         drawHighlights(g2);
-        drawComponents(g2);
+        boolean cached = componentLayer.paint(g2, g2.getTransform(), viewport);
+        drawComponents(g2, view, cached);
         drawSelectionMarquee(g2);
 
         // --- UI OVERLAYS ARE DRAWN AFTER RESETTING TRANSFORM ---
@@ -181,62 +237,108 @@ public class CanvasPanel extends JPanel {
         drawOverlay(g2);
     }
 
-    private void drawGrid(Graphics2D g2) {
-        Point2D topLeft = screenToWorld(new Point(0, 0));
-        Point2D bottomRight = screenToWorld(new Point(getWidth(), getHeight()));
+    // Normally drawn into the grid layer's tiles, so this only runs when those are redrawn
+    private void drawGrid(Graphics2D g2, Rectangle area) {
+        // Zoomed out, only every second (fourth, ...) dot is drawn, keeping them a few pixels apart
+        int step = gridSize;
+        while (step * zoom < MIN_GRID_SPACING && step < Integer.MAX_VALUE / 2) step *= 2;
+
+        double startX = Math.floor((double) area.x / step) * step;
+        double startY = Math.floor((double) area.y / step) * step;
+        double endX = Math.ceil((double) (area.x + area.width) / step) * step;
+        double endY = Math.ceil((double) (area.y + area.height) / step) * step;
+
+        // A 2x2 dot at each intersection, but never smaller than a pixel
+        int dot = Math.max(2, (int) Math.ceil(1 / zoom));
+        g2.setColor(gridColor);
 
-        double startX = Math.floor(topLeft.getX() / gridSize) * gridSize;
-        double startY = Math.floor(topLeft.getY() / gridSize) * gridSize;
-        double endX = Math.ceil(bottomRight.getX() / gridSize) * gridSize;
-        double endY = Math.ceil(bottomRight.getY() / gridSize) * gridSize;
+        for (double x = startX; x <= endX; x += step) {
+            for (double y = startY; y <= endY; y += step) {
+                g2.fillRect((int) x - dot / 2, (int) y - dot / 2, dot, dot);
+            }
+        }
+    }
 
+    private Color createGridColor() {
         Color bg = theme.bg;
         // Calculate brightness to decide if we darken or lighten for the grid
         // Standard way to caluclate LUMA (ITU-R BT.601)
         double brightness = (bg.getRed() * 0.299 + bg.getGreen() * 0.587 + bg.getBlue() * 0.114);
 
-        Color gridColor;
         if (brightness > 128) {
             // Light theme: use a darker grid
-            gridColor = new Color(0, 0, 0, 60);
+            return new Color(0, 0, 0, 60);
         } else {
             // Dark theme: use a lighter grid
-            gridColor = new Color(255, 255, 255, 50);
+            return new Color(255, 255, 255, 50);
         }
+    }
 
-        g2.setColor(gridColor);
+    // Schedules a repaint of just the components that changed state and the wires they drive
+    private void repaintChanged(Set<CircuitComponent> changed) {
+        if (renderScheduler.isTurbo()) return;
+
+        Rectangle dirty = new Rectangle(0, 0, -1, -1);
+        for (CircuitComponent c : changed) {
+            dirty.add(new Rectangle(c.getX(), c.getY(), c.getWidth(), c.getHeight()));
+            manager.forEachWireFrom(c, wire -> {
+                Point p1 = manager.getPointForPin(wire.getSourcePinID());
+                Point p2 = manager.getPointForPin(wire.getDestPinID());
+                if (p1 != null && p2 != null) {
+                    dirty.add(p1);
+                    dirty.add(p2);
+                }
+            });
+        }
+        if (dirty.width < 0) return; // Nothing changed
 
-        for (double x = startX; x <= endX; x += gridSize) {
-            for (double y = startY; y <= endY; y += gridSize) {
-                // Draw a small 2x2 dot at each intersection
-                g2.fillRect((int) x - 1, (int) y - 1, 2, 2);
-            }
+        dirty.grow(STATE_MARGIN, STATE_MARGIN);
+        renderScheduler.request(dirty);
+    }
+
+    // Repaints a world area (null for everything) with the current view; false if none of it is on screen
+    private boolean repaintWorld(Rectangle world) {
+        if (!isShowing()) return false;
+        if (world == null) {
+            repaint();
+            return true;
+        }
+        Rectangle screen = getTransform().createTransformedShape(world).getBounds();
+        screen.grow(1, 1); // Antialiasing
+        screen = screen.intersection(new Rectangle(0, 0, getWidth(), getHeight()));
+        if (screen.isEmpty()) return false;
+        repaint(screen);
+        return true;
+    }
+
+    // The world area being painted (the clip, or the whole panel), plus a margin
+    private Rectangle visibleWorld(Graphics2D g2) {
+        Rectangle view = g2.getClipBounds();
+        if (view == null) {
+            Point2D topLeft = screenToWorld(new Point(0, 0));
+            Point2D bottomRight = screenToWorld(new Point(getWidth(), getHeight()));
+            view = new Rectangle((int) Math.floor(topLeft.getX()), (int) Math.floor(topLeft.getY()), 0, 0);
+            view.add(Math.ceil(bottomRight.getX()), Math.ceil(bottomRight.getY()));
         }
+        view.grow(CULL_MARGIN, CULL_MARGIN);
+        return view;
     }
 
-    private void drawWires(Graphics2D g2) {
-        // Get live pin locations for the component being moved for smooth wire dragging
-        CircuitComponent movingComponent = (mc != null) ? mc.getSelectedComponent() : null;
-        Map<Integer, Point> movingPins = (movingComponent != null) ? movingComponent.getPinCoordinates() : null;
+    private void drawWires(Graphics2D g2, Rectangle view) {
+        if (detail() != Detail.FULL) {
+            drawPlainWires(g2, view);
+            return;
+        }
 
-        // Draw Established Wires
-        for (Wire wire : manager.getWires()) {
+        // Pin locations follow components while they are dragged, so these are always live
+        manager.forEachWireIn(view, wire -> {
             Point p1 = manager.getPointForPin(wire.getSourcePinID());
             Point p2 = manager.getPointForPin(wire.getDestPinID());
 
-            // If a component is being moved, override the stale pin map with live data
-            if (movingPins != null) {
-                if (movingPins.containsKey(wire.getSourcePinID())) {
-                    p1 = movingPins.get(wire.getSourcePinID());
-                }
-                if (movingPins.containsKey(wire.getDestPinID())) {
-                    p2 = movingPins.get(wire.getDestPinID());
-                }
+            if (p1 != null && p2 != null) {
+                wire.draw(g2, manager.getNetState(wire.getSourcePinID()), p1.x, p1.y, p2.x, p2.y);
             }
-
-            if (p1 != null && p2 != null)
-                wire.draw(g2, p1.x, p1.y, p2.x, p2.y);
-        }
+        });
     }
 
     private void drawInteractiveWires(Graphics2D g2) {
@@ -246,30 +348,147 @@ public class CanvasPanel extends JPanel {
 
             if (p1 != null && p2 != null) {
                 g2.setColor(theme.text);
-                float[] dash = { 9.0f };
-                g2.setStroke(new BasicStroke(1.5f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 0, dash, 0));
+                g2.setStroke(RenderResources.PREVIEW_STROKE);
                 g2.drawLine(p1.x, p1.y, p2.x, p2.y);
             }
         }
         // Reset stroke to default
-        g2.setStroke(new BasicStroke(1));
+        g2.setStroke(RenderResources.THIN_STROKE);
     }
 
     private void drawHighlights(Graphics2D g2) {
         if (mc != null) {
             List<CircuitComponent> selected = mc.getSelectedComponents();
             g2.setColor(theme.selection);
-            g2.setStroke(new BasicStroke(2));
+            g2.setStroke(RenderResources.OUTLINE_STROKE);
             for (CircuitComponent c : selected) {
                 g2.drawRect(c.getX() - 5, c.getY() - 5, c.getWidth() + 10, c.getHeight() + 10);
             }
         }
     }
 
-    private void drawComponents(Graphics2D g2) {
-        for (CircuitComponent component : manager.getComponents()) {
-            component.draw(g2);
+    // Once the cached layer is drawn, only the components showing state are left
+    private void drawComponents(Graphics2D g2, Rectangle view, boolean cached) {
+        if (!cached) drawStaticComponents(g2, view);
+        if (detail() == Detail.FULL) {
+            manager.forEachComponentIn(view, component -> {
+                if (component.drawsState()) component.draw(g2);
+            });
+        }
+    }
+
+    // Zoomed out, state isn't shown, so every component is part of the cached layer
+    private void drawStaticComponents(Graphics2D g2, Rectangle area) {
+        switch (detail()) {
+            case FULL -> manager.forEachComponentIn(area, component -> {
+                if (!component.drawsState()) component.draw(g2);
+            });
+            case BLOCKS -> manager.forEachComponentIn(area, component -> drawBlock(g2, component));
+            case DENSITY -> drawDensity(g2, area);
+        }
+    }
+
+    // ==================================================================================
+    // LEVEL OF DETAIL
+    // ==================================================================================
+
+    private Detail detail() {
+        if (zoom < DENSITY_ZOOM) return Detail.DENSITY;
+        if (zoom < BLOCKS_ZOOM) return Detail.BLOCKS;
+        return Detail.FULL;
+    }
+
+    private void drawBlock(Graphics2D g2, CircuitComponent c) {
+        g2.setColor(theme.componentBody);
+        g2.fillRect(c.getX(), c.getY(), c.getWidth(), c.getHeight());
+        g2.setColor(theme.componentBorder);
+        g2.setStroke(RenderResources.HAIRLINE_STROKE);
+        g2.drawRect(c.getX(), c.getY(), c.getWidth(), c.getHeight());
+    }
+
+    // Counts component centres per cell of the device; crowded cells are shaded, the rest drawn as blocks.
+    // Cells sit on the device grid, so in the cached layer they never straddle two tiles.
+    private void drawDensity(Graphics2D g2, Rectangle area) {
+        AffineTransform worldToDevice = g2.getTransform();
+        Rectangle device = worldToDevice.createTransformedShape(area).getBounds();
+        int left = Math.floorDiv(device.x, DENSITY_CELL), top = Math.floorDiv(device.y, DENSITY_CELL);
+        int columns = Math.floorDiv(device.x + device.width, DENSITY_CELL) - left + 1;
+        int rows = Math.floorDiv(device.y + device.height, DENSITY_CELL) - top + 1;
+        int[] counts = new int[columns * rows];
+
+        Point2D.Double centre = new Point2D.Double();
+        manager.forEachComponentIn(area, c -> {
+            int cell = densityCell(worldToDevice, c, centre, left, top, columns, rows);
+            if (cell >= 0) counts[cell]++;
+        });
+
+        // Lone components keep their shape
+        manager.forEachComponentIn(area, c -> {
+            int cell = densityCell(worldToDevice, c, centre, left, top, columns, rows);
+            if (cell >= 0 && counts[cell] == 1) drawBlock(g2, c);
+        });
+
+        g2.setTransform(new AffineTransform());
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                int count = counts[row * columns + column];
+                if (count < 2) continue;
+                int level = Math.min(DENSITY_LEVELS - 1, 31 - Integer.numberOfLeadingZeros(count) - 1);
+                g2.setColor(densityColors[level]);
+                g2.fillRect((left + column) * DENSITY_CELL, (top + row) * DENSITY_CELL, DENSITY_CELL, DENSITY_CELL);
+            }
+        }
+        g2.setTransform(worldToDevice);
+    }
+
+    // The index of the cell holding a component's centre, or -1 outside the area
+    private static int densityCell(AffineTransform worldToDevice, CircuitComponent c, Point2D.Double centre,
+                                   int left, int top, int columns, int rows) {
+        centre.setLocation(c.getX() + c.getWidth() / 2.0, c.getY() + c.getHeight() / 2.0);
+        worldToDevice.transform(centre, centre);
+        int column = (int) Math.floor(centre.x / DENSITY_CELL) - left;
+        int row = (int) Math.floor(centre.y / DENSITY_CELL) - top;
+        return (column >= 0 && column < columns && row >= 0 && row < rows) ? row * columns + column : -1;
+    }
+
+    // Shades of the border colour, from two components per cell up to 256 and more
+    private Color[] createDensityColors() {
+        Color border = theme.componentBorder;
+        Color[] colors = new Color[DENSITY_LEVELS];
+        for (int level = 0; level < DENSITY_LEVELS; level++) {
+            int alpha = 70 + level * 185 / (DENSITY_LEVELS - 1);
+            colors[level] = new Color(border.getRed(), border.getGreen(), border.getBlue(), alpha);
         }
+        return colors;
+    }
+
+    // Aliased hairlines in the state colours, without glow. They are drawn on whole device pixels,
+    // which keeps a wire on the same pixels whatever part of it is repainted.
+    private void drawPlainWires(Graphics2D g2, Rectangle view) {
+        AffineTransform worldToDevice = g2.getTransform();
+        Object antialiasing = g2.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        g2.setTransform(new AffineTransform());
+        g2.setStroke(RenderResources.HAIRLINE_STROKE);
+
+        Point2D.Double a = new Point2D.Double(), b = new Point2D.Double();
+        manager.forEachWireIn(view, wire -> {
+            Point p1 = manager.getPointForPin(wire.getSourcePinID());
+            Point p2 = manager.getPointForPin(wire.getDestPinID());
+            if (p1 == null || p2 == null) return;
+
+            g2.setColor(switch (manager.getNetState(wire.getSourcePinID())) {
+                case HIGH -> theme.wireActive;
+                case LOW -> theme.wireInactive;
+                default -> theme.wireFloating;
+            });
+            worldToDevice.transform(p1, a);
+            worldToDevice.transform(p2, b);
+            g2.drawLine((int) Math.round(a.x), (int) Math.round(a.y), (int) Math.round(b.x), (int) Math.round(b.y));
+        });
+
+        g2.setTransform(worldToDevice);
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
     }
 
     private void drawSelectionMarquee(Graphics2D g2) {
@@ -278,10 +497,10 @@ public class CanvasPanel extends JPanel {
             if (rect != null) {
                 // Use a slightly more transparent version for the fill
                 Color sel = theme.selection;
-                g2.setColor(new Color(sel.getRed(), sel.getGreen(), sel.getBlue(), 30));
+                g2.setColor(RenderResources.withAlpha(sel, 30));
                 g2.fill(rect);
                 g2.setColor(sel);
-                g2.setStroke(new BasicStroke(1.5f));
+                g2.setStroke(RenderResources.MARQUEE_STROKE);
                 g2.draw(rect);
             }
         }
@@ -289,8 +508,8 @@ public class CanvasPanel extends JPanel {
 
     private void drawOverlay(Graphics2D g2) {
         if (System.currentTimeMillis() < errorExpireTime) {
-            g2.setColor(new Color(255, 0, 0, 200));
-            g2.setFont(new Font("Arial", Font.BOLD, 16));
+            g2.setColor(ERROR_COLOR);
+            g2.setFont(RenderResources.MESSAGE_FONT);
             g2.drawString(errorMessage, 20, getHeight() - 20);
         }
     }
@@ -22,6 +22,7 @@ import sim.logic.CommandManager;
 import sim.logic.MoveComponentCommand;
 import sim.logic.RemoveComponentCommand;
 import sim.logic.RemoveWireCommand;
+import sim.logic.RenameComponentCommand;
 import sim.model.LED;
 import sim.model.Switch;
 import sim.model.Tooltype;
@@ -110,7 +111,11 @@ public class MouseController extends MouseAdapter {
 
         if (SwingUtilities.isLeftMouseButton(e)) {
             switch (currtool) {
-                case TOGGLE -> handleClickInteraction(worldPos);
+                case TOGGLE -> {
+                    // Only what the click changed is repainted, through the canvas' state listener
+                    handleClickInteraction(worldPos);
+                    return;
+                }
                 case WIRE   -> getStartPin(worldPos);
                 case SELECT -> handleSelectionPress(worldPos, e.getPoint());
                 case DELETE -> handleDeletion(worldPos);
@@ -155,11 +160,7 @@ public class MouseController extends MouseAdapter {
         else if (selectionRect != null) {
             // Finalize marquee selection
             selectedComponents.clear();
-            for (CircuitComponent c : manager.getComponents()) {
-                if (selectionRect.contains(c.getX() + c.getWidth() / 2, c.getY() + c.getHeight() / 2)) {
-                    selectedComponents.add(c);
-                }
-            }
+            selectedComponents.addAll(manager.getComponentsIn(selectionRect));
             selectionRect = null;
             selectionRectStart = null;
         } 
@@ -169,7 +170,7 @@ public class MouseController extends MouseAdapter {
             if (manager.isSpaceOccupied(selectedComponent)) {
                 if (oldWorldPoint != null) {
                     canvas.showErrorMessage("Space Occupied!");
-                    selectedComponent.setLocation((int) oldWorldPoint.x, (int) oldWorldPoint.y);
+                    manager.moveComponent(selectedComponent, (int) oldWorldPoint.x, (int) oldWorldPoint.y);
                 }
             } 
             
@@ -181,7 +182,6 @@ public class MouseController extends MouseAdapter {
                     commandManager.executeCommand(new MoveComponentCommand(manager, moves));
                 }
             }
-            manager.refreshAllPinLocations();
             selectedComponents.clear();
             selectedComponents.add(selectedComponent);
         }
@@ -221,7 +221,7 @@ public class MouseController extends MouseAdapter {
                     newY = snap(newY);
                 }
 
-                selectedComponent.setLocation(newX, newY);
+                manager.moveComponent(selectedComponent, newX, newY);
             } else if (selectionRectStart != null) {
                 // Dragging a selection rectangle
                 Point worldPoint = new Point((int)worldPos.getX(), (int)worldPos.getY());
@@ -267,26 +267,20 @@ public class MouseController extends MouseAdapter {
         // If not, check if clicked on a component
         if (!clickedOnSelection) {
             selectedComponents.clear();
-            for (CircuitComponent c : manager.getComponents()) {
-                if (c.contains((int) worldPos.getX(), (int) worldPos.getY())) {
-                    selectedComponents.add(c);
-                    break;
-                }
-            }
+            CircuitComponent c = manager.getComponentAt((int) worldPos.getX(), (int) worldPos.getY());
+            if (c != null) selectedComponents.add(c);
         }
 
         ContextMenu.show(canvas, e.getX(), e.getY(), selectedComponents, actionHandler);
     }
 
     private void handleRenaming(Point2D worldPos) {
-        for (CircuitComponent c : manager.getComponents()) {
-            if (c.contains((int) worldPos.getX(), (int) worldPos.getY())) {
-                String newID = JOptionPane.showInputDialog(canvas, "Rename Component", c.getID());
-                if (newID != null && !newID.trim().isEmpty()) {
-                    c.setID(newID.trim());
-                    canvas.repaint();
-                }
-                return;
+        CircuitComponent c = manager.getComponentAt((int) worldPos.getX(), (int) worldPos.getY());
+        if (c != null) {
+            String newID = JOptionPane.showInputDialog(canvas, "Rename Component", c.getID());
+            if (newID != null && !newID.trim().isEmpty()) {
+                commandManager.executeCommand(new RenameComponentCommand(manager, c, newID.trim()));
+                canvas.repaint();
             }
         }
     }
@@ -295,16 +289,15 @@ public class MouseController extends MouseAdapter {
         selectedComponent = null;
 
         // First, check if we're clicking a component
-        for (CircuitComponent c : manager.getComponents()) {
-            if (c.contains((int) worldPos.getX(), (int) worldPos.getY())) {
-                selectedComponent = c; // It's a potential single-component drag
-                oldWorldPoint = new Point2D.Double(c.getX(), c.getY());
-
-                Point2D screenSpaceComp = canvas.getTransform().transform(oldWorldPoint, null);
-                dragOffset.x = screenPos.x - (int) screenSpaceComp.getX();
-                dragOffset.y = screenPos.y - (int) screenSpaceComp.getY();
-                return; // Found a component, stop here
-            }
+        CircuitComponent c = manager.getComponentAt((int) worldPos.getX(), (int) worldPos.getY());
+        if (c != null) {
+            selectedComponent = c; // It's a potential single-component drag
+            oldWorldPoint = new Point2D.Double(c.getX(), c.getY());
+
+            Point2D screenSpaceComp = canvas.getTransform().transform(oldWorldPoint, null);
+            dragOffset.x = screenPos.x - (int) screenSpaceComp.getX();
+            dragOffset.y = screenPos.y - (int) screenSpaceComp.getY();
+            return; // Found a component, stop here
         }
 
         // If we clicked empty space, clear selection and start marquee
@@ -327,11 +320,9 @@ public class MouseController extends MouseAdapter {
             commandManager.executeCommand(new RemoveWireCommand(manager, targetWire));
             return;
         }
-        for (CircuitComponent c : manager.getComponents()) {
-            if (c.contains((int) worldPos.getX(), (int) worldPos.getY())) {
-                commandManager.executeCommand(new RemoveComponentCommand(manager, c));
-                return;
-            }
+        CircuitComponent c = manager.getComponentAt((int) worldPos.getX(), (int) worldPos.getY());
+        if (c != null) {
+            commandManager.executeCommand(new RemoveComponentCommand(manager, c));
         }
     }
 
@@ -367,14 +358,10 @@ public class MouseController extends MouseAdapter {
     }
 
     private void handleClickInteraction(Point2D worldPos) {
-        for (CircuitComponent c : manager.getComponents()) {
-            if (c.contains((int) worldPos.getX(), (int) worldPos.getY())) {
-                if (c instanceof Clickable) {
-                    ((Clickable) c).click();
-                    manager.propagate();
-                }
-                break;
-            }
+        CircuitComponent c = manager.getComponentAt((int) worldPos.getX(), (int) worldPos.getY());
+        if (c instanceof Clickable) {
+            ((Clickable) c).click();
+            manager.propagateFrom(c);
         }
     }
 
@@ -0,0 +1,116 @@
+package sim.ui;
+
+import java.awt.Rectangle;
+
+import javax.swing.Timer;
+
+/**
+ * Paces the canvas repaints that follow simulation state changes. Changes are collected between frames
+ * and painted together on the next tick of a frame timer, so the simulation can settle far more often
+ * than the screen is drawn; each frame shows the latest published state. A tick is skipped while the
+ * last frame hasn't been painted yet, and turbo mode stops drawing state changes altogether.
+ */
+final class RenderScheduler {
+
+    // Repaints an area (null for everything) and returns whether a paint was actually queued
+    interface Repainter {
+        boolean repaint(Rectangle area);
+    }
+
+    static final int DEFAULT_FPS = 60;
+    private static final int MAX_SKIPPED = 4; // Frames waited for a paint before repainting regardless
+
+    private final Repainter repainter;
+    private final Timer timer;
+
+    // What changed since the last frame
+    private final Rectangle pending = new Rectangle(0, 0, -1, -1);
+    private boolean pendingAll;
+
+    private boolean framePending; // A frame was queued but not painted yet
+    private int skipped;
+    private long lastFrame;
+    private int maxFps = DEFAULT_FPS;
+    private boolean turbo;
+
+    RenderScheduler(Repainter repainter) {
+        this.repainter = repainter;
+        this.timer = new Timer(1000 / maxFps, e -> tick());
+        this.timer.setCoalesce(true); // Ticks that pile up behind a busy Swing thread count once
+    }
+
+    // ==================================================================================
+    // REQUESTS
+    // ==================================================================================
+
+    // Marks an area for the next frame, or everything for null
+    void request(Rectangle area) {
+        if (turbo) return;
+        if (area == null) pendingAll = true;
+        else pending.add(area);
+
+        if (!timer.isRunning()) {
+            // The first change after a pause is drawn straight away, unless a frame went out just now
+            long sinceLast = (System.nanoTime() - lastFrame) / 1_000_000;
+            timer.setInitialDelay((int) Math.max(0, timer.getDelay() - sinceLast));
+            timer.start();
+        }
+    }
+
+    // Called at the start of each paint of the canvas
+    void framePainted() {
+        framePending = false;
+        skipped = 0;
+    }
+
+    // ==================================================================================
+    // SETTINGS
+    // ==================================================================================
+
+    int getMaxFps() {
+        return maxFps;
+    }
+
+    void setMaxFps(int fps) {
+        if (fps <= 0) throw new IllegalArgumentException("Frame rate must be positive: " + fps);
+        maxFps = fps;
+        timer.setDelay(Math.max(1, 1000 / fps));
+    }
+
+    boolean isTurbo() {
+        return turbo;
+    }
+
+    // While on, state changes aren't drawn; turning it off draws everything once
+    void setTurbo(boolean turbo) {
+        if (this.turbo == turbo) return;
+        this.turbo = turbo;
+        pending.setBounds(0, 0, -1, -1);
+        pendingAll = false;
+        if (turbo) {
+            timer.stop();
+        } else {
+            request(null);
+        }
+    }
+
+    // ==================================================================================
+    // FRAMES
+    // ==================================================================================
+
+    private void tick() {
+        if (!pendingAll && pending.width < 0) {
+            timer.stop(); // Idle until the next change
+            return;
+        }
+        // The Swing thread hasn't caught up with the last frame: keep collecting and try next tick
+        if (framePending && ++skipped < MAX_SKIPPED) return;
+
+        Rectangle area = pendingAll ? null : new Rectangle(pending);
+        pending.setBounds(0, 0, -1, -1);
+        pendingAll = false;
+        skipped = 0;
+        lastFrame = System.nanoTime();
+        framePending = repainter.repaint(area);
+    }
+}
@@ -0,0 +1,227 @@
+package sim.ui;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.VolatileImage;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A cached layer of the canvas, kept as screen-aligned tiles of rendered pixels. A tile is only
+ * drawn again once something under it changed (see invalidate), so repaints just copy the tiles.
+ * Tiles belong to one zoom level and sub-pixel pan offset; whole-pixel pans keep them.
+ */
+final class TileLayer {
+
+    // Draws the layer's content for a world area onto a graphics already transformed to world coordinates
+    interface Painter {
+        void paint(Graphics2D g2, Rectangle world);
+    }
+
+    private static final int TILE_SIZE = 256; // Device pixels
+
+    private static final class Tile {
+        VolatileImage image;
+        boolean dirty = true;
+    }
+
+    private final Painter painter;
+    private final Map<Long, Tile> tiles = new HashMap<>();
+    private Color background; // Fill for an opaque layer, null for a transparent one
+    private final int margin; // World units drawn outside an item's bounds, e.g. labels
+
+    // The zoom and sub-pixel offset the tiles were drawn for
+    private double scale = Double.NaN;
+    private double offsetX, offsetY;
+
+    TileLayer(Painter painter, int margin) {
+        this.painter = painter;
+        this.margin = margin;
+    }
+
+    void setBackground(Color background) {
+        if (background == null ? this.background != null : !background.equals(this.background)) {
+            this.background = background;
+            invalidateAll();
+        }
+    }
+
+    // ==================================================================================
+    // INVALIDATION
+    // ==================================================================================
+
+    // Redraws the tiles covering a world area (plus the margin) on the next paint, or every tile for null
+    void invalidate(Rectangle world) {
+        if (world == null) {
+            invalidateAll();
+            return;
+        }
+        if (Double.isNaN(scale)) return;
+        forEachTile(layerBounds(world), (tx, ty) -> {
+            Tile tile = tiles.get(key(tx, ty));
+            if (tile != null) tile.dirty = true;
+        });
+    }
+
+    void invalidateAll() {
+        for (Tile tile : tiles.values()) tile.dirty = true;
+    }
+
+    // Frees the video memory of every tile
+    void flush() {
+        for (Tile tile : tiles.values()) {
+            if (tile.image != null) tile.image.flush();
+        }
+        tiles.clear();
+    }
+
+    // ==================================================================================
+    // PAINTING
+    // ==================================================================================
+
+    /**
+     * Copies the tiles covering the clip onto the graphics, drawing any that are missing or dirty first.
+     * Tiles are kept for the whole viewport (device space), so painting a small clip doesn't drop the rest.
+     * Returns false without drawing when the transform can't be tiled (rotation, shear or uneven scale);
+     * the caller then paints the content directly.
+     */
+    boolean paint(Graphics2D g2, AffineTransform worldToDevice, Rectangle viewport) {
+        if (worldToDevice.getShearX() != 0 || worldToDevice.getShearY() != 0
+                || worldToDevice.getScaleX() != worldToDevice.getScaleY() || worldToDevice.getScaleX() <= 0) {
+            return false;
+        }
+
+        // Tiles sit on whole device pixels; the fraction of the pan is baked into their content
+        double s = worldToDevice.getScaleX();
+        double baseX = Math.floor(worldToDevice.getTranslateX());
+        double baseY = Math.floor(worldToDevice.getTranslateY());
+        double fracX = worldToDevice.getTranslateX() - baseX;
+        double fracY = worldToDevice.getTranslateY() - baseY;
+        if (s != scale || fracX != offsetX || fracY != offsetY) {
+            flush();
+            scale = s;
+            offsetX = fracX;
+            offsetY = fracY;
+        }
+
+        AffineTransform saved = g2.getTransform();
+        g2.setTransform(new AffineTransform());
+        Rectangle clip = g2.getClipBounds();
+        if (clip == null) {
+            g2.setTransform(saved);
+            return false;
+        }
+        clip.translate((int) -baseX, (int) -baseY);
+
+        int minX = Math.floorDiv(clip.x, TILE_SIZE), maxX = Math.floorDiv(clip.x + clip.width - 1, TILE_SIZE);
+        int minY = Math.floorDiv(clip.y, TILE_SIZE), maxY = Math.floorDiv(clip.y + clip.height - 1, TILE_SIZE);
+        GraphicsConfiguration gc = g2.getDeviceConfiguration();
+
+        for (int tx = minX; tx <= maxX; tx++) {
+            for (int ty = minY; ty <= maxY; ty++) {
+                Tile tile = tiles.computeIfAbsent(key(tx, ty), k -> new Tile());
+                int dx = (int) baseX + tx * TILE_SIZE, dy = (int) baseY + ty * TILE_SIZE;
+
+                // Video memory can be lost at any time (e.g. display changes), so draw until the copy sticks
+                for (int attempt = 0; attempt < 3; attempt++) {
+                    if (tile.image == null || tile.image.validate(gc) == VolatileImage.IMAGE_INCOMPATIBLE) {
+                        if (tile.image != null) tile.image.flush();
+                        tile.image = gc.createCompatibleVolatileImage(TILE_SIZE, TILE_SIZE,
+                                background != null ? Transparency.OPAQUE : Transparency.TRANSLUCENT);
+                        tile.image.validate(gc);
+                        tile.dirty = true;
+                    } else if (tile.image.contentsLost()) {
+                        tile.dirty = true;
+                    }
+                    if (tile.dirty) render(tile, tx, ty, g2);
+                    g2.drawImage(tile.image, dx, dy, null);
+                    if (!tile.image.contentsLost()) break;
+                }
+            }
+        }
+        g2.setTransform(saved);
+
+        // Only tiles around the viewport are kept
+        int keepMinX = Math.floorDiv(viewport.x - (int) baseX, TILE_SIZE) - 1;
+        int keepMaxX = Math.floorDiv(viewport.x + viewport.width - 1 - (int) baseX, TILE_SIZE) + 1;
+        int keepMinY = Math.floorDiv(viewport.y - (int) baseY, TILE_SIZE) - 1;
+        int keepMaxY = Math.floorDiv(viewport.y + viewport.height - 1 - (int) baseY, TILE_SIZE) + 1;
+        Iterator<Map.Entry<Long, Tile>> it = tiles.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Tile> entry = it.next();
+            int tx = (int) (entry.getKey() >> 32), ty = (int) (long) entry.getKey();
+            if (tx < keepMinX || tx > keepMaxX || ty < keepMinY || ty > keepMaxY) {
+                if (entry.getValue().image != null) entry.getValue().image.flush();
+                it.remove();
+            }
+        }
+        return true;
+    }
+
+    private void render(Tile tile, int tx, int ty, Graphics2D screen) {
+        Graphics2D g = tile.image.createGraphics();
+        g.setRenderingHints(screen.getRenderingHints());
+        if (background != null) {
+            g.setColor(background);
+            g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+        } else {
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+            g.setComposite(AlphaComposite.SrcOver);
+        }
+
+        // The tile's top left corner in layer space is (tx, ty) * TILE_SIZE
+        g.translate(offsetX - tx * TILE_SIZE, offsetY - ty * TILE_SIZE);
+        g.scale(scale, scale);
+        Rectangle world = worldBounds(tx, ty);
+        world.grow(margin, margin);
+        painter.paint(g, world);
+        g.dispose();
+        tile.dirty = false;
+    }
+
+    // ==================================================================================
+    // HELPERS
+    // ==================================================================================
+
+    // The world area a tile shows, rounded out to whole units
+    private Rectangle worldBounds(int tx, int ty) {
+        int x1 = (int) Math.floor((tx * TILE_SIZE - offsetX) / scale);
+        int y1 = (int) Math.floor((ty * TILE_SIZE - offsetY) / scale);
+        int x2 = (int) Math.ceil(((tx + 1) * TILE_SIZE - offsetX) / scale);
+        int y2 = (int) Math.ceil(((ty + 1) * TILE_SIZE - offsetY) / scale);
+        return new Rectangle(x1, y1, x2 - x1, y2 - y1);
+    }
+
+    // A world area in layer pixels, grown by the margin and a pixel for antialiasing
+    private Rectangle layerBounds(Rectangle world) {
+        int x1 = (int) Math.floor((world.x - margin) * scale + offsetX) - 1;
+        int y1 = (int) Math.floor((world.y - margin) * scale + offsetY) - 1;
+        int x2 = (int) Math.ceil((world.x + world.width + margin) * scale + offsetX) + 1;
+        int y2 = (int) Math.ceil((world.y + world.height + margin) * scale + offsetY) + 1;
+        return new Rectangle(x1, y1, x2 - x1, y2 - y1);
+    }
+
+    private interface TileVisitor {
+        void visit(int tx, int ty);
+    }
+
+    private static void forEachTile(Rectangle layer, TileVisitor visitor) {
+        int maxX = Math.floorDiv(layer.x + layer.width, TILE_SIZE), maxY = Math.floorDiv(layer.y + layer.height, TILE_SIZE);
+        for (int tx = Math.floorDiv(layer.x, TILE_SIZE); tx <= maxX; tx++) {
+            for (int ty = Math.floorDiv(layer.y, TILE_SIZE); ty <= maxY; ty++) {
+                visitor.visit(tx, ty);
+            }
+        }
+    }
+
+    private static long key(int tx, int ty) {
+        return ((long) tx << 32) | (ty & 0xffffffffL);
+    }
+}
@@ -50,6 +50,13 @@ public class ContextMenu {
         });
         menu.add(subCircuitItem);
 
+        JMenuItem lutItem = new JMenuItem("Convert to Lookup Table");
+        styleMenuItem(lutItem);
+        lutItem.addActionListener(ev -> {
+            if (actionHandler != null) actionHandler.convertToLookupTable();
+        });
+        menu.add(lutItem);
+
         JMenuItem exportItem = new JMenuItem("Export Sub-Circuit");
         styleMenuItem(exportItem);
         exportItem.addActionListener(ev -> {
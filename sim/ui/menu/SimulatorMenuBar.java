@@ -3,10 +3,13 @@ package sim.ui.menu;
 import java.awt.Color;
 import java.awt.Component;
 
+import javax.swing.ButtonGroup;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JPopupMenu;
+import javax.swing.JRadioButtonMenuItem;
 import javax.swing.border.LineBorder;
 
 import sim.actions.ActionHandler;
@@ -42,12 +45,19 @@ public class SimulatorMenuBar extends JMenuBar {
         importItem.addActionListener(e -> actionHandler.performImport());
         JMenuItem exportItem = new JMenuItem("Export Sub-Circuit");
         exportItem.addActionListener(e -> actionHandler.performExport());
+        JMenuItem netlistImportItem = new JMenuItem("Import Netlist");
+        netlistImportItem.addActionListener(e -> actionHandler.performNetlistImport());
+        JMenuItem netlistExportItem = new JMenuItem("Export Verilog");
+        netlistExportItem.addActionListener(e -> actionHandler.performNetlistExport());
 
         fileMenu.add(saveItem);
         fileMenu.add(loadItem);
         fileMenu.addSeparator();
         fileMenu.add(importItem);
         fileMenu.add(exportItem);
+        fileMenu.addSeparator();
+        fileMenu.add(netlistImportItem);
+        fileMenu.add(netlistExportItem);
         this.add(fileMenu);
 
         // Edit Menu
@@ -70,6 +80,23 @@ public class SimulatorMenuBar extends JMenuBar {
         editMenu.addSeparator();
         editMenu.add(deleteItem);
         this.add(editMenu);
+
+        // Simulation Menu
+        JMenu simulationMenu = new JMenu("Simulation");
+        JCheckBoxMenuItem turboItem = new JCheckBoxMenuItem("Turbo (Don't Draw State)");
+        turboItem.addActionListener(e -> canvas.setTurbo(turboItem.isSelected()));
+        JMenu frameRateMenu = new JMenu("Max Frame Rate");
+        ButtonGroup frameRates = new ButtonGroup();
+        for (int fps : new int[] {30, 60, 120}) {
+            JRadioButtonMenuItem fpsItem = new JRadioButtonMenuItem(fps + " FPS", fps == canvas.getMaxFps());
+            fpsItem.addActionListener(e -> canvas.setMaxFps(fps));
+            frameRates.add(fpsItem);
+            frameRateMenu.add(fpsItem);
+        }
+
+        simulationMenu.add(turboItem);
+        simulationMenu.add(frameRateMenu);
+        this.add(simulationMenu);
         
         // Theme Menu
         JMenu themeMenu = new JMenu("Theme");
@@ -97,37 +97,40 @@ public class ComponentFactory {
         return creator.create(id, x, y, inPins, outPins);
     }
 
-    private static void validatePins(Tooltype tool, List<Integer> inPins, List<Integer> outPins) {
-        int expectedIn = 0;
-        int expectedOut = 0;
-
+    // The {inputs, outputs} a component type has, or null for types sized by their contents
+    public static int[] pinCounts(Tooltype tool) {
         switch (tool) {
             case AND, OR, NAND, NOR, XOR, XNOR:
-                expectedIn = 2; expectedOut = 1; break;
+                return new int[] {2, 1};
             case NOT:
-                expectedIn = 1; expectedOut = 1; break;
+                return new int[] {1, 1};
             case MUX:
-                expectedIn = 3; expectedOut = 1; break;
+                return new int[] {3, 1};
             case DEMUX:
-                expectedIn = 2; expectedOut = 2; break;
+                return new int[] {2, 2};
             case DECODER:
-                expectedIn = 2; expectedOut = 4; break;
+                return new int[] {2, 4};
             case ENCODER:
-                expectedIn = 4; expectedOut = 2; break;
+                return new int[] {4, 2};
             case SWITCH:
-                expectedIn = 0; expectedOut = 1; break;
+                return new int[] {0, 1};
             case LED:
-                expectedIn = 1; expectedOut = 0; break;
+                return new int[] {1, 0};
             case SEVEN_SEGMENT:
-                expectedIn = 7; expectedOut = 0; break;
+                return new int[] {7, 0};
             default:
-                return;
+                return null;
         }
+    }
+
+    private static void validatePins(Tooltype tool, List<Integer> inPins, List<Integer> outPins) {
+        int[] expected = pinCounts(tool);
+        if (expected == null) return;
 
-        while (inPins.size() < expectedIn) {
+        while (inPins.size() < expected[0]) {
             inPins.add(PinID.getNextPinID());
         }
-        while (outPins.size() < expectedOut) {
+        while (outPins.size() < expected[1]) {
             outPins.add(PinID.getNextPinID());
         }
     }
@@ -0,0 +1,380 @@
+package sim.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single-pass, cursor-based JSON reader.
+ * Tokens are pulled one at a time from a buffered Reader, so callers can build objects straight
+ * from the stream; readValue() builds the usual Map/List tree for the parts that need one.
+ */
+public class JsonReader implements AutoCloseable {
+
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    // Scopes. Separators are strict: exactly one ',' between elements and ':' after a name.
+    private static final int DOCUMENT = 0;      // Expecting the one top-level value
+    private static final int EMPTY_ARRAY = 1;   // Expecting a value or ']'
+    private static final int ARRAY = 2;         // Expecting ',' and a value, or ']'
+    private static final int EMPTY_OBJECT = 3;  // Expecting a name or '}'
+    private static final int OBJECT_NAME = 4;   // Expecting ',' and a name, or '}'
+    private static final int OBJECT_VALUE = 5;  // Expecting ':' and a value
+    private static final int DOCUMENT_END = 6;  // Expecting the end of input
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int pos = 0;
+    private int limit = 0;
+
+    private int[] stack = new int[32];
+    private int depth = 1;
+    private Token peeked = null;
+
+    private final StringBuilder scratch = new StringBuilder();
+
+    public JsonReader(Reader in) {
+        this.in = in;
+        stack[0] = DOCUMENT;
+    }
+
+    public JsonReader(String json) {
+        this(new StringReader(json));
+    }
+
+    // ==================================================================================
+    // TOKENS
+    // ==================================================================================
+
+    public Token peek() throws IOException {
+        if (peeked != null) return peeked;
+
+        int scope = stack[depth - 1];
+        int c = nextNonWhitespace();
+
+        if (scope == EMPTY_OBJECT || scope == OBJECT_NAME) {
+            if (c == '}') return peeked = Token.END_OBJECT;
+            if (scope == OBJECT_NAME) c = consumeSeparator(c, ',', "Expected ',' or '}'");
+            if (c == '"') return peeked = Token.NAME;
+            throw syntaxError("Expected a name");
+        }
+        if (scope == OBJECT_VALUE) {
+            c = consumeSeparator(c, ':', "Expected ':'");
+        } else if (scope == EMPTY_ARRAY || scope == ARRAY) {
+            if (c == ']') return peeked = Token.END_ARRAY;
+            if (scope == ARRAY) c = consumeSeparator(c, ',', "Expected ',' or ']'");
+        } else if (c == -1) {
+            return peeked = Token.END_DOCUMENT;
+        } else if (scope == DOCUMENT_END) {
+            throw syntaxError("Unexpected content after the top-level value");
+        }
+
+        switch (c) {
+            case '{': return peeked = Token.BEGIN_OBJECT;
+            case '[': return peeked = Token.BEGIN_ARRAY;
+            case '"': return peeked = Token.STRING;
+            case 't':
+            case 'f': return peeked = Token.BOOLEAN;
+            case 'n': return peeked = Token.NULL;
+            case -1: throw syntaxError("Unexpected end of input");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) return peeked = Token.NUMBER;
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    public boolean hasNext() throws IOException {
+        Token t = peek();
+        return t != Token.END_OBJECT && t != Token.END_ARRAY && t != Token.END_DOCUMENT;
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        pos++;
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        pos++;
+        depth--;
+        valueConsumed();
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        pos++;
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        pos++;
+        depth--;
+        valueConsumed();
+    }
+
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        pos++;
+        String name = readString();
+        stack[depth - 1] = OBJECT_VALUE;
+        return name;
+    }
+
+    public String nextString() throws IOException {
+        expect(Token.STRING);
+        pos++;
+        String value = readString();
+        valueConsumed();
+        return value;
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        boolean value = buffer[pos] == 't';
+        readLiteral(value ? "true" : "false");
+        valueConsumed();
+        return value;
+    }
+
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+        readLiteral("null");
+        valueConsumed();
+    }
+
+    // Integer if the value fits, otherwise Long, or Double for fractions and exponents
+    public Number nextNumber() throws IOException {
+        expect(Token.NUMBER);
+        scratch.setLength(0);
+
+        boolean negative = acceptNumberChar('-');
+        boolean integral = true;
+        long value = 0;
+        int digits = 0;
+
+        // -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)?
+        if (!acceptNumberChar('0')) {
+            if (!ensure(1) || buffer[pos] < '1' || buffer[pos] > '9') throw syntaxError("Expected a digit");
+            while (ensure(1) && buffer[pos] >= '0' && buffer[pos] <= '9') {
+                value = value * 10 + (buffer[pos] - '0');
+                digits++;
+                scratch.append(buffer[pos++]);
+            }
+        }
+        if (acceptNumberChar('.')) {
+            integral = false;
+            numberDigits();
+        }
+        if (acceptNumberChar('e') || acceptNumberChar('E')) {
+            integral = false;
+            if (!acceptNumberChar('+')) acceptNumberChar('-');
+            numberDigits();
+        }
+        valueConsumed();
+
+        if (!integral || digits > 18) return Double.parseDouble(scratch.toString());
+        if (negative) value = -value;
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) return (int) value;
+        return value;
+    }
+
+    public int nextInt() throws IOException {
+        return nextNumber().intValue();
+    }
+
+    public void skipValue() throws IOException {
+        readValue();
+    }
+
+    // Builds the value under the cursor as a Map/List/String/Number/Boolean tree
+    public Object readValue() throws IOException {
+        switch (peek()) {
+            case BEGIN_OBJECT: {
+                Map<String, Object> map = new HashMap<>();
+                beginObject();
+                while (hasNext()) {
+                    String name = nextName();
+                    map.put(name, readValue());
+                }
+                endObject();
+                return map;
+            }
+            case BEGIN_ARRAY: {
+                List<Object> list = new ArrayList<>();
+                beginArray();
+                while (hasNext()) list.add(readValue());
+                endArray();
+                return list;
+            }
+            case STRING: return nextString();
+            case NUMBER: return nextNumber();
+            case BOOLEAN: return nextBoolean();
+            case NULL:
+                nextNull();
+                return null;
+            default:
+                throw syntaxError("Expected a value but was " + peek());
+        }
+    }
+
+    // Reads a document that is a single object
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> readObject() throws IOException {
+        if (peek() != Token.BEGIN_OBJECT) throw syntaxError("Expected an object");
+        Map<String, Object> object = (Map<String, Object>) readValue();
+        endDocument();
+        return object;
+    }
+
+    // Checks that nothing but whitespace follows the top-level value
+    public void endDocument() throws IOException {
+        expect(Token.END_DOCUMENT);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // ==================================================================================
+    // HELPERS
+    // ==================================================================================
+
+    private void expect(Token token) throws IOException {
+        if (peek() != token) throw syntaxError("Expected " + token + " but was " + peeked);
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length) {
+            int[] grown = new int[depth * 2];
+            System.arraycopy(stack, 0, grown, 0, depth);
+            stack = grown;
+        }
+        stack[depth++] = scope;
+    }
+
+    // After a complete value, an object expects its next name, an array a ',' before its next value
+    // and the document its end
+    private void valueConsumed() {
+        int scope = stack[depth - 1];
+        if (scope == OBJECT_VALUE) stack[depth - 1] = OBJECT_NAME;
+        else if (scope == EMPTY_ARRAY) stack[depth - 1] = ARRAY;
+        else if (scope == DOCUMENT) stack[depth - 1] = DOCUMENT_END;
+    }
+
+    // Returns the next significant character without consuming it, -1 at the end of input
+    private int nextNonWhitespace() throws IOException {
+        while (ensure(1)) {
+            char c = buffer[pos];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+            pos++;
+        }
+        return -1;
+    }
+
+    // Consumes the separator c must be, returning the character after it
+    private int consumeSeparator(int c, char separator, String message) throws IOException {
+        if (c != separator) throw syntaxError(message);
+        pos++;
+        return nextNonWhitespace();
+    }
+
+    // Reads up to the closing quote (the opening one is already consumed), resolving escapes
+    private String readString() throws IOException {
+        scratch.setLength(0);
+        while (true) {
+            if (!ensure(1)) throw syntaxError("Unterminated string");
+
+            // Copy plain runs in bulk
+            int start = pos;
+            while (pos < limit && buffer[pos] != '"' && buffer[pos] != '\\') pos++;
+            scratch.append(buffer, start, pos - start);
+            if (pos == limit) continue;
+
+            char c = buffer[pos++];
+            if (c == '"') return scratch.toString();
+
+            if (!ensure(1)) throw syntaxError("Unterminated escape");
+            char escaped = buffer[pos++];
+            switch (escaped) {
+                case 'n': scratch.append('\n'); break;
+                case 't': scratch.append('\t'); break;
+                case 'r': scratch.append('\r'); break;
+                case 'b': scratch.append('\b'); break;
+                case 'f': scratch.append('\f'); break;
+                case 'u':
+                    if (!ensure(4)) throw syntaxError("Unterminated escape");
+                    int unit = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = hexDigit(buffer[pos++]);
+                        if (digit < 0) throw syntaxError("Invalid \\u escape");
+                        unit = (unit << 4) | digit;
+                    }
+                    scratch.append((char) unit);
+                    break;
+                case '"':
+                case '\\':
+                case '/': scratch.append(escaped); break;
+                default: throw syntaxError("Invalid escape '\\" + escaped + "'");
+            }
+        }
+    }
+
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        return -1;
+    }
+
+    // Consumes c if it is next, as part of the number being read
+    private boolean acceptNumberChar(char c) throws IOException {
+        if (!ensure(1) || buffer[pos] != c) return false;
+        scratch.append(buffer[pos++]);
+        return true;
+    }
+
+    // One or more digits of a fraction or exponent
+    private void numberDigits() throws IOException {
+        if (!ensure(1) || buffer[pos] < '0' || buffer[pos] > '9') throw syntaxError("Expected a digit");
+        while (ensure(1) && buffer[pos] >= '0' && buffer[pos] <= '9') scratch.append(buffer[pos++]);
+    }
+
+    private void readLiteral(String literal) throws IOException {
+        if (!ensure(literal.length())) throw syntaxError("Unexpected end of input");
+        for (int i = 0; i < literal.length(); i++) {
+            if (buffer[pos + i] != literal.charAt(i)) throw syntaxError("Expected '" + literal + "'");
+        }
+        pos += literal.length();
+    }
+
+    // Makes at least n unread characters available, compacting the buffer. False at end of input.
+    private boolean ensure(int n) throws IOException {
+        if (limit - pos >= n) return true;
+
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        while (limit < n) {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read == -1) return false;
+            limit += read;
+        }
+        return true;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException("Malformed JSON: " + message);
+    }
+}
@@ -0,0 +1,213 @@
+package sim.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes JSON tokens straight to a Writer, the counterpart of {@link JsonReader}.
+ * Top-level members and the elements of top-level arrays go on their own lines; everything
+ * deeper is written compactly. The canonical form has no whitespace and sorted keys.
+ */
+public class JsonWriter implements AutoCloseable {
+
+    private static final int PRETTY_DEPTH = 2;
+
+    private final Writer out;
+    private final boolean canonical;
+
+    private boolean[] empty = new boolean[32];  // Per open container: nothing written yet
+    private int depth = 0;
+    private boolean afterName = false;
+
+    public JsonWriter(Writer out) {
+        this(out, false);
+    }
+
+    private JsonWriter(Writer out, boolean canonical) {
+        this.out = out;
+        this.canonical = canonical;
+    }
+
+    // Sorted keys and no whitespace, so equal trees always produce equal text (used for hashing)
+    public static JsonWriter canonical(Writer out) {
+        return new JsonWriter(out, true);
+    }
+
+    // ==================================================================================
+    // STRUCTURE
+    // ==================================================================================
+
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        out.write('{');
+        push();
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        pop();
+        out.write('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        out.write('[');
+        push();
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        pop();
+        out.write(']');
+        return this;
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        beforeElement();
+        writeString(name);
+        out.write(':');
+        if (!canonical && depth <= PRETTY_DEPTH) out.write(' ');
+        afterName = true;
+        return this;
+    }
+
+    // ==================================================================================
+    // VALUES
+    // ==================================================================================
+
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) return nullValue();
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        beforeValue();
+        out.write("null");
+        return this;
+    }
+
+    public JsonWriter value(List<Integer> values) throws IOException {
+        beginArray();
+        for (int v : values) value(v);
+        return endArray();
+    }
+
+    // Writes a Map/List/String/Number/Boolean tree
+    public JsonWriter tree(Object value) throws IOException {
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            List<Object> keys = new ArrayList<>(map.keySet());
+            if (canonical) keys.sort((a, b) -> String.valueOf(a).compareTo(String.valueOf(b)));
+
+            beginObject();
+            for (Object key : keys) {
+                name(String.valueOf(key));
+                tree(map.get(key));
+            }
+            return endObject();
+        } else if (value instanceof List) {
+            beginArray();
+            for (Object item : (List<?>) value) tree(item);
+            return endArray();
+        } else if (value instanceof String) {
+            return value((String) value);
+        } else if (value instanceof Integer || value instanceof Long) {
+            return value(((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            return value((boolean) (Boolean) value);
+        } else if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        out.write(String.valueOf(value));
+        return this;
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    // ==================================================================================
+    // HELPERS
+    // ==================================================================================
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) beforeElement();
+    }
+
+    private void beforeElement() throws IOException {
+        if (!empty[depth - 1]) out.write(',');
+        empty[depth - 1] = false;
+        if (!canonical && depth <= PRETTY_DEPTH) newline(depth);
+    }
+
+    private void push() {
+        if (depth == empty.length) {
+            boolean[] grown = new boolean[depth * 2];
+            System.arraycopy(empty, 0, grown, 0, depth);
+            empty = grown;
+        }
+        empty[depth++] = true;
+    }
+
+    private void pop() throws IOException {
+        depth--;
+        if (!canonical && depth < PRETTY_DEPTH && !empty[depth]) newline(depth);
+    }
+
+    private void newline(int indent) throws IOException {
+        out.write('\n');
+        for (int i = 0; i < indent; i++) out.write("  ");
+    }
+
+    private void writeString(String value) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String escaped;
+            switch (c) {
+                case '"': escaped = "\\\""; break;
+                case '\\': escaped = "\\\\"; break;
+                case '\n': escaped = "\\n"; break;
+                case '\r': escaped = "\\r"; break;
+                case '\t': escaped = "\\t"; break;
+                default:
+                    if (c >= 0x20) continue;
+                    escaped = String.format("\\u%04x", (int) c);
+            }
+            out.write(value, start, i - start);
+            out.write(escaped);
+            start = i + 1;
+        }
+        out.write(value, start, value.length() - start);
+        out.write('"');
+    }
+}
@@ -1,20 +1,26 @@
 package sim.util;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class PinID {
 
     PinID() {
         throw new IllegalStateException("Utility class");
     }
 
-    private static int pinCounter = 1;
+    // Atomic so definitions can be built on several loader threads at once
+    private static final AtomicInteger pinCounter = new AtomicInteger(0);
 
     public static int getNextPinID() {
-        return pinCounter++;
+        return pinCounter.getAndIncrement();
     }
 
     public static void setNextPinID(int id) {
-        if (id > pinCounter) {
-            pinCounter = id;
-        }
+        pinCounter.accumulateAndGet(id, Math::max);
+    }
+
+    // Only for a load that replaces the whole circuit with pins renumbered to 0..id-1
+    public static void reset(int id) {
+        pinCounter.set(id);
     }
 }
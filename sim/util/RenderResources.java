@@ -0,0 +1,94 @@
+package sim.util;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+
+/**
+ * Strokes, fonts and derived colours shared by every draw call, so painting a frame allocates nothing
+ * per component or wire. Component bodies are shape templates built once at the origin and translated
+ * into place (see drawBody).
+ */
+public final class RenderResources {
+
+    private RenderResources() {
+        /* This utility class should not be instantiated */
+    }
+
+    // ==================================================================================
+    // STROKES
+    // ==================================================================================
+
+    public static final BasicStroke FINE_STROKE = new BasicStroke(0.5f);
+    public static final BasicStroke THIN_STROKE = new BasicStroke(1);
+    public static final BasicStroke MARQUEE_STROKE = new BasicStroke(1.5f);
+    public static final BasicStroke OUTLINE_STROKE = new BasicStroke(2);
+    public static final BasicStroke HAIRLINE_STROKE = new BasicStroke(0); // One device pixel at any zoom
+    public static final BasicStroke PREVIEW_STROKE = new BasicStroke(1.5f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 0, new float[] {9.0f}, 0);
+
+    // Wires: a HIGH wire is drawn glow, line and core on top of each other
+    public static final BasicStroke WIRE_STROKE = new BasicStroke(1.5f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    public static final BasicStroke WIRE_ACTIVE_STROKE = new BasicStroke(3f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    public static final BasicStroke WIRE_GLOW_STROKE = new BasicStroke(6f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+
+    // ==================================================================================
+    // FONTS
+    // ==================================================================================
+
+    public static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 14);    // Block names
+    public static final Font LABEL_FONT = new Font("Arial", Font.BOLD, 10);    // Switch and LED IDs
+    public static final Font PIN_FONT = new Font("Arial", Font.PLAIN, 10);     // Pin labels
+    public static final Font CAPTION_FONT = new Font("Arial", Font.ITALIC, 10);
+    public static final Font MESSAGE_FONT = new Font("Arial", Font.BOLD, 16);  // Canvas messages
+
+    // ==================================================================================
+    // DERIVED COLOURS
+    // ==================================================================================
+
+    // Colours derived from the theme are remembered for the last input, which only changes with the theme
+    private static Color darkerOf, darker;
+    private static Color translucentOf, translucent;
+    private static int translucentAlpha;
+
+    public static Color darker(Color color) {
+        if (color != darkerOf) {
+            darkerOf = color;
+            darker = color.darker();
+        }
+        return darker;
+    }
+
+    public static Color withAlpha(Color color, int alpha) {
+        if (color != translucentOf || alpha != translucentAlpha) {
+            translucentOf = color;
+            translucentAlpha = alpha;
+            translucent = new Color(color.getRed(), color.getGreen(), color.getBlue(), alpha);
+        }
+        return translucent;
+    }
+
+    // ==================================================================================
+    // SHAPE TEMPLATES
+    // ==================================================================================
+
+    // Fills a body template with the body colour and outlines it, placed at (x, y).
+    // Leaves the border colour and outline stroke set, as the pin lines expect.
+    public static void drawBody(Graphics2D g2, Shape template, int x, int y, Theme theme) {
+        g2.translate(x, y);
+        g2.setColor(theme.componentBody);
+        g2.fill(template);
+        g2.setColor(theme.componentBorder);
+        g2.setStroke(OUTLINE_STROKE);
+        g2.draw(template);
+        g2.translate(-x, -y);
+    }
+
+    // Draws a template placed at (x, y) with the current colour and stroke
+    public static void drawOutline(Graphics2D g2, Shape template, int x, int y) {
+        g2.translate(x, y);
+        g2.draw(template);
+        g2.translate(-x, -y);
+    }
+}
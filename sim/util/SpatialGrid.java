@@ -0,0 +1,157 @@
+package sim.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * A hierarchical hash grid over world coordinates. Each item goes into the level whose cells are about
+ * its size and is registered in every cell there that its rectangle (or line segment) touches, so an
+ * item takes only a handful of cells and a query only looks at the few cells around the area asked for.
+ * The grid does not remember where an item was put: removing it takes the same geometry it was inserted with.
+ */
+public class SpatialGrid<T> {
+
+    private static final int LEVEL_FACTOR = 2; // Each level's cells are this much wider than the one below
+    private static final int LEVELS = 16;
+    private static final int MAX_SPAN = 8;      // An item goes up a level once it is wider than this many cells
+
+    private final int[] cellSizes = new int[LEVELS];
+    private final List<Map<Long, List<T>>> levels = new ArrayList<>(LEVELS);
+    private final Set<T> seen = new HashSet<>(); // Reused by queryDistinct()
+
+    public SpatialGrid(int cellSize) {
+        for (int level = 0; level < LEVELS; level++) {
+            cellSizes[level] = cellSize;
+            levels.add(new HashMap<>());
+            cellSize = (int) Math.min((long) cellSize * LEVEL_FACTOR, Integer.MAX_VALUE / 2);
+        }
+    }
+
+    // ==================================================================================
+    // UPDATES
+    // ==================================================================================
+
+    public void insert(T item, int x, int y, int width, int height) {
+        int level = levelFor(Math.max(width, height));
+        forEachCell(level, x, y, width, height, key -> add(level, key, item));
+    }
+
+    public void remove(T item, int x, int y, int width, int height) {
+        int level = levelFor(Math.max(width, height));
+        forEachCell(level, x, y, width, height, key -> removeFrom(level, key, item));
+    }
+
+    // A segment only takes the cells it passes through, so long diagonal wires stay cheap
+    public void insertSegment(T item, int x1, int y1, int x2, int y2) {
+        int level = levelFor(Math.max(Math.abs(x2 - x1), Math.abs(y2 - y1)));
+        walkSegment(level, x1, y1, x2, y2, key -> add(level, key, item));
+    }
+
+    public void removeSegment(T item, int x1, int y1, int x2, int y2) {
+        int level = levelFor(Math.max(Math.abs(x2 - x1), Math.abs(y2 - y1)));
+        walkSegment(level, x1, y1, x2, y2, key -> removeFrom(level, key, item));
+    }
+
+    public void clear() {
+        for (Map<Long, List<T>> cells : levels) cells.clear();
+    }
+
+    // ==================================================================================
+    // QUERIES
+    // ==================================================================================
+
+    // Every item registered in a cell the rectangle touches. Items spanning several cells may be seen more than once.
+    public void query(int x, int y, int width, int height, Consumer<T> visitor) {
+        for (int level = 0; level < LEVELS; level++) {
+            Map<Long, List<T>> cells = levels.get(level);
+            if (cells.isEmpty()) continue;
+            forEachCell(level, x, y, width, height, key -> {
+                List<T> items = cells.get(key);
+                if (items == null) return;
+                for (int i = 0; i < items.size(); i++) visitor.accept(items.get(i));
+            });
+        }
+    }
+
+    // Like query(), but every item is seen once. Not reentrant.
+    public void queryDistinct(int x, int y, int width, int height, Consumer<T> visitor) {
+        seen.clear();
+        query(x, y, width, height, item -> {
+            if (seen.add(item)) visitor.accept(item);
+        });
+        seen.clear();
+    }
+
+    // ==================================================================================
+    // HELPERS
+    // ==================================================================================
+
+    // The lowest level where the item spans at most MAX_SPAN + 1 cells a side
+    private int levelFor(int extent) {
+        int level = 0;
+        while (level < LEVELS - 1 && extent > (long) MAX_SPAN * cellSizes[level]) level++;
+        return level;
+    }
+
+    private void add(int level, long key, T item) {
+        levels.get(level).computeIfAbsent(key, k -> new ArrayList<>(4)).add(item);
+    }
+
+    private void removeFrom(int level, long key, T item) {
+        Map<Long, List<T>> cells = levels.get(level);
+        List<T> items = cells.get(key);
+        if (items == null) return;
+        items.remove(item);
+        if (items.isEmpty()) cells.remove(key);
+    }
+
+    private void forEachCell(int level, int x, int y, int width, int height, LongConsumer visitor) {
+        int x2 = cell(level, x + width), y2 = cell(level, y + height);
+        for (int cx = cell(level, x); cx <= x2; cx++) {
+            for (int cy = cell(level, y); cy <= y2; cy++) {
+                visitor.accept(key(cx, cy));
+            }
+        }
+    }
+
+    // Grid traversal (Amanatides & Woo): visits each cell the segment crosses exactly once
+    private void walkSegment(int level, int x1, int y1, int x2, int y2, LongConsumer visitor) {
+        double size = cellSizes[level];
+        int cx = cell(level, x1), cy = cell(level, y1);
+        int endX = cell(level, x2), endY = cell(level, y2);
+        int stepX = Integer.signum(endX - cx), stepY = Integer.signum(endY - cy);
+        double dx = Math.abs(x2 - x1), dy = Math.abs(y2 - y1);
+
+        // Distance along the segment (0..1) to the next vertical / horizontal cell border, and per cell
+        double deltaX = (dx == 0) ? Double.POSITIVE_INFINITY : size / dx;
+        double deltaY = (dy == 0) ? Double.POSITIVE_INFINITY : size / dy;
+        double nextX = (dx == 0) ? Double.POSITIVE_INFINITY : (stepX > 0 ? (cx + 1) * size - x1 : x1 - cx * size) / dx;
+        double nextY = (dy == 0) ? Double.POSITIVE_INFINITY : (stepY > 0 ? (cy + 1) * size - y1 : y1 - cy * size) / dy;
+
+        visitor.accept(key(cx, cy));
+        while (cx != endX || cy != endY) {
+            if (cx != endX && (nextX < nextY || cy == endY)) {
+                cx += stepX;
+                nextX += deltaX;
+            } else {
+                cy += stepY;
+                nextY += deltaY;
+            }
+            visitor.accept(key(cx, cy));
+        }
+    }
+
+    private int cell(int level, int coordinate) {
+        return Math.floorDiv(coordinate, cellSizes[level]);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+}